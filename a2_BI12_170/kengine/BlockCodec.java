@@ -0,0 +1,237 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview The encoding of the blocks of a packed {@link PostingList}. A block
+ *           holds up to <code>BLOCK_SIZE</code> consecutive postings as
+ *
+ *           <pre>
+ *   b nExc packedGaps[n] (index high)[nExc] cb packedCounts[n]
+ *           </pre>
+ *
+ *           where
+ *           <ul>
+ *           <li>the gaps are the differences between consecutive document ids
+ *           minus 1 (the first relative to the last id of the previous block,
+ *           or to <code>-1</code>), bit-packed with <code>b</code> bits each.
+ *           This is <i>patched frame of reference</i> (PFOR): <code>b</code> is
+ *           chosen to minimise the size of the block, and the gaps that do not
+ *           fit in <code>b</code> bits are <i>exceptions</i>, whose higher bits
+ *           are stored after the packed gaps as the index of the gap (one byte)
+ *           followed by a variable-length integer, so a few large gaps do not
+ *           widen every gap of the block;</li>
+ *           <li>the counts minus 1 are bit-packed with <code>cb</code> bits
+ *           each, enough for the largest one (frame of reference).</li>
+ *           </ul>
+ *
+ *           Values are packed least significant bit first into consecutive
+ *           bytes. A block can be decoded without the others, given the last id
+ *           of the previous block, and the counts of a block are only decoded
+ *           if they are needed.
+ *
+ * @version 1.0
+ */
+class BlockCodec {
+  /** the number of postings of a full block */
+  static final int BLOCK_SIZE = 128;
+
+  /**
+   * @effects returns the maximum number of bytes that the blocks of
+   *          <code>n</code> postings take
+   */
+  static int maxBytes(int n) {
+    // header bytes, 4 bytes per gap and count, and an index byte plus a
+    // variable-length integer of at most 5 bytes per exception
+    int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    return 3 * blocks + 14 * n;
+  }
+
+  /**
+   * A method to encode a block.
+   *
+   * @param base
+   *          the last id of the previous block, or <code>-1</code>
+   * @param tmp
+   *          an array of at least <code>n</code> elements
+   * @requires <code>0 < n <= BLOCK_SIZE</code>,
+   *           <code>ids[from..from+n)</code> are greater than <code>base</code>
+   *           and in ascending order, <code>cnts[from..from+n)</code> are
+   *           positive and <code>out</code> has at least
+   *           <code>maxBytes(n)</code> bytes after <code>off</code>
+   * @modifies <code>out</code>, <code>tmp</code>
+   * @effects writes the block of the postings
+   *          <code>&lt;ids[i],cnts[i]&gt;</code> for
+   *          <code>from <= i < from+n</code> to <code>out</code> from
+   *          <code>off</code> and returns the offset after it
+   */
+  static int encode(int[] ids, int[] cnts, int from, int n, int base, int[] tmp, byte[] out,
+      int off) {
+    int prev = base;
+    for (int i = 0; i < n; i++) {
+      tmp[i] = ids[from + i] - prev - 1;
+      prev = ids[from + i];
+    }
+
+    int b = width(tmp, n);
+    out[off++] = (byte) b;
+    int excAt = off++;
+    off = pack(tmp, n, b, out, off);
+    int nExc = 0;
+    if (b < 32) {
+      for (int i = 0; i < n; i++) {
+        int high = tmp[i] >>> b;
+        if (high != 0) {
+          out[off++] = (byte) i;
+          off = writeVInt(high, out, off);
+          nExc++;
+        }
+      }
+    }
+    out[excAt] = (byte) nExc;
+
+    int max = 0;
+    for (int i = 0; i < n; i++) {
+      tmp[i] = cnts[from + i] - 1;
+      max |= tmp[i];
+    }
+    int cb = 32 - Integer.numberOfLeadingZeros(max);
+    out[off++] = (byte) cb;
+    return pack(tmp, n, cb, out, off);
+  }
+
+  /**
+   * A method to decode the document ids of a block.
+   *
+   * @param base
+   *          the last id of the previous block, or <code>-1</code>
+   * @requires <code>in[off..)</code> starts with a block of <code>n</code>
+   *           postings whose previous block ends with <code>base</code>, and
+   *           <code>out.length >= n</code>
+   * @modifies <code>out</code>
+   * @effects decodes the ids of the block into <code>out[0..n)</code> and
+   *          returns the offset of its counts
+   */
+  static int decodeIds(byte[] in, int off, int n, int base, int[] out) {
+    int b = in[off++] & 0xFF;
+    int nExc = in[off++] & 0xFF;
+    off = unpack(in, off, n, b, out);
+    for (int e = 0; e < nExc; e++) {
+      int i = in[off++] & 0xFF;
+      int high = 0;
+      int shift = 0;
+      byte x;
+      do {
+        x = in[off++];
+        high |= (x & 0x7F) << shift;
+        shift += 7;
+      } while (x < 0);
+      out[i] |= high << b;
+    }
+
+    int prev = base;
+    for (int i = 0; i < n; i++) {
+      prev += out[i] + 1;
+      out[i] = prev;
+    }
+    return off;
+  }
+
+  /**
+   * A method to decode the counts of a block.
+   *
+   * @requires <code>off</code> is the offset of the counts of a block of
+   *           <code>n</code> postings (see {@link #decodeIds}) and
+   *           <code>out.length >= n</code>
+   * @modifies <code>out</code>
+   * @effects decodes the counts of the block into <code>out[0..n)</code>
+   */
+  static void decodeCounts(byte[] in, int off, int n, int[] out) {
+    int cb = in[off++] & 0xFF;
+    unpack(in, off, n, cb, out);
+    for (int i = 0; i < n; i++)
+      out[i]++;
+  }
+
+  /**
+   * @effects returns the number of bits per value that makes the packed values
+   *          <code>v[0..n)</code> and their exceptions smallest
+   */
+  private static int width(int[] v, int n) {
+    // hist[k] is the number of values of k significant bits
+    int[] hist = new int[33];
+    for (int i = 0; i < n; i++)
+      hist[32 - Integer.numberOfLeadingZeros(v[i])]++;
+
+    int best = 32;
+    long bestSize = Long.MAX_VALUE;
+    for (int b = 0; b <= 32; b++) {
+      long size = ((long) n * b + 7) >>> 3;
+      for (int k = b + 1; k <= 32; k++)
+        size += hist[k] * (1 + (k - b + 6) / 7);
+      if (size < bestSize) {
+        bestSize = size;
+        best = b;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @modifies <code>out</code>
+   * @effects writes the lowest <code>b</code> bits of each of
+   *          <code>v[0..n)</code> to <code>out</code> from <code>off</code>
+   *          and returns the offset after them
+   */
+  private static int pack(int[] v, int n, int b, byte[] out, int off) {
+    long mask = (1L << b) - 1;
+    long acc = 0;
+    int bits = 0;
+    for (int i = 0; i < n; i++) {
+      acc |= (v[i] & mask) << bits;
+      bits += b;
+      while (bits >= 8) {
+        out[off++] = (byte) acc;
+        acc >>>= 8;
+        bits -= 8;
+      }
+    }
+    if (bits > 0)
+      out[off++] = (byte) acc;
+    return off;
+  }
+
+  /**
+   * @modifies <code>out</code>
+   * @effects reads <code>n</code> values of <code>b</code> bits each from
+   *          <code>in</code> from <code>off</code> into <code>out[0..n)</code>
+   *          and returns the offset after them
+   */
+  private static int unpack(byte[] in, int off, int n, int b, int[] out) {
+    long mask = (1L << b) - 1;
+    long acc = 0;
+    int bits = 0;
+    for (int i = 0; i < n; i++) {
+      while (bits < b) {
+        acc |= (in[off++] & 0xFFL) << bits;
+        bits += 8;
+      }
+      out[i] = (int) (acc & mask);
+      acc >>>= b;
+      bits -= b;
+    }
+    return off;
+  }
+
+  /**
+   * @modifies <code>out</code>
+   * @effects writes <code>v</code> to <code>out</code> from <code>off</code>
+   *          as a variable-length integer and returns the offset after it
+   */
+  private static int writeVInt(int v, byte[] out, int off) {
+    while ((v & ~0x7F) != 0) {
+      out[off++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out[off++] = (byte) v;
+    return off;
+  }
+}
@@ -0,0 +1,50 @@
+package a2_BI12_170.kengine;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview The Okapi BM25 scoring function. The weight of a keyword is
+ *           <code>ln(1 + (numDocs - df + 0.5) / (df + 0.5))</code>, and its
+ *           score in a document is
+ *
+ *           <pre>
+ *   weight * tf * (k1 + 1) / (tf + k1 * (1 - b + b * docLen / avgDocLen))
+ * </pre>
+ *
+ *           <code>k1</code> controls how quickly repeated occurrences stop
+ *           adding to the score, and <code>b</code> how much the score is
+ *           normalised by the length of the document relative to the average.
+ *
+ * @version 1.0
+ */
+public class Bm25Scorer implements Scorer {
+  /** a shared instance with the usual parameters <code>k1 = 1.2, b = 0.75</code> */
+  public static final Bm25Scorer INSTANCE = new Bm25Scorer(1.2f, 0.75f);
+
+  private final float k1;
+  private final float b;
+
+  /**
+   * Constructor method
+   *
+   * @effects if <code>k1 < 0</code> or <code>b</code> is not in
+   *          <code>[0,1]</code> throws <code>NotPossibleException</code>,
+   *          else initialises <code>this</code> with the given parameters
+   */
+  public Bm25Scorer(float k1, float b) throws NotPossibleException {
+    if (k1 < 0 || b < 0 || b > 1)
+      throw new NotPossibleException("Bm25Scorer.init: invalid parameters: " + k1 + ", " + b);
+
+    this.k1 = k1;
+    this.b = b;
+  }
+
+  public float termWeight(int df, int numDocs) {
+    return (float) Math.log(1.0 + (numDocs - df + 0.5) / (df + 0.5));
+  }
+
+  public float score(float weight, int tf, int docLen, float avgDocLen) {
+    float norm = (avgDocLen > 0) ? docLen / avgDocLen : 1f;
+    return weight * tf * (k1 + 1) / (tf + k1 * (1 - b + b * norm));
+  }
+}
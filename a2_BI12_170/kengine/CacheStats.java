@@ -0,0 +1,111 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview The statistics of the query result cache of an {@link Engine}
+ *           since it was created, as returned by {@link Engine#cacheStats()}.
+ *           A lookup is a <i>hit</i> if the results of the query were cached
+ *           for the current index, else a <i>miss</i>. Cached results are
+ *           <i>evicted</i> to keep the cache within its limits and
+ *           <i>invalidated</i> when documents are added to or deleted from
+ *           the engine. The results of a query are <i>rejected</i> if the
+ *           cache is full and the query is not asked more often than the
+ *           results they would evict.
+ *
+ * @version 1.0 <br>
+ *          1.1 rejections
+ */
+public class CacheStats {
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+  private long rejections;
+  private int size; // the number of cached queries
+  private long weight; // their total number of matches
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> with the given statistics
+   */
+  CacheStats(long hits, long misses, long evictions, long invalidations, long rejections,
+      int size, long weight) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.invalidations = invalidations;
+    this.rejections = rejections;
+    this.size = size;
+    this.weight = weight;
+  }
+
+  /**
+   * @effects returns the number of lookups that found the results cached
+   */
+  public long hits() {
+    return hits;
+  }
+
+  /**
+   * @effects returns the number of lookups that did not find the results
+   *          cached
+   */
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * @effects returns the fraction of the lookups that were hits, or
+   *          <code>0</code> if there were none
+   */
+  public double hitRate() {
+    long n = hits + misses;
+    return (n == 0) ? 0 : (double) hits / n;
+  }
+
+  /**
+   * @effects returns the number of cached results that were evicted to make
+   *          room for others
+   */
+  public long evictions() {
+    return evictions;
+  }
+
+  /**
+   * @effects returns the number of cached results that were dropped because
+   *          the index changed
+   */
+  public long invalidations() {
+    return invalidations;
+  }
+
+  /**
+   * @effects returns the number of results that were not cached because the
+   *          cache was full and their query was asked less often than the
+   *          least recently used one
+   */
+  public long rejections() {
+    return rejections;
+  }
+
+  /**
+   * @effects returns the number of queries whose results are cached
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @effects returns the total number of matches of the cached results
+   */
+  public long weight() {
+    return weight;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "hits=%d misses=%d hitRate=%.3f evictions=%d invalidations=%d rejections=%d size=%d weight=%d", 
+        hits, misses, hitRate(), evictions, invalidations, rejections, size, weight);
+  }
+}
@@ -1,12 +1,10 @@
 package a2_BI12_170.kengine;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.Iterator;
 
 import utils.NotPossibleException;
+import utils.fileio.TextFileReader;
 
 
 /**
@@ -19,6 +17,11 @@ import utils.NotPossibleException;
  * 
  */
 public class Comm {
+  // one reader per thread, so that its buffers can be reused; the threads 
+  // that read through it are those of a DocPipeline, which end with its run 
+  // and so do not keep their slabs beyond it
+  private static final ThreadLocal<TextFileReader> READERS = 
+      ThreadLocal.withInitial(TextFileReader::new);
 
   /**
    * A method to obtain documents from a remote web site <code>u</code>
@@ -37,7 +40,19 @@ public class Comm {
   public static Iterator getDocs(String u) throws NotPossibleException {
     // if u is a local folder, reads its files as Doc objects
     // and returns a generator for them.
+    return new DocGenerator(getFiles(u));
+  }
 
+  /**
+   * A method to list the document files of a web site <code>u</code>.
+   * 
+   * @param u
+   *          the URL of a remote web site
+   * @effects if <code>u</code> is not the URL of a local directory (see 
+   *          {@link #getDocs(String)}) throws <code>NotPossibleException</code>, 
+   *          else returns the files in that directory
+   */
+  static File[] getFiles(String u) throws NotPossibleException {
     int protocolInd = u.indexOf("/");
     String protocol = u.substring(0, protocolInd + 2); // the protocol part of u
 
@@ -54,53 +69,52 @@ public class Comm {
           + u);
     }
 
-    File[] files = dir.listFiles();
+    return dir.listFiles();
+  }
 
-    return new DocGenerator(files);
+  /**
+   * A method to read the content of a document file.
+   * 
+   * @param f
+   *          a document file
+   * @effects if <code>f</code> cannot be read throws
+   *          <code>NotPossibleException</code>, else returns its content
+   */
+  static CharSequence readFile(File f) throws NotPossibleException {
+    return READERS.get().readContent(f);
   }
 }
 
 /**
- * @overview A generator implementation for documents. 
+ * @overview A generator implementation for documents. The documents are read
+ *           lazily: a file is opened and read only when <code>next()</code> 
+ *           is invoked for it, so at most one document is held by the 
+ *           generator at any time.
  * 
  * @author dmle
  *
  */
 class DocGenerator implements Iterator {
-  Doc[] docs;
+  File[] files;
   int currIndex = -1;
+  TextFileReader reader; // reused for all the files
 
   public DocGenerator(File[] files) throws NotPossibleException {
-    docs = new Doc[files.length];
-
-    File f;
-    BufferedReader fr;
-    String d, line;
-    Doc doc;
-    for (int i = 0; i < files.length; i++) {
-      f = files[i];
-      try {
-        fr = new BufferedReader(new FileReader(f));
-        d = "";
-        while ((line = fr.readLine()) != null) {
-          d += line + "\n";
-        }
-      } catch (IOException e) {
-        throw new NotPossibleException(
-            "Comm.DocGenerator.init: Failed to read file " + f);
-      }
-      doc = new Doc(d);
-      docs[i] = doc;
-    }
+    this.files = files;
+    reader = new TextFileReader();
   }
 
   public boolean hasNext() {
-    return currIndex < docs.length - 1;
+    return currIndex < files.length - 1;
   }
 
-  public Object next() {
+  /**
+   * @effects if the next file cannot be read throws <code>NotPossibleException</code>, 
+   *          else returns the <code>Doc</code> of the next file
+   */
+  public Object next() throws NotPossibleException {
     currIndex++;
-    return docs[currIndex];
+    return new Doc(reader.readContent(files[currIndex]));
   }
   
   public void remove() {
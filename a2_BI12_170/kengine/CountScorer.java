@@ -0,0 +1,21 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview The original scoring function of the engine: the score of a
+ *           document is the sum of the counts of the keywords in it. Every
+ *           keyword has weight 1 and document lengths are ignored.
+ *
+ * @version 1.0
+ */
+public class CountScorer implements Scorer {
+  /** a shared instance */
+  public static final CountScorer INSTANCE = new CountScorer();
+
+  public float termWeight(int df, int numDocs) {
+    return 1f;
+  }
+
+  public float score(float weight, int tf, int docLen, float avgDocLen) {
+    return tf;
+  }
+}
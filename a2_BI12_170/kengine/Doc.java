@@ -1,7 +1,8 @@
 package a2_BI12_170.kengine;
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Vector;
 
 import utils.NotImplementedException;
 import utils.NotPossibleException;
@@ -10,34 +11,105 @@ import utils.NotPossibleException;
 /**
  * @overview A document contains a title and a text body
  * 
+ *           Once a document is added to an index it is attached to the 
+ *           index's {@link DocStore}, which keeps its title and, if the store 
+ *           is configured to, its content; the document itself then keeps 
+ *           only its id. The body and the words of a document are not cached 
+ *           but are read from its content each time, so an indexed document 
+ *           takes a few tens of bytes.
+ * 
  * @see "Program Development in Java", pgs: 314,322,333
- * @version 1.0
+ * @version 1.0 <br>
+ *          2.1 attached to a DocStore when it is indexed
  * @author dmle
  * 
  */
 public class Doc {
-  private String d; // the document content
-  private String title; // the document title
-  private String body; // the document body
+  private CharSequence d; // the document content, null once attached
+  private String title; // the document title, null once attached
+  // bodyEnd is written before bodyStart, which is volatile, so that a thread 
+  // that sees bodyStart >= 0 also sees bodyEnd
+  private volatile int bodyStart = -1; // the index of the body in d (-1 if not yet found)
+  private int bodyEnd; // the index just after the body in d
 
-  private Vector docWords; // the sequence of document words
+  private DocStore store; // the store this is attached to, or null
+  private int id; // the id of this in store
 
   /**
    * Constructor method
    * 
    * @param d
-   *          A string that contains the document content
+   *          A character sequence that contains the document content
    * @effects if d cannot be processed as a document throws
    *          <code>NotPossibleException</code> else makes <code>this</code> be
    *          the <code>Doc</code> corresponding to <code>d</code>
-   * 
+   * @version 1.1 accepts any <code>CharSequence</code> (e.g. a <code>CharBuffer</code>
+   *          read from a file), which is used as is rather than copied into a
+   *          <code>String</code>
    */
-  public Doc(String d) throws NotPossibleException {
+  public Doc(CharSequence d) throws NotPossibleException {
     // check that d is an HTML file
     // stores this content for processing later
     this.d = d;
   }
 
+  /**
+   * Constructor method to re-create a document whose title is already known, 
+   * e.g. one that is read back from an index file.
+   * 
+   * @param title
+   *          the title of the document
+   * @param d
+   *          A character sequence that contains the document content
+   * @effects makes <code>this</code> be the <code>Doc</code> corresponding to 
+   *          <code>d</code>, with title <code>title</code>
+   */
+  Doc(String title, CharSequence d) {
+    this.d = d;
+    this.title = title;
+  }
+
+  /**
+   * @effects returns the content of <code>this</code>, or <code>null</code> 
+   *          if <code>this</code> is attached to a store that does not keep 
+   *          the content of its documents
+   */
+  CharSequence content() {
+    return (store == null) ? d : store.content(id);
+  }
+
+  /**
+   * A method to attach <code>this</code> to the store that it is added to.
+   * 
+   * @requires <code>s</code> has just copied the title and (if it keeps it) 
+   *           the content of <code>this</code> as document <code>id</code>
+   * @modifies <code>this</code>
+   * @effects makes <code>this</code> read its title and content from 
+   *          <code>s</code> from now on and drops its own copies
+   */
+  void attach(DocStore s, int id) {
+    this.id = id;
+    this.store = s;
+    d = null;
+    title = null;
+  }
+
+  /**
+   * @effects if <code>this</code> is attached to a store returns 
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean isAttached() {
+    return store != null;
+  }
+
+  /**
+   * @effects if <code>this</code> is attached to <code>s</code> returns its 
+   *          id in <code>s</code>, else returns <code>-1</code>
+   */
+  int idIn(DocStore s) {
+    return (store != null && store == s) ? id : -1;
+  }
+
   /**
    * A method to return the title of this document.
    * 
@@ -46,51 +118,110 @@ public class Doc {
   public String title() {
     // scans the document content once to extract its title
     // stores the title into the title attribute to use later
+    if (store != null)
+      return store.title(id);
+
     if (title == null) {
       // note that we donot scan the entire body at this stage,
       // only up to the <title> tag
-      int tind1 = d.indexOf("<title>");
-      int tind2 = d.indexOf("</title>"); // must be well-formed
+      int tind1 = indexOf(d, "<title>");
+      int tind2 = indexOf(d, "</title>"); // must be well-formed
       if (tind1 < 0) {
-        tind1 = d.indexOf("<TITLE>"); // possibly upper case
-        tind2 = d.indexOf("</TITLE>");
+        tind1 = indexOf(d, "<TITLE>"); // possibly upper case
+        tind2 = indexOf(d, "</TITLE>");
       }
 
       if (tind1 >= 0 && tind2 >= 0) {
         // extract only the title text
-        title = d.substring(tind1 + 7, tind2);
+        title = d.subSequence(tind1 + 7, tind2).toString();
       }
     }
 
     return title;
   }
 
+  /**
+   * @requires <code>ct</code> is in canonical form
+   * @effects if <code>this</code> has a title whose canonical form is 
+   *          <code>ct</code> returns <code>true</code>, else returns 
+   *          <code>false</code>. The title of an attached document is compared 
+   *          where its store keeps it (see {@link DocStore#titleIs(int, String)}).
+   */
+  boolean hasTitle(String ct) {
+    if (store != null)
+      return store.titleIs(id, ct);
+
+    String t = title();
+    return t != null && Helpers.canon(t).equals(ct);
+  }
+
   /**
    * A method to return the body of this document.
    * 
    * @effects returns the body of <code>this</code>
    */
   public String body() {
-    // scans the document content once to extract its body
-    // stores the body into the body attribute to use later
-    if (body == null) {
-      // note that we donot scan the entire body at this stage,
-      // only up to the <title> tag
-      int bind1 = d.indexOf("<body");
-      int bind2 = d.indexOf("</body>"); // must be well-formed
+    // the bounds of the body are found once, but the body is copied 
+    // from the content each time rather than kept
+    if (!findBody())
+      return null;
+
+    // we want to keep the <body</body> tag pairs in
+    // the body text
+    return content().subSequence(bodyStart, bodyEnd).toString();
+  }
+
+  /**
+   * A method to locate the body of this document.
+   * 
+   * @modifies <code>this</code>
+   * @effects if the content of <code>this</code> is known and has a body sets 
+   *          <code>bodyStart, bodyEnd</code> to its bounds (including the 
+   *          <code>&lt;body&gt;&lt;/body&gt;</code> tag pairs) and returns 
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  private boolean findBody() {
+    CharSequence d = content();
+    if (d == null)
+      return false;
+
+    if (bodyStart < 0) {
+      int bind1 = indexOf(d, "<body");
+      int bind2 = indexOf(d, "</body>"); // must be well-formed
       if (bind1 < 0) {
-        bind1 = d.indexOf("<BODY"); // possibly upper case
-        bind2 = d.indexOf("</BODY>");
+        bind1 = indexOf(d, "<BODY"); // possibly upper case
+        bind2 = indexOf(d, "</BODY>");
       }
 
       if (bind1 >= 0 && bind2 >= 0) {
-        // we want to keep the <body</body> tag pairs in
-        // the body text
-        body = d.substring(bind1, bind2 + 7);
+        bodyEnd = bind2 + 7;
+        bodyStart = bind1;
       }
     }
 
-    return body;
+    return bodyStart >= 0;
+  }
+
+  /**
+   * @effects returns the index of the first occurrence of <code>t</code> in 
+   *          <code>s</code>, or <code>-1</code> if <code>t</code> does not occur
+   */
+  private static int indexOf(CharSequence s, String t) {
+    if (s instanceof String)
+      return ((String) s).indexOf(t);
+
+    int last = s.length() - t.length();
+    char first = t.charAt(0);
+    OUTER: for (int i = 0; i <= last; i++) {
+      if (s.charAt(i) != first)
+        continue;
+      for (int j = 1; j < t.length(); j++) {
+        if (s.charAt(i + j) != t.charAt(j))
+          continue OUTER;
+      }
+      return i;
+    }
+    return -1;
   }
 
   /**
@@ -101,117 +232,64 @@ public class Doc {
    *          as strings in the order they appear in the text
    *          <p>
    * 
-   *          This implementation also parses the Javascript text that is
-   *          contained between the <code>&lt;script&gt;&lt;/script&gt;</code>
-   *          tags.
+   *          The text between <code>&lt;script&gt;&lt;/script&gt;</code> and 
+   *          <code>&lt;style&gt;&lt;/style&gt;</code> tags is skipped.
+   *          <p>
+   * 
+   *          The words are not cached: each invocation scans the body again 
+   *          and creates a <code>String</code> for every word, so a caller 
+   *          that needs the words more than once should keep them, and one 
+   *          that only needs to look at each word once should use 
+   *          {@link #words(TokenHandler)}.
+   * @version 2.0 uses {@link HtmlTokenizer} to scan the body <br>
+   *          2.1 the words are no longer cached <br>
+   *          2.2 returns an <code>Iterator&lt;String&gt;</code>
    */
-  public Iterator words() {
-    // extracts body
-    body();
-
-    // scans the body to return only words (without tags)
-    // assumes that Doc is immutable
-    // note: recall that body has the enclosing <body></body> tag pairs
-    if (docWords == null) {
-      docWords = new Vector();
-      final char OPEN_TAG = '<';
-      final char CLOSED_TAG = '>';
-      // final char FORWARD_SLASH = '/';
-      final char NEW_LINE = '\n';
-      final String[] SPECIALS = { NEW_LINE+"", "\t" };
-      final boolean SKIP_SPECIAL_HTML = true;
-      //final String[] JUNK_CHARS = { "`","``","''","(",")","-","[","]",":",";","\"",".",",","...","<",">"}; 
-                 
-      // reads the content one character at a time, stop each time
-      // we get to a stop-word (e.g. space or a tag)
-      char[] chars = body.toCharArray();
-      char c;
-      String w = null;
-      String reading = null;
-      boolean skip = false;
-      for (int i = 0; i < chars.length; i++) {
-
-        c = chars[i];
-
-        // if we have found a new open tag
-        if (!skip && c == OPEN_TAG) {
-          // skip to locate the next closing and stop chars
-          skip = true;
-          reading = "";
-          continue;
-        }
-
-        if (skip) {
-          reading += c;
-          // check closing and stop tags
-          if (c == CLOSED_TAG) { // end of opening tag, beginning text
-            // if told to skip special tags and reading
-            // so far shows that it is some special tag then do nothing
-            if (SKIP_SPECIAL_HTML) {
-              // skip <script> and <style>
-              if (!(reading.startsWith("script") || 
-                  reading.startsWith("SCRIPT") ||
-                  reading.startsWith("style") || 
-                  reading.startsWith("STYLE")
-                  )) {
-                w = "";
-              }
-            } else {
-              w = "";
-            }
-          } else if (c == OPEN_TAG) { // begin a new tag, end of text
-            // process reading
-            if (w != null) {
-              w.trim();
-              for (int j = 0; j < SPECIALS.length; j++) {
-                if (w.startsWith(SPECIALS[j]))
-                  w = w.substring(1); // remove special char at the beginning
-                if (w.endsWith(SPECIALS[j]))
-                  w = w.substring(0, w.length() - 1);// remove special char at
-                                                     // the end
-                
-                // replace all remaining special chars by spaces
-                w = w.replaceAll(SPECIALS[j], " ");
-              }
-
-              if (!w.equals("")) {
-                String[] witems = w.split(" ");
-                for (int j = 0; j < witems.length; j++) {
-                  String witem = witems[j].trim();
-                  if (!witem.equals("")) {
-                    //for (int x = 0; x < JUNK_CHARS.length; x++) 
-                    //  witem = witem.replaceAll(JUNK_CHARS[x], "");
-                    
-                    docWords.add(witem);
-                  }
-                }
-              }
-              // reset word
-              w = null;
-            }
-            reading = null;
-            // continue to parse from c
-            skip = false; // stop skipping
-            // decrement i so that we start from c from the next iteration
-            i--;
-          } else if (w != null) {
-            // still inside a text
-            // update word
-            if (c != NEW_LINE)
-              w += c;
-          }
-          // continue; // skip
-        }
+  public Iterator<String> words() {
+    // the words are not kept: the document is indexed with words(TokenHandler), 
+    // so a word list would only be held for the rare caller of this method
+    final ArrayList<String> ws = new ArrayList<>();
+    words(new TokenHandler() {
+      public void token(char[] buf, int start, int len) {
+        ws.add(new String(buf, start, len));
       }
-    } // end body processing
+    });
 
     // create a generator from the body words
-    // note: we could have used the built-in Vector.iterator() method here
-    // instead.
-    if (docWords != null)
-      return new WordGenerator(docWords);
-    else
-      return null;
+    return new WordGenerator(ws);
+  }
+
+  /**
+   * A method to pass all the words in <code>this</code> to a handler in the order that 
+   * they appear, without creating a <code>String</code> for each word.
+   * 
+   * @param h   the handler to pass the words to
+   * @requires  <code>h</code> is not <code>null</code>
+   * @effects   invokes <code>h.token</code> once for each word that {@link #words()} 
+   *            yields, in the same order
+   */
+  public void words(TokenHandler h) {
+    // locates body
+    // note: recall that body has the enclosing <body></body> tag pairs
+    if (!findBody())
+      return;
+
+    CharSequence d = content();
+    int len = bodyEnd - bodyStart;
+    if (d instanceof CharBuffer && ((CharBuffer) d).hasArray()) {
+      // scan the buffer's array in place
+      CharBuffer cb = (CharBuffer) d;
+      HtmlTokenizer.tokenize(cb.array(), cb.arrayOffset() + cb.position() + bodyStart, len, h);
+    } else {
+      char[] chars = new char[len];
+      if (d instanceof String) {
+        ((String) d).getChars(bodyStart, bodyEnd, chars, 0);
+      } else {
+        for (int i = 0; i < len; i++) 
+          chars[i] = d.charAt(bodyStart + i);
+      }
+      HtmlTokenizer.tokenize(chars, 0, len, h);
+    }
   }
 
   public String toString() {
@@ -225,17 +303,17 @@ public class Doc {
    * @author dmle
    *
    */
-  class WordGenerator implements Iterator {
-    Vector words;
+  class WordGenerator implements Iterator<String> {
+    ArrayList<String> words;
     int currWordIndex = -1;
 
     /**
      * 
      * @param words
-     *          a word vector
+     *          a word list
      * @requires <code>words</code> must not be <code>null</code>
      */
-    WordGenerator(Vector words) {
+    WordGenerator(ArrayList<String> words) {
       this.words = words;
     }
 
@@ -243,7 +321,7 @@ public class Doc {
       return (currWordIndex < words.size() - 1);
     }
 
-    public Object next() {
+    public String next() {
       currWordIndex++;
       return words.get(currWordIndex);
     }
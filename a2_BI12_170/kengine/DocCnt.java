@@ -7,12 +7,17 @@ package a2_BI12_170.kengine;
  *           
  *           This class also implements a {@link Comparable} interface to support sorting.
  *           
+ *           A <code>DocCnt</code> that is a query match also carries the score of the 
+ *           document given by the {@link Scorer} of the query; by default the score is 
+ *           the count.
+ *           
  * @see      "Program development in Java", pgs 329-331,334
  * @note     unlike the strict record-type explanation in the text book, 
  *           we use setter and getter methods to implement observers and some mutator methods 
  *           of this class 
  * 
- * @version  4.0  add implementation for comparable interface
+ * @version  4.0  add implementation for comparable interface <br>
+ *           4.1  add score
  *           
  * @author dmle 
  *
@@ -20,10 +25,16 @@ package a2_BI12_170.kengine;
 public class DocCnt implements Comparable {
   private Doc d;
   private int cnt;
+  private float score;
   
   public DocCnt(Doc d, int cnt) {
+    this(d, cnt, cnt);
+  }
+  
+  public DocCnt(Doc d, int cnt, float score) {
     this.d = d;
     this.cnt = cnt;
+    this.score = score;
   }
   
   public Doc getDoc() {
@@ -34,6 +45,10 @@ public class DocCnt implements Comparable {
     return cnt;
   }
   
+  public float getScore() {
+    return score;
+  }
+  
   public void addCount(int newCount) {
     cnt += newCount;
   }
@@ -68,6 +83,6 @@ public class DocCnt implements Comparable {
   
   public Object clone() {
     // only clone the doc count, keep the reference to the doc object unchanged 
-    return new DocCnt(this.d, cnt);
+    return new DocCnt(this.d, cnt, score);
   }
 }
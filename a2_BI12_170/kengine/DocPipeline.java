@@ -0,0 +1,142 @@
+package a2_BI12_170.kengine;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview A staged pipeline that ingests document files in parallel. Each
+ *           file is read on an I/O thread pool, then parsed into a
+ *           <code>Doc</code> and its words counted on a fork-join pool. The
+ *           results are handed to a {@link Sink} one at a time, in file
+ *           order, on the thread that runs the pipeline, so the sink needs no
+ *           synchronisation.
+ *
+ *           At most <code>maxInFlight</code> files are being read or parsed
+ *           at any time: when the window is full the pipeline waits for the
+ *           oldest file before it starts another one. This bounds the memory
+ *           used by documents that are waiting to be merged.
+ *
+ * @version 1.0
+ */
+class DocPipeline {
+  private int parallelism; // number of threads in each pool
+  private int maxInFlight; // max number of files being processed
+
+  /**
+   * @overview The receiver of the parsed documents of a pipeline.
+   */
+  interface Sink {
+    /**
+     * @effects adds <code>d</code>, whose interesting words are counted in
+     *          <code>dt</code>, to the index
+     */
+    void add(Doc d, DocTerms dt);
+  }
+
+  /**
+   * @overview A parsed document and its word counts.
+   */
+  private static class Parsed {
+    Doc d;
+    DocTerms dt;
+
+    Parsed(Doc d, DocTerms dt) {
+      this.d = d;
+      this.dt = dt;
+    }
+  }
+
+  /**
+   * Constructor method
+   *
+   * @param parallelism
+   *          the number of threads used for reading and for parsing
+   * @param maxInFlight
+   *          the maximum number of files being read or parsed at once
+   * @effects if <code>parallelism < 1</code> or
+   *          <code>maxInFlight < 1</code> throws
+   *          <code>NotPossibleException</code>, else initialises
+   *          <code>this</code> with the given settings
+   */
+  DocPipeline(int parallelism, int maxInFlight) throws NotPossibleException {
+    if (parallelism < 1 || maxInFlight < 1)
+      throw new NotPossibleException("DocPipeline.init: invalid settings: "
+          + parallelism + ", " + maxInFlight);
+
+    this.parallelism = parallelism;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * A method to run the pipeline over some files.
+   *
+   * @param files
+   *          the document files
+   * @param wt
+   *          the word table used to count the interesting words
+   * @param sink
+   *          the receiver of the parsed documents
+   * @requires no document is added to <code>wt</code> other than through
+   *           <code>sink</code> while this method runs
+   * @effects reads and parses each file in <code>files</code> and passes it
+   *          to <code>sink</code>, in the order of <code>files</code>. If a
+   *          file cannot be read or parsed, or <code>sink</code> fails,
+   *          abandons the remaining files and throws the exception.
+   */
+  void run(File[] files, final WordTable wt, Sink sink)
+      throws NotPossibleException {
+    ExecutorService io = Executors.newFixedThreadPool(parallelism);
+    ForkJoinPool cpu = new ForkJoinPool(parallelism);
+    ArrayDeque<CompletableFuture<Parsed>> inFlight = new ArrayDeque<>();
+
+    try {
+      for (final File f : files) {
+        if (inFlight.size() == maxInFlight) {
+          merge(inFlight.poll(), sink);
+        }
+
+        inFlight.add(CompletableFuture
+            .supplyAsync(() -> Comm.readFile(f), io)
+            .thenApplyAsync(s -> {
+              Doc d = new Doc(s);
+              d.title(); // parsed here rather than by the sink
+              return new Parsed(d, wt.countWords(d));
+            }, cpu));
+      }
+
+      while (!inFlight.isEmpty()) {
+        merge(inFlight.poll(), sink);
+      }
+    } finally {
+      io.shutdownNow();
+      cpu.shutdownNow();
+    }
+  }
+
+  /**
+   * @effects waits for <code>f</code> and passes its result to
+   *          <code>sink</code>; if <code>f</code> failed throws its
+   *          exception
+   */
+  private void merge(CompletableFuture<Parsed> f, Sink sink) {
+    Parsed p;
+    try {
+      p = f.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      else
+        throw new NotPossibleException("DocPipeline.run: failed to ingest document: " + cause);
+    }
+
+    sink.add(p.d, p.dt);
+  }
+}
@@ -0,0 +1,245 @@
+package a2_BI12_170.kengine;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * @overview The documents of a {@link PostingIndex}, by their dense integer
+ *           ids. The titles are kept in columns rather than in a
+ *           <code>String</code> per document: the characters of all the
+ *           titles one after another in a single array, and the end of each
+ *           title in an array of ids. The content of the documents is only
+ *           kept if <code>this</code> is created to store it, and then as the
+ *           <code>CharSequence</code> it was added with, which for a document
+ *           read from an index file is a view of the mapped file rather than
+ *           a copy on the heap; only a content that is a slice of a larger
+ *           buffer is copied, so that it does not keep that buffer alive.
+ *
+ *           A document that is added is attached to <code>this</code> (see
+ *           <code>Doc.attach</code>): it drops its content and its title and
+ *           reads them from <code>this</code> from then on, so that the only
+ *           per-document objects that <code>this</code> keeps are the
+ *           <code>Doc</code>s themselves, which are returned by
+ *           {@link #doc(int)} so that a document is the same object however it
+ *           is found. A document that is already attached to another store is
+ *           not moved; a copy of it is added instead (see {@link #own(Doc)}),
+ *           and it is the copy that is the document of <code>this</code>.
+ *
+ *           Documents are added by one thread at a time and read by any number
+ *           of threads without locking. The columns are only appended to; a
+ *           full column is replaced by a larger copy, and the new document is
+ *           published by writing the volatile <code>size</code> last. A reader
+ *           reads <code>size</code> before the columns, so it sees every
+ *           document that <code>size</code> counts, in whichever copy of the
+ *           columns it reads.
+ *
+ * @version 1.0 <br>
+ *          1.1 lock-free reads
+ */
+class DocStore {
+  private volatile Doc[] docs; // document id -> Doc
+  private volatile char[] titles; // the characters of the titles, in document id order
+  // document id -> the index after its title in titles, or its complement (~) if 
+  // the document has no title
+  private volatile int[] titleEnd;
+  private volatile CharSequence[] contents; // document id -> content, or null if not stored
+  private volatile int size; // the number of documents, written last by add
+  private int titleLen; // the number of characters in titles, only used by add
+
+  /**
+   * Constructor method
+   *
+   * @param storeContent
+   *          whether the content of the documents is kept, which is needed to
+   *          save them to an index file and by <code>Doc.body()</code> and
+   *          <code>Doc.words()</code>
+   * @effects initialises <code>this</code> to have no documents
+   */
+  DocStore(boolean storeContent) {
+    docs = new Doc[16];
+    titles = new char[256];
+    titleEnd = new int[16];
+    if (storeContent)
+      contents = new CharSequence[16];
+  }
+
+  /**
+   * A method to add a document.
+   *
+   * @modifies <code>this</code>, <code>d</code>
+   * @effects assigns the next document id to <code>d</code>, copies its title
+   *          (and its content if it is stored) to <code>this</code>, attaches
+   *          <code>d</code> to <code>this</code> and returns the id. If
+   *          <code>d</code> is attached to another store, a copy of
+   *          <code>d</code> is added and attached instead.
+   */
+  synchronized int add(Doc d) {
+    d = own(d);
+
+    int id = size;
+    if (id == docs.length) {
+      docs = Arrays.copyOf(docs, id << 1);
+      titleEnd = Arrays.copyOf(titleEnd, id << 1);
+      if (contents != null)
+        contents = Arrays.copyOf(contents, id << 1);
+    }
+
+    String t = d.title();
+    if (t == null) {
+      titleEnd[id] = ~titleLen;
+    } else {
+      char[] cs = titles;
+      if (titleLen + t.length() > cs.length)
+        cs = Arrays.copyOf(cs, Math.max(cs.length << 1, titleLen + t.length()));
+      t.getChars(0, t.length(), cs, titleLen);
+      titles = cs;
+      titleLen += t.length();
+      titleEnd[id] = titleLen;
+    }
+    if (contents != null)
+      contents[id] = compact(d.content());
+
+    docs[id] = d;
+    d.attach(this, id);
+    size = id + 1;
+    return id;
+  }
+
+  /**
+   * @effects if <code>c</code> is a slice of a larger array, as the content 
+   *          of a small file read by <code>TextFileReader.readContent</code> 
+   *          is a slice of a slab shared with other files, returns a copy of 
+   *          <code>c</code> of exactly its size, so that a stored content does 
+   *          not keep the rest of the array from being collected; else returns 
+   *          <code>c</code>
+   */
+  private static CharSequence compact(CharSequence c) {
+    if (c instanceof CharBuffer) {
+      CharBuffer cb = (CharBuffer) c;
+      if (cb.hasArray() && cb.array().length > cb.remaining()) {
+        CharBuffer own = CharBuffer.allocate(cb.remaining());
+        own.put(cb.duplicate());
+        own.flip();
+        return own;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * @effects if <code>d</code> is attached to a store other than
+   *          <code>this</code> returns a new document with the title and
+   *          content of <code>d</code>, else returns <code>d</code>. This is
+   *          the document that {@link #add(Doc)} attaches.
+   */
+  Doc own(Doc d) {
+    if (d.isAttached() && d.idIn(this) < 0)
+      return new Doc(d.title(), d.content());
+    return d;
+  }
+
+  /**
+   * @effects if <code>id</code> is not the id of a document of
+   *          <code>this</code> throws <code>IndexOutOfBoundsException</code>.
+   *          Reading <code>size</code> here is what makes the columns of the
+   *          document visible to the caller.
+   */
+  private void check(int id) throws IndexOutOfBoundsException {
+    if (id < 0 || id >= size)
+      throw new IndexOutOfBoundsException("DocStore: no document with id " + id);
+  }
+
+  /**
+   * @requires <code>0 <= id < size()</code>
+   * @effects returns the document whose id is <code>id</code>
+   */
+  Doc doc(int id) {
+    check(id);
+    return docs[id];
+  }
+
+  /**
+   * @requires <code>0 <= id < size()</code>
+   * @effects returns the title of the document whose id is <code>id</code>,
+   *          or <code>null</code> if it has none. The title is not kept as a
+   *          <code>String</code>, so each call creates one; use
+   *          {@link #titleIs(int, String)} to compare it.
+   */
+  String title(int id) {
+    check(id);
+    int end = titleEnd[id];
+    if (end < 0)
+      return null;
+    int start = titleStart(id);
+    return new String(titles, start, end - start);
+  }
+
+  /**
+   * @requires <code>0 <= id < size()</code> and <code>ct</code> is in
+   *           canonical form
+   * @effects if the document whose id is <code>id</code> has a title whose
+   *          canonical form (see <code>Helpers.canon</code>) is
+   *          <code>ct</code> returns <code>true</code>, else returns
+   *          <code>false</code>. An ASCII title is compared in place, without
+   *          creating a <code>String</code>.
+   */
+  boolean titleIs(int id, String ct) {
+    check(id);
+    int end = titleEnd[id];
+    if (end < 0)
+      return false;
+    if (!Helpers.ASCII_LOWER)
+      return Helpers.canon(title(id)).equals(ct);
+
+    char[] cs = titles;
+    int start = titleStart(id);
+    int n = end - start;
+    for (int i = 0; i < n; i++) {
+      char c = cs[start + i];
+      // the lower case of a non-ASCII character may have another length
+      if (c >= 0x80)
+        return Helpers.canon(title(id)).equals(ct);
+      if (i == ct.length() || Helpers.lower(c) != ct.charAt(i))
+        return false;
+    }
+    return n == ct.length();
+  }
+
+  /**
+   * @requires <code>0 <= id < size()</code>
+   * @effects returns the index of the first character of the title of the
+   *          document whose id is <code>id</code> in <code>titles</code>
+   */
+  private int titleStart(int id) {
+    if (id == 0)
+      return 0;
+    int end = titleEnd[id - 1];
+    return (end < 0) ? ~end : end;
+  }
+
+  /**
+   * @requires <code>0 <= id < size()</code>
+   * @effects returns the content of the document whose id is <code>id</code>,
+   *          or <code>null</code> if <code>this</code> does not store content
+   */
+  CharSequence content(int id) {
+    check(id);
+    CharSequence[] cs = contents;
+    return (cs == null) ? null : cs[id];
+  }
+
+  /**
+   * @effects if <code>this</code> stores the content of its documents returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean storesContent() {
+    return contents != null;
+  }
+
+  /**
+   * @effects returns the number of documents of <code>this</code>
+   */
+  int size() {
+    return size;
+  }
+}
@@ -0,0 +1,48 @@
+package a2_BI12_170.kengine;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+
+/**
+ * @overview The interesting words of a document, as counted by
+ *           {@link WordTable#countWords(Doc)}: the number of occurrences of
+ *           each word and, if the word table is positional, their encoded
+ *           positions (see {@link PostingList#encode(int[], int, int)}). The
+ *           position of a word is its index among all the words of the
+ *           document, including the uninteresting ones.
+ *
+ * @version 1.0
+ */
+class DocTerms {
+  private Hashtable<String, Integer> counts;
+  private HashMap<String, byte[]> positions; // null if not positional
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>positions</code> is <code>null</code> or has the same
+   *           keys as <code>counts</code>
+   * @effects initialises <code>this</code> with the given counts and
+   *          positions
+   */
+  DocTerms(Hashtable<String, Integer> counts, HashMap<String, byte[]> positions) {
+    this.counts = counts;
+    this.positions = positions;
+  }
+
+  /**
+   * @effects returns the table mapping each interesting word to its number of
+   *          occurrences
+   */
+  Hashtable<String, Integer> counts() {
+    return counts;
+  }
+
+  /**
+   * @effects if <code>this</code> has positions returns the encoded positions
+   *          of <code>w</code>, else returns <code>null</code>
+   */
+  byte[] positions(String w) {
+    return (positions == null) ? null : positions.get(w);
+  }
+}
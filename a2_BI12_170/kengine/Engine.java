@@ -1,9 +1,12 @@
 package a2_BI12_170.kengine;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Vector;
 
+import utils.DuplicateException;
 import utils.NotPossibleException;
 
 /**
@@ -12,10 +15,47 @@ import utils.NotPossibleException;
  *           contains a string explaining the problem. All instance methods modify the state of
  *           <code>this</code>.
  *           
+ *           The methods that add documents or change the current query are 
+ *           synchronized, so documents can be added by one thread while others 
+ *           search. The engine publishes an {@link IndexSnapshot} when it is 
+ *           read after documents were added or deleted; searching threads create 
+ *           their own <code>Query</code> objects on {@link #snapshot()}, which 
+ *           read the published index without locking.
+ *           
+ *           {@link #search(String...)} and {@link QuerySession}s give each caller 
+ *           its own query in this way, so one engine can serve many concurrent 
+ *           searchers; <code>queryFirst</code> and <code>queryMore</code> share 
+ *           a single current query and are meant for a single user.
+ *           
+ *           Documents are deleted and replaced by their titles, see 
+ *           {@link #deleteDoc(String)} and {@link #updateDoc(String, Doc)}: a deleted 
+ *           document is marked in the index and skipped by queries from then on, 
+ *           and its postings are reclaimed when its segment is merged.
+ *           
+ *           Standing queries registered with {@link #register(MatchListener, String...)} 
+ *           are matched by a {@link Percolator} against each document as it is 
+ *           added, and their listeners are told of the documents that match.
+ *           
+ *           The results of {@link #search(String...)}, and of {@link #query(String)} 
+ *           for a query that only has words to match, are kept in a bounded 
+ *           {@link QueryCache} until the next document is added or deleted, so 
+ *           a repeated search (with the same words in any order) is answered 
+ *           without evaluating it again; see {@link #setCacheSize(int, long)} 
+ *           and {@link #cacheStats()}.
  * 
  * @see "Program Development in Java", pgs: 313, 316-323, 365
  * 
- * @version 4.0 implement the full logic
+ * @version 4.0 implement the full logic <br>
+ *          5.4 concurrent readers on published snapshots <br>
+ *          5.5 stateless search and query sessions <br>
+ *          5.6 phrase and proximity queries <br>
+ *          5.7 boolean queries <br>
+ *          5.8 keyword patterns and ranges <br>
+ *          5.9 fuzzy keywords <br>
+ *          6.0 standing queries <br>
+ *          6.1 document deletion and update <br>
+ *          6.2 optionally drop the content of indexed documents <br>
+ *          6.3 query result cache
  * @author dmle
  *
  */
@@ -23,10 +63,13 @@ public class Engine {
   private TitleTable tt;
   private WordTable wt;
   private Query q;
+  private Percolator percolator; // the standing queries
+  private QueryCache cache; // the results of recent searches
+  private volatile Scorer scorer; // ranks the matches of new queries
   
   //dmle: use Vector instead of array to ease maintenance  
   // private String[] urls;
-  private Vector urls;
+  private Vector<String> urls;
 
   /**
    * Constructor method 
@@ -36,10 +79,129 @@ public class Engine {
    *          the application state appropriately
    */
   public Engine() throws NotPossibleException {
+    this(false);
+  }
+
+  /**
+   * Constructor method 
+   * 
+   * @param positional  whether the positions of words in the documents are 
+   *          indexed, which {@link #phrase(String...)} and {@link #near(int, String...)} 
+   *          need; this makes the index larger
+   * @effects if uninteresting words cannot be retrieved from the persistent state
+   *          throw <code>NotPossibleException</code> else creates NK and initialises
+   *          the application state appropriately
+   * @version 5.6
+   */
+  public Engine(boolean positional) throws NotPossibleException {
+    this(positional, true);
+  }
+
+  /**
+   * Constructor method 
+   * 
+   * @param positional  whether the positions of words in the documents are 
+   *          indexed (see {@link #Engine(boolean)})
+   * @param storeContent  whether the content of the documents is kept once 
+   *          they are indexed. If not, only the titles of the documents are 
+   *          kept, so an indexed document takes tens of bytes besides its title 
+   *          rather than the size of its content; their <code>body()</code> is 
+   *          then <code>null</code>, they have no <code>words()</code>, and 
+   *          {@link #save(String)} writes them without content
+   * @effects if uninteresting words cannot be retrieved from the persistent state
+   *          throw <code>NotPossibleException</code> else creates NK and initialises
+   *          the application state appropriately
+   * @version 6.2
+   */
+  public Engine(boolean positional, boolean storeContent) throws NotPossibleException {
     tt = new TitleTable();
     // the exception is thrown by this line
-    wt = new WordTable();
-    urls = new Vector();
+    wt = new WordTable(PostingIndex.DEFAULT_FLUSH_DOCS, PostingIndex.DEFAULT_MERGE_FACTOR, 
+        positional, storeContent);
+    urls = new Vector<>();
+    scorer = CountScorer.INSTANCE;
+    percolator = new Percolator();
+    cache = new QueryCache(QueryCache.DEFAULT_MAX_ENTRIES, QueryCache.DEFAULT_MAX_WEIGHT);
+  }
+
+  /**
+   * A method to set the limits of the query result cache.
+   * 
+   * @param maxEntries   the maximum number of queries whose results are cached
+   * @param maxMatches   the maximum number of matches of all the cached results
+   * @effects  if <code>maxEntries < 0</code> or <code>maxMatches < 0</code> throws 
+   *           <code>NotPossibleException</code>, else makes them the limits of the 
+   *           cache and evicts the least recently used results that are over them. 
+   *           A limit of <code>0</code> disables the cache: the cached results are 
+   *           dropped, and searches are evaluated each time and not counted by 
+   *           {@link #cacheStats()}.
+   * @version 6.3
+   */
+  public void setCacheSize(int maxEntries, long maxMatches) throws NotPossibleException {
+    if (maxEntries < 0 || maxMatches < 0)
+      throw new NotPossibleException("Engine.setCacheSize: invalid size: " 
+          + maxEntries + ", " + maxMatches);
+
+    cache.resize(maxEntries, maxMatches);
+  }
+
+  /**
+   * @effects returns the statistics of the query result cache of <code>this</code>, 
+   *           e.g. its hit rate, which tell whether it is large enough
+   * @version 6.3
+   */
+  public CacheStats cacheStats() {
+    return cache.stats();
+  }
+
+  /**
+   * A method to set the scoring function used to rank the matches of new queries.
+   * 
+   * @param s   a scorer, e.g. {@link Bm25Scorer#INSTANCE} or {@link TfIdfScorer#INSTANCE}
+   * @effects   if <code>s</code> is <code>null</code> throws <code>NotPossibleException</code>, 
+   *            else makes <code>s</code> the scorer of the queries created by 
+   *            {@link #queryFirst(String)} from now on. The current query is not affected.
+   * @version 5.3
+   */
+  public synchronized void setScorer(Scorer s) throws NotPossibleException {
+    if (s == null)
+      throw new NotPossibleException("Engine.setScorer: null scorer");
+
+    scorer = s;
+  }
+
+  /**
+   * A method to open an engine from an index file written by {@link #save(String)}.
+   * 
+   * @param path   the path of the index file
+   * @effects  if uninteresting words cannot be retrieved from the persistent state, 
+   *           or <code>path</code> cannot be read as an index file, throws 
+   *           <code>NotPossibleException</code>, else returns a new engine 
+   *           containing the documents, keywords and URLs stored in the file. 
+   *           No document is parsed: the file is memory-mapped by a 
+   *           {@link SegmentReader} and its postings are loaded as they are.
+   * @version 5.2
+   */
+  public static Engine open(String path) throws NotPossibleException {
+    SegmentReader r = new SegmentReader(new File(path));
+    Engine e = new Engine(r.isPositional());
+    r.load(e.tt, e.wt, e.urls);
+    return e;
+  }
+
+  /**
+   * A method to save the documents, keywords and URLs of <code>this</code> to an 
+   * index file, from which {@link #open(String)} can re-create <code>this</code>. 
+   * 
+   * @param path   the path of the index file
+   * @effects  if the index file cannot be written throws 
+   *           <code>NotPossibleException</code>, else writes it using a 
+   *           {@link SegmentWriter}, replacing any existing file at 
+   *           <code>path</code>.
+   * @version 5.2
+   */
+  public synchronized void save(String path) throws NotPossibleException {
+    SegmentWriter.write(new File(path), wt, urls);
   }
 
   /**
@@ -52,16 +214,11 @@ public class Engine {
    *            a <code>Query</code> object containing the documents matching the keyword
    * @version 4.0
    */
-  public Query queryFirst(String w) throws NotPossibleException {
-    if (w != null) 
-      w = Helpers.canon(w);
-    
+  public synchronized Query queryFirst(String w) throws NotPossibleException {
     // check w
-    if (wt.lookup(w) == null) {
-      throw new NotPossibleException("Engine.queryFirst: the specified word is either not found in any documents or uninteresting: " + w);
-    }
+    w = checkKey(wt.snapshot(), w, "Engine.queryFirst");
     
-    q = new Query(wt, w);
+    q = new Query(wt, w, scorer);
     return q;
   }
   
@@ -75,20 +232,408 @@ public class Engine {
    *            an updated <code>Query</code> object containing the documents matching all keywords
    * @version 4.0
    */
-  public Query queryMore(String w) throws NotPossibleException {
-    if (w != null) 
-      w = Helpers.canon(w);
-
+  public synchronized Query queryMore(String w) throws NotPossibleException {
     // check w
-    if (wt.lookup(w) == null) {
-      throw new NotPossibleException("Engine.queryMore: the specified word is either not found in any documents or uninteresting: " + w);
-    }
+    w = checkKey(wt.snapshot(), w, "Engine.queryMore");
 
     q.addKey(w);
     
     return q;
   }
   
+  /**
+   * A method to obtain a snapshot of the index of <code>this</code>.
+   * 
+   * @effects  returns a snapshot of the documents added to <code>this</code>, 
+   *           which includes those of every completed <code>addDoc</code>, 
+   *           <code>addDocs</code> or <code>open</code>. Snapshots are published 
+   *           lazily: if documents were added or deleted since the last one, it 
+   *           is published now, else it is returned without taking any lock. 
+   *           The snapshot never changes; a <code>Query</code> created on it, e.g. 
+   *           <code>new Query(engine.snapshot(), keys, scorer)</code>, is 
+   *           private to the thread that created it.
+   * @version 5.4
+   */
+  public IndexSnapshot snapshot() {
+    return wt.snapshot();
+  }
+
+  /**
+   * A method to search for the documents that contain all of some keywords.
+   * 
+   * @param keys   the keywords to search
+   * @effects  if <code>keys</code> is <code>null</code> or empty, or some element of 
+   *           <code>keys</code> is not a word, is an uninteresting word or is not 
+   *           found in any document, or two elements have the same canonical form, 
+   *           throws <code>NotPossibleException</code>; else returns a new 
+   *           <code>Query</code> containing the documents that match all of 
+   *           <code>keys</code>. The query is created on the current 
+   *           {@link #snapshot()} and is not shared with any other caller, so this 
+   *           method does not lock the engine. If the results for the same keywords 
+   *           (in any order) are cached, the query is a copy of them.
+   * @version 5.5 <br>
+   *          6.3 cached results
+   */
+  public Query search(String... keys) throws NotPossibleException {
+    if (keys == null || keys.length == 0)
+      throw new NotPossibleException("Engine.search: no keywords");
+
+    IndexSnapshot s = snapshot();
+    String[] ws = new String[keys.length];
+    for (int i = 0; i < keys.length; i++)
+      ws[i] = checkKey(s, keys[i], "Engine.search");
+
+    return cachedQuery(s, ws);
+  }
+
+  /**
+   * A method to search for the documents that contain all of some keywords, 
+   * through the query result cache.
+   * 
+   * @requires <code>ws</code> is not empty and its elements are in canonical form
+   * @effects  if some element of <code>ws</code> is repeated throws 
+   *           <code>NotPossibleException</code>, else returns a new <code>Query</code> 
+   *           for <code>ws</code> on <code>s</code>, copied from the cached results 
+   *           if there are some. Otherwise the keywords are evaluated in sorted 
+   *           order, so that the results do not depend on the order of 
+   *           <code>ws</code>, and are cached.
+   */
+  private Query cachedQuery(IndexSnapshot s, String[] ws) throws NotPossibleException {
+    Scorer sc = scorer;
+    String key = QueryCache.key(ws);
+    Query q = cache.get(key, s, sc);
+    if (q == null) {
+      String[] sorted = ws.clone();
+      Arrays.sort(sorted);
+      q = new Query(s, sorted, sc);
+      cache.put(key, q);
+    }
+    return q.copy(ws);
+  }
+
+  /**
+   * A method to search for the documents that satisfy a boolean query.
+   * 
+   * @param expr   the query, e.g. <code>hoang AND (huy OR van) NOT bui</code>: 
+   *           words next to each other must all occur, <code>OR</code> and 
+   *           <code>NOT</code> (in upper case) combine the words, phrases and 
+   *           parenthesised groups around them, a phrase in double quotes 
+   *           matches its words one after the other, and a word with wildcards 
+   *           (<code>hoa*</code>, <code>ho?ng</code>) or a range 
+   *           (<code>[bui TO huy]</code>) matches any keyword that matches it, 
+   *           as does a word followed by <code>~</code> for the keywords a few 
+   *           edits away from it (<code>hoagn~</code>; see {@link QueryParser})
+   * @effects  if <code>expr</code> is <code>null</code> or is not a query, or 
+   *           has no interesting words, or has a phrase and <code>this</code> 
+   *           does not index word positions, or a pattern or range matches more 
+   *           than 1024 keywords, throws <code>NotPossibleException</code>; 
+   *           else returns a new <code>Query</code> on the current {@link #snapshot()} 
+   *           whose matches are the documents that satisfy <code>expr</code>. 
+   *           Uninteresting words are ignored, except in phrases, and a word 
+   *           that is not found in any document matches no document. Like 
+   *           {@link #search(String...)}, this method does not lock the engine, 
+   *           and the results of a query that only has words to match (e.g. 
+   *           <code>hoang huy</code>) are cached.
+   * @version 5.7 <br>
+   *          5.8 keyword patterns and ranges <br>
+   *          5.9 fuzzy keywords <br>
+   *          6.3 cached results
+   */
+  public Query query(String expr) throws NotPossibleException {
+    if (expr == null)
+      throw new NotPossibleException("Engine.query: no query");
+
+    IndexSnapshot s = snapshot();
+    QueryNode root = new QueryParser(wt).parse(expr);
+    String[] ws = root.terms();
+    return (ws != null) ? cachedQuery(s, ws) : new Query(s, root, scorer);
+  }
+
+  /**
+   * A method to search for the documents that contain a possibly misspelled 
+   * keyword.
+   * 
+   * @param w   the keyword
+   * @param maxEdits   the maximum number of characters to insert, delete or 
+   *           replace to turn <code>w</code> into a keyword
+   * @effects  if <code>w</code> is <code>null</code> or empty, or 
+   *           <code>maxEdits</code> is not <code>0</code>, <code>1</code> or 
+   *           <code>2</code>, throws <code>NotPossibleException</code>; else 
+   *           returns a new <code>Query</code> on the current {@link #snapshot()} 
+   *           whose keywords are the (at most 50) keywords within 
+   *           <code>maxEdits</code> edits of <code>w</code> that are nearest to 
+   *           it, and whose matches are the documents that contain any of them. 
+   *           Unlike {@link #queryFirst(String)}, a word that is not found in any 
+   *           document gives a query with no matches rather than an exception.
+   *           The keywords are found with a Levenshtein automaton (see 
+   *           {@link LevenshteinAutomaton}), without comparing <code>w</code> 
+   *           with every keyword.
+   * @version 5.9
+   */
+  public Query fuzzy(String w, int maxEdits) throws NotPossibleException {
+    if (w == null || w.isEmpty())
+      throw new NotPossibleException("Engine.fuzzy: no keyword");
+    if (maxEdits < 0 || maxEdits > LevenshteinAutomaton.MAX_EDITS)
+      throw new NotPossibleException("Engine.fuzzy: invalid number of edits " + maxEdits);
+
+    IndexSnapshot s = snapshot();
+    LevenshteinAutomaton a = new LevenshteinAutomaton(Helpers.canon(w), maxEdits);
+    return new Query(s, new QueryNode.Expansion(a), scorer);
+  }
+
+  /**
+   * A method to search for the documents that contain a phrase.
+   * 
+   * @param words   the words of the phrase; each element may contain several 
+   *           words separated by white space, e.g. <code>"Bui Huy Hoang"</code>
+   * @effects  if <code>this</code> does not index word positions, or the phrase 
+   *           has no interesting words, or one of them is not found in any 
+   *           document, throws <code>NotPossibleException</code>; else returns a 
+   *           new <code>Query</code> on the current {@link #snapshot()} whose 
+   *           matches are the documents in which the words of the phrase occur 
+   *           one after the other. An uninteresting word of the phrase matches 
+   *           any word at its position.
+   * @version 5.6
+   */
+  public Query phrase(String... words) throws NotPossibleException {
+    IndexSnapshot s = snapshot();
+    String[] ws = splitWords(words, "Engine.phrase");
+
+    boolean found = false;
+    for (int i = 0; i < ws.length; i++) {
+      ws[i] = Helpers.canon(ws[i]);
+      if (wt.isInteresting(ws[i])) {
+        ws[i] = checkKey(s, ws[i], "Engine.phrase");
+        found = true;
+      } else {
+        ws[i] = null;
+      }
+    }
+    if (!found)
+      throw new NotPossibleException("Engine.phrase: the phrase has no interesting words");
+
+    return new Query(s, Proximity.phrase(ws), scorer);
+  }
+
+  /**
+   * A method to search for the documents that contain some words close to each other.
+   * 
+   * @param n   the maximum distance between the first and the last of the words
+   * @param words   the words; each element may contain several words separated 
+   *           by white space
+   * @effects  if <code>n < 0</code>, or <code>this</code> does not index word 
+   *           positions, or there is no interesting word in <code>words</code>, 
+   *           or one of them is not found in any document, throws 
+   *           <code>NotPossibleException</code>; else returns a new <code>Query</code> 
+   *           on the current {@link #snapshot()} whose matches are the documents 
+   *           that contain all the interesting words of <code>words</code>, in 
+   *           any order, within <code>n</code> words of each other.
+   * @version 5.6
+   */
+  public Query near(int n, String... words) throws NotPossibleException {
+    if (n < 0)
+      throw new NotPossibleException("Engine.near: invalid distance " + n);
+
+    IndexSnapshot s = snapshot();
+    Vector<String> keys = new Vector<>();
+    for (String w : splitWords(words, "Engine.near")) {
+      w = Helpers.canon(w);
+      if (wt.isInteresting(w) && !keys.contains(w))
+        keys.add(checkKey(s, w, "Engine.near"));
+    }
+    if (keys.isEmpty())
+      throw new NotPossibleException("Engine.near: no interesting words");
+
+    return new Query(s, Proximity.near(keys.toArray(new String[keys.size()]), n), scorer);
+  }
+
+  /**
+   * @param method   the class and name of the invoking method, for the error message
+   * @effects  if <code>this</code> does not index word positions or 
+   *           <code>words</code> has no words throws <code>NotPossibleException</code>, 
+   *           else returns the words of the elements of <code>words</code>, in 
+   *           order, splitting them at white space as documents are
+   */
+  private String[] splitWords(String[] words, String method) throws NotPossibleException {
+    if (!wt.isPositional())
+      throw new NotPossibleException(method + ": word positions are not indexed");
+
+    return split(words, method);
+  }
+
+  /**
+   * @param method   the class and name of the invoking method, for the error message
+   * @effects  if <code>words</code> has no words throws <code>NotPossibleException</code>, 
+   *           else returns the words of the elements of <code>words</code>, in 
+   *           order, splitting them at white space as documents are
+   */
+  private static String[] split(String[] words, String method) throws NotPossibleException {
+    Vector<String> ws = new Vector<>();
+    if (words != null) {
+      for (String w : words) {
+        if (w == null)
+          continue;
+        for (String t : w.split("\\s+")) {
+          if (!t.isEmpty())
+            ws.add(t);
+        }
+      }
+    }
+    if (ws.isEmpty())
+      throw new NotPossibleException(method + ": no words");
+
+    return ws.toArray(new String[ws.size()]);
+  }
+
+  /**
+   * A method to start a query session, i.e. a query that is refined one keyword 
+   * at a time like with <code>queryFirst</code> and <code>queryMore</code>, but 
+   * that belongs to a single caller.
+   * 
+   * @effects  returns a new {@link QuerySession} on <code>this</code>
+   * @version 5.5
+   */
+  public QuerySession openSession() {
+    return new QuerySession(this);
+  }
+
+  /**
+   * @effects returns the scorer of new queries
+   */
+  Scorer scorer() {
+    return scorer;
+  }
+
+  /**
+   * A method to check a keyword of a query.
+   * 
+   * @param s   the snapshot that the query reads
+   * @param w   the keyword
+   * @param method   the class and name of the invoking method, for the error message
+   * @effects  if <code>w</code> is not a word or is not a keyword of <code>s</code> 
+   *           throws <code>NotPossibleException</code>, else returns the canonical 
+   *           form of <code>w</code>
+   */
+  static String checkKey(IndexSnapshot s, String w, String method) throws NotPossibleException {
+    if (w != null) 
+      w = Helpers.canon(w);
+
+    if (w == null || !s.isKeyword(w)) {
+      throw new NotPossibleException(method + ": the specified word is either not found in any documents or uninteresting: " + w);
+    }
+
+    return w;
+  }
+
+  /**
+   * A method to delete a document.
+   * 
+   * @param t   the title of the document to delete
+   * @effects   if there is no document with title <code>t</code> throws 
+   *            <code>NotPossibleException</code>, else removes it from 
+   *            <code>TitleTable</code>, marks it as deleted in <code>WordTable</code> 
+   *            and removes it from the current query (if one exists). Queries on 
+   *            the snapshots published from now on do not match it. No posting 
+   *            is removed or copied, so the cost does not depend on the size of 
+   *            the document or of the index.
+   * @version 6.1
+   */
+  public synchronized void deleteDoc(String t) throws NotPossibleException {
+    delete(t);
+  }
+
+  /**
+   * @effects  as {@link #deleteDoc(String)}
+   */
+  private void delete(String t) throws NotPossibleException {
+    Doc d = tt.removeDoc(t);
+    int id = wt.idOf(d);
+    wt.deleteDoc(d);
+    if (q != null) {
+      q.deleteDoc(id);
+    }
+  }
+
+  /**
+   * A method to replace a document.
+   * 
+   * @param t   the title of the document to replace
+   * @param d   the new document, whose title may differ from <code>t</code>
+   * @effects   if <code>d</code> is <code>null</code> throws <code>NullPointerException</code>; 
+   *            if there is no document with title <code>t</code>, <code>d</code> has 
+   *            no title or another document has the title of <code>d</code>, throws 
+   *            <code>NotPossibleException</code>; else deletes the document with 
+   *            title <code>t</code> (see {@link #deleteDoc(String)}) and adds 
+   *            <code>d</code> (see {@link #addDoc(Doc)}), so that searches see either 
+   *            the old or the new document but never both, and returns the current 
+   *            query. <code>d</code> is checked and its words are counted before the 
+   *            old document is deleted, so if this fails the old document is kept.
+   * @version 6.1
+   */
+  public synchronized Query updateDoc(String t, Doc d) throws NullPointerException, NotPossibleException {
+    if (d == null) {
+      throw new NullPointerException("Engine.updateDoc: null document");
+    }
+
+    Doc old = findDoc(t);
+    if (d.title() == null) {
+      throw new NotPossibleException("Engine.updateDoc: document has no title");
+    }
+    if (tt.contains(d.title()) && findDoc(d.title()) != old) {
+      throw new NotPossibleException("Engine.updateDoc: a document with same title already exists: " + d.title());
+    }
+    DocTerms dt = wt.countWords(d);
+
+    // d has been checked, so the old document is only deleted if d can be added
+    delete(t);
+    add(d, dt);
+    return q;
+  }
+
+  /**
+   * A method to register a standing query, which is matched against the documents 
+   * added from now on.
+   * 
+   * @param l   the listener of the query
+   * @param words   the keywords of the query; each element may contain several 
+   *           words separated by white space
+   * @effects  if <code>l</code> is <code>null</code> or there is no interesting 
+   *           word in <code>words</code> throws <code>NotPossibleException</code>, 
+   *           else registers the query for the interesting words of <code>words</code> 
+   *           and returns its id. Whenever a document that contains all these 
+   *           words is added, <code>l</code> is invoked with the document before 
+   *           the method that adds it returns. The words need not be found in 
+   *           any document yet.
+   * @version 6.0
+   */
+  public synchronized int register(MatchListener l, String... words) throws NotPossibleException {
+    if (l == null)
+      throw new NotPossibleException("Engine.register: null listener");
+
+    Vector<String> keys = new Vector<>();
+    for (String w : split(words, "Engine.register")) {
+      w = Helpers.canon(w);
+      if (wt.isInteresting(w) && !keys.contains(w))
+        keys.add(w);
+    }
+    if (keys.isEmpty())
+      throw new NotPossibleException("Engine.register: no interesting words");
+
+    return percolator.register(keys.toArray(new String[keys.size()]), snapshot(), l);
+  }
+
+  /**
+   * A method to remove a standing query.
+   * 
+   * @param id   the id of the query, as returned by {@link #register(MatchListener, String...)}
+   * @effects  if <code>id</code> is the id of a registered query removes it and 
+   *           returns <code>true</code>, else returns <code>false</code>
+   * @version 6.0
+   */
+  public synchronized boolean unregister(int id) {
+    return percolator.unregister(id);
+  }
+
   /**
    * A method to retrieve a <code>Doc</code> given its title.
    * 
@@ -121,24 +666,15 @@ public class Engine {
    *            any matching new documents.
    * @version 4.0  add each new document to the current query (if one exists)
    */
-  public Query addDocs(String u) throws NotPossibleException {
+  public synchronized Query addDocs(String u) throws NotPossibleException {
     if (urls.contains(u)) 
       throw new NotPossibleException("Engine.addDocs: URL has been used: " + u);
         
     // use Comm.getDocs to obtain documents
     // this method will throw exception if u is not a valid URL
     Iterator docs = Comm.getDocs(u);
-    Doc d;
-    Hashtable h;
     while (docs.hasNext()) {
-      d = (Doc) docs.next();
-      //addDoc(d);
-      tt.addDoc(d);
-      h = wt.addDoc(d);
-      
-      if (q != null) {        
-        q.addDoc(d, h);
-      }
+      add((Doc) docs.next(), null);
     }
     
     if (q == null) {
@@ -151,6 +687,42 @@ public class Engine {
     return q;
   }  
 
+  /**
+   * A method to retrieve documents from remote web site <code>u</code> and store 
+   * them for query processing, using several threads.
+   * 
+   * @param u   the URL of a remote web site
+   * @param parallelism   the number of threads used to read the documents and 
+   *            the number of threads used to parse them
+   * @param maxInFlight   the maximum number of documents that are read or parsed 
+   *            but not yet stored at any time
+   * @effects   behaves as {@link #addDocs(String)}, except that the documents are read 
+   *            and parsed by a {@link DocPipeline} with the given settings; they 
+   *            are stored on the calling thread in the same order. If the settings 
+   *            are not positive throws <code>NotPossibleException</code>.
+   * @version 5.1
+   */
+  public synchronized Query addDocs(String u, int parallelism, int maxInFlight) throws NotPossibleException {
+    if (urls.contains(u)) 
+      throw new NotPossibleException("Engine.addDocs: URL has been used: " + u);
+
+    DocPipeline pipeline = new DocPipeline(parallelism, maxInFlight);
+    pipeline.run(Comm.getFiles(u), wt, new DocPipeline.Sink() {
+      public void add(Doc d, DocTerms dt) {
+        Engine.this.add(d, dt);
+      }
+    });
+
+    if (q == null) {
+      q = new Query();
+    }
+    
+    // stores URL to urls 
+    urls.add(u);
+    
+    return q;
+  }
+
   /**
    * @effects 
    *  if tt is empty
@@ -198,16 +770,40 @@ public class Engine {
   * update this.q to contain any new matching documents. 
   * Return this.q
   */
-  public Query addDoc(Doc d) throws NullPointerException{
+  public synchronized Query addDoc(Doc d) throws NullPointerException{
     if (d == null) {
       throw new NullPointerException("Engine.addDoc: null document");
     }
     
+    add(d, null);
+    return q;
+  }
+
+  /**
+   * @param dt  the counted words of <code>d</code>, or <code>null</code> if they 
+   *            are to be counted here
+   * @requires  <code>d</code> is not <code>null</code>
+   * @modifies  <code>this</code>
+   * @effects   adds <code>d</code> to <code>tt</code> and <code>wt</code>, to the current 
+   *            query (if one exists) and matches it against the standing queries. 
+   *            If <code>d</code> has been added to 
+   *            another engine, it is a copy of <code>d</code> that is added, everywhere 
+   *            (see {@link WordTable#own(Doc)}), so that <code>wt</code> finds it.
+   *            If a document with the same title is already in <code>tt</code> 
+   *            throws <code>DuplicateException</code> and adds nothing.
+   */
+  private void add(Doc d, DocTerms dt) {
+    d = wt.own(d);
+    // d is added to tt only after wt has attached it to its store, so that a 
+    // thread that finds d by title, without locking this, sees it attached
+    String t = Helpers.canon(d.title());
+    if (tt.contains(t))
+      throw new DuplicateException("Engine.add: a document with same title already exists: " + t);
+    Hashtable<String, Integer> h = (dt == null) ? wt.addDoc(d) : wt.addDoc(d, dt);
     tt.addDoc(d);
-    Hashtable h = wt.addDoc(d);
     if (q != null) {
       q.addDoc(d, h);
     }
-    return q;
+    percolator.match(d, h);
   }
 }
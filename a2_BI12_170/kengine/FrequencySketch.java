@@ -0,0 +1,94 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview An estimate of how often each key has been seen recently, in a
+ *           fixed amount of memory: a count-min sketch of four rows of 4-bit
+ *           counters. A key is counted in one counter of each row, chosen by a
+ *           hash of the key, and its frequency is the smallest of the four;
+ *           collisions can only make the estimate too high. When the number
+ *           of keys counted reaches ten times the number of counters of a row
+ *           all the counters are halved, so the frequencies follow the recent
+ *           keys rather than all of them.
+ *
+ *           A {@link QueryCache} uses it to admit the results of a query only
+ *           if the query is asked more often than the one it would evict.
+ *
+ * @version 1.0
+ */
+class FrequencySketch {
+  /** the largest frequency that is counted */
+  static final int MAX_FREQUENCY = 15;
+
+  private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+  private long[] table; // 16 4-bit counters per element, rows one after another
+  private int rowMask; // the number of counters of a row minus 1
+  private int rowLongs; // the number of elements of table per row
+  private int additions; // the number of keys counted since the last halving
+  private int sampleSize; // the number of additions that triggers a halving
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to have seen no key, with enough
+   *          counters for about <code>n</code> distinct keys
+   */
+  FrequencySketch(int n) {
+    int width = 16;
+    while (width < n && width < (1 << 24))
+      width <<= 1;
+    rowMask = width - 1;
+    rowLongs = width >>> 4;
+    table = new long[4 * rowLongs];
+    sampleSize = 10 * width;
+  }
+
+  /**
+   * @effects returns the counter of <code>h</code> in row <code>r</code>, as
+   *          the index of its element in <code>table</code> times 16 plus its
+   *          position in the element
+   */
+  private int counter(int h, int r) {
+    int x = h * SEEDS[r];
+    x ^= x >>> 16;
+    return ((r * rowLongs) << 4) + (x & rowMask);
+  }
+
+  /**
+   * @effects returns the estimated number of times <code>key</code> has been
+   *          counted recently, at most <code>MAX_FREQUENCY</code>
+   */
+  int frequency(String key) {
+    int h = key.hashCode();
+    int f = MAX_FREQUENCY;
+    for (int r = 0; r < 4; r++) {
+      int c = counter(h, r);
+      f = Math.min(f, (int) (table[c >>> 4] >>> ((c & 15) << 2)) & 15);
+    }
+    return f;
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects counts <code>key</code> once more, unless its counters are all
+   *          at <code>MAX_FREQUENCY</code>, and halves all the counters every
+   *          <code>sampleSize</code> additions
+   */
+  void increment(String key) {
+    int h = key.hashCode();
+    for (int r = 0; r < 4; r++) {
+      int c = counter(h, r);
+      int shift = (c & 15) << 2;
+      if (((table[c >>> 4] >>> shift) & 15) < MAX_FREQUENCY)
+        table[c >>> 4] += 1L << shift;
+    }
+
+    if (++additions == sampleSize) {
+      // halve each counter: shift the element and drop the bit that moves
+      // into the counter below
+      for (int i = 0; i < table.length; i++)
+        table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+      additions /= 2;
+    }
+  }
+}
@@ -14,15 +14,54 @@ import utils.NotPossibleException;
  */
 public class Helpers {
   
+  /**
+   * whether the default locale lower-cases ASCII letters to ASCII letters, so that 
+   * <code>'A'..'Z'</code> can be lower-cased by adding 32 (false e.g. in Turkish, 
+   * where <code>'I'</code> becomes a dotless i)
+   */
+  static final boolean ASCII_LOWER = 
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals("abcdefghijklmnopqrstuvwxyz");
+  
   /**
    * A method to produces a canonical form of a given string. 
    * 
    * @param s a <code>String</code> from which a canonical form is to be generated
    * @effects If <code>s</code> is <code>null</code> throws <code>NotPossibleException</code>
    *          else returns a canonical form of <code>s</code>.
-   * @version 2.0 uses the lower-case of <code>s</code> as the canonical form of <code>s</code> 
+   * @version 2.0 uses the lower-case of <code>s</code> as the canonical form of <code>s</code> <br>
+   *          2.1 returns <code>s</code> itself if it is ASCII and already in lower case, 
+   *          and lower-cases other ASCII strings without going through the locale rules
+   */
+  public static String canon(String s) throws NotPossibleException {
+    if (s == null)
+      throw new NotPossibleException("Helpers.canon: null string");
+
+    int n = s.length();
+    boolean upper = false;
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80)
+        return s.toLowerCase();
+      if (c >= 'A' && c <= 'Z')
+        upper = true;
+    }
+
+    if (!upper)
+      return s;
+    if (!ASCII_LOWER)
+      return s.toLowerCase();
+
+    char[] cs = new char[n];
+    for (int i = 0; i < n; i++)
+      cs[i] = lower(s.charAt(i));
+    return new String(cs);
+  }
+
+  /**
+   * @requires <code>c</code> is an ASCII character and <code>ASCII_LOWER</code>
+   * @effects returns the lower case of <code>c</code>
    */
-  public static String canon(String s) throws NotPossibleException {    
-    return s.toLowerCase();
+  static char lower(char c) {
+    return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
   }
 }
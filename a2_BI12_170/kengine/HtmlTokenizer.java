@@ -0,0 +1,127 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview A single-pass tokenizer for HTML text. It scans a character buffer
+ *           once, skipping tags and the content of
+ *           <code>&lt;script&gt;</code> and <code>&lt;style&gt;</code>
+ *           elements, and reports each white-space separated word of the
+ *           remaining text to a {@link TokenHandler} as an offset and a length
+ *           into the buffer. No objects are created while scanning.
+ *
+ * @version 1.0
+ */
+public class HtmlTokenizer {
+  // scanner states
+  private static final int TEXT = 0; // between tags
+  private static final int TAG = 1; // inside a tag
+  private static final int RAW = 2; // inside a script or style element
+
+  private static final char[] SCRIPT = "script".toCharArray();
+  private static final char[] STYLE = "style".toCharArray();
+
+  /**
+   * A method to tokenize a range of a character buffer.
+   *
+   * @param buf
+   *          a buffer containing HTML text
+   * @param off
+   *          the index of the first character to scan
+   * @param len
+   *          the number of characters to scan
+   * @param h
+   *          the handler to report words to
+   * @requires <code>buf</code> and <code>h</code> are not <code>null</code>
+   *           and <code>0 <= off <= off+len <= buf.length</code>
+   * @effects invokes <code>h.token</code> for each word of the text in
+   *          <code>buf[off..off+len)</code> in order, where a word is a maximal
+   *          sequence of characters that are neither white space nor part of a
+   *          tag. Text that comes before the first tag and the content of
+   *          <code>script</code> and <code>style</code> elements are skipped.
+   */
+  public static void tokenize(char[] buf, int off, int len, TokenHandler h) {
+    final int end = off + len;
+    int state = TEXT;
+    boolean seenTag = false; // text is only read after the first tag
+    char[] rawName = null; // the name of the element being skipped in RAW
+    int tagStart = -1; // index of the first character after '<'
+    int wordStart = -1; // index of the first character of the current word
+
+    for (int i = off; i < end; i++) {
+      char c = buf[i];
+
+      switch (state) {
+      case TEXT:
+        if (c == '<') {
+          if (wordStart >= 0) {
+            h.token(buf, wordStart, i - wordStart);
+            wordStart = -1;
+          }
+          state = TAG;
+          tagStart = i + 1;
+        } else if (!seenTag) {
+          // skip
+        } else if (c <= ' ') {
+          if (wordStart >= 0) {
+            h.token(buf, wordStart, i - wordStart);
+            wordStart = -1;
+          }
+        } else if (wordStart < 0) {
+          wordStart = i;
+        }
+        break;
+
+      case TAG:
+        if (c == '>') {
+          seenTag = true;
+          if (isTag(buf, tagStart, i, SCRIPT)) {
+            rawName = SCRIPT;
+            state = RAW;
+          } else if (isTag(buf, tagStart, i, STYLE)) {
+            rawName = STYLE;
+            state = RAW;
+          } else {
+            state = TEXT;
+          }
+        }
+        break;
+
+      default: // RAW
+        // skip up to the matching end tag
+        if (c == '<' && i + 1 < end && buf[i + 1] == '/'
+            && isTag(buf, i + 2, end, rawName)) {
+          state = TAG;
+          tagStart = i + 1;
+        }
+      }
+    }
+
+    if (state == TEXT && wordStart >= 0) {
+      h.token(buf, wordStart, end - wordStart);
+    }
+  }
+
+  /**
+   * A method to check the name of a tag.
+   *
+   * @requires <code>name</code> is in lower case
+   * @effects if <code>buf[from..to)</code> starts with <code>name</code>
+   *          (ignoring case) followed by a character that cannot be part of a
+   *          tag name returns <code>true</code>, else returns
+   *          <code>false</code>
+   */
+  private static boolean isTag(char[] buf, int from, int to, char[] name) {
+    if (to - from < name.length)
+      return false;
+
+    for (int j = 0; j < name.length; j++) {
+      if (Character.toLowerCase(buf[from + j]) != name[j])
+        return false;
+    }
+
+    if (from + name.length == to)
+      return true;
+
+    char next = buf[from + name.length];
+    return next == '>' || next == '/' || next <= ' ';
+  }
+}
@@ -0,0 +1,225 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @overview A segment of a {@link PostingIndex}: the postings of the
+ *           documents whose ids are in a consecutive range
+ *           <code>[base, maxDoc)</code>.
+ *
+ *           A segment is first used as the <i>buffer</i> of the index, to
+ *           which new documents are added. When it is flushed it is
+ *           <i>frozen</i>: its posting lists are packed (see
+ *           {@link PostingList#pack()}) and it is never modified again, so it
+ *           can be read by any thread without locking and merged with its
+ *           neighbours in the background.
+ *
+ *           The keywords of a segment that is not modified any more can also be
+ *           read in sorted order (see {@link #sortedKeywords()}), for the
+ *           queries that match a range of keywords rather than one.
+ *
+ *           The postings of deleted documents stay in a segment until it is
+ *           merged: {@link #merge(IndexSegment[], int, int, BitSet)} drops them.
+ *
+ * @version 1.1 sorted keywords <br>
+ *          1.2 packed posting lists <br>
+ *          1.3 merges drop deleted documents
+ */
+class IndexSegment {
+  private HashMap<String, PostingList> postings; // keyword -> postings
+  private int base; // the id of the first document
+  private int maxDoc; // one more than the id of the last document
+  private volatile String[] sorted; // the keywords in ascending order, made on first use
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to be an empty segment whose
+   *          first document will have id <code>base</code>
+   */
+  IndexSegment(int base) {
+    this(new HashMap<>(), base, base);
+  }
+
+  /**
+   * Constructor method
+   *
+   * @requires the ids in <code>postings</code> are in
+   *           <code>[base, maxDoc)</code>
+   * @effects initialises <code>this</code> to be a segment of the documents
+   *          <code>[base, maxDoc)</code> with the given postings
+   */
+  private IndexSegment(HashMap<String, PostingList> postings, int base, int maxDoc) {
+    this.postings = postings;
+    this.base = base;
+    this.maxDoc = maxDoc;
+  }
+
+  /**
+   * @requires <code>this</code> is not frozen
+   * @modifies <code>this</code>
+   * @effects extends the range of <code>this</code> to include the document
+   *          id <code>id</code>
+   */
+  void addDoc(int id) {
+    maxDoc = id + 1;
+  }
+
+  /**
+   * @requires <code>this</code> is not frozen, <code>id</code> is greater
+   *           than the ids already in <code>this</code>, and <code>p</code> is
+   *           <code>null</code> if and only if the other postings of
+   *           <code>w</code> have no positions
+   * @modifies <code>this</code>
+   * @effects appends <code>&lt;id,cnt&gt;</code> and its encoded positions
+   *          <code>p</code> (if not <code>null</code>) to the posting list of
+   *          <code>w</code>, creating the list if necessary
+   */
+  void addPosting(String w, int id, int cnt, byte[] p) {
+    PostingList pl = postings.get(w);
+    if (pl == null) {
+      pl = new PostingList(p != null);
+      postings.put(w, pl);
+    }
+    if (p == null)
+      pl.add(id, cnt);
+    else
+      pl.add(id, cnt, p);
+  }
+
+  /**
+   * @requires <code>this</code> is not frozen and <code>w</code> is not yet a
+   *           keyword of <code>this</code>
+   * @modifies <code>this</code>
+   * @effects makes <code>pl</code> the posting list of <code>w</code>
+   */
+  void putPostings(String w, PostingList pl) {
+    postings.put(w, pl);
+  }
+
+  /**
+   * @effects if <code>w</code> is a keyword of <code>this</code> returns its
+   *          posting list, else returns <code>null</code>
+   */
+  PostingList postings(String w) {
+    return postings.get(w);
+  }
+
+  /**
+   * @effects returns the keywords of <code>this</code>
+   */
+  Set<String> keywords() {
+    return postings.keySet();
+  }
+
+  /**
+   * @requires <code>this</code> is frozen or is a view
+   * @effects returns the keywords of <code>this</code> in ascending order. The
+   *          array is sorted the first time this method is invoked and shared
+   *          afterwards, so it must not be modified.
+   */
+  String[] sortedKeywords() {
+    String[] ks = sorted;
+    if (ks == null) {
+      // racing threads sort equal arrays, so either can be kept
+      ks = postings.keySet().toArray(new String[postings.size()]);
+      Arrays.sort(ks);
+      sorted = ks;
+    }
+    return ks;
+  }
+
+  /**
+   * @effects returns the number of documents of <code>this</code>
+   */
+  int numDocs() {
+    return maxDoc - base;
+  }
+
+  /**
+   * @effects returns a frozen copy of <code>this</code> whose posting lists
+   *          are packed
+   */
+  IndexSegment freeze() {
+    HashMap<String, PostingList> frozen = new HashMap<>(postings.size() * 4 / 3 + 1);
+    for (Map.Entry<String, PostingList> e : postings.entrySet()) {
+      frozen.put(e.getKey(), e.getValue().pack());
+    }
+    return new IndexSegment(frozen, base, maxDoc);
+  }
+
+  /**
+   * @requires <code>this</code> is not frozen and is only modified by the
+   *           thread that invokes this method
+   * @effects returns a segment with the postings that are in <code>this</code>
+   *          now, whose posting lists are views of those of <code>this</code>
+   *          (see {@link PostingList#view()}). Unlike <code>freeze</code> no
+   *          posting is copied, and the result is not affected by documents
+   *          added to <code>this</code> later.
+   */
+  IndexSegment view() {
+    HashMap<String, PostingList> views = new HashMap<>(postings.size() * 4 / 3 + 1);
+    for (Map.Entry<String, PostingList> e : postings.entrySet()) {
+      views.put(e.getKey(), e.getValue().view());
+    }
+    return new IndexSegment(views, base, maxDoc);
+  }
+
+  /**
+   * A method to merge consecutive segments.
+   *
+   * @param deleted
+   *          the ids of the deleted documents
+   * @requires <code>0 <= from < to <= segs.length</code>, the segments
+   *           <code>segs[from..to)</code> are frozen and each covers the
+   *           document ids that immediately follow those of the previous one
+   * @effects returns a new frozen segment that contains the postings of
+   *          <code>segs[from..to)</code>, except those of the documents in
+   *          <code>deleted</code>; a keyword that is only in deleted documents
+   *          is dropped. If none of the documents of the segments is deleted,
+   *          the lists of a keyword that is in only one of the segments are
+   *          shared; the others are joined and packed again.
+   */
+  static IndexSegment merge(IndexSegment[] segs, int from, int to, BitSet deleted) {
+    int base = segs[from].base;
+    int maxDoc = segs[to - 1].maxDoc;
+    int next = deleted.nextSetBit(base);
+    if (next < 0 || next >= maxDoc)
+      deleted = null; // nothing to drop
+
+    HashMap<String, PostingList> merged = new HashMap<>();
+    HashSet<String> seen = new HashSet<>(); // the keywords merged or dropped
+    PostingList[] parts = new PostingList[to - from];
+    for (int i = from; i < to; i++) {
+      for (String w : segs[i].postings.keySet()) {
+        if (!seen.add(w))
+          continue;
+
+        // collect the lists of w in segment order
+        int n = 0;
+        for (int j = i; j < to; j++) {
+          PostingList pl = segs[j].postings.get(w);
+          if (pl != null)
+            parts[n++] = pl;
+        }
+
+        if (n == 1 && deleted == null) {
+          merged.put(w, parts[0]);
+        } else {
+          PostingList[] wParts = new PostingList[n];
+          System.arraycopy(parts, 0, wParts, 0, n);
+          PostingList pl = PostingList.concat(wParts, deleted);
+          if (pl.size() > 0)
+            merged.put(w, pl.pack());
+        }
+      }
+    }
+
+    return new IndexSegment(merged, base, maxDoc);
+  }
+}
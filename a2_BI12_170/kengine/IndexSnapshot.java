@@ -0,0 +1,257 @@
+package a2_BI12_170.kengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview An immutable, point-in-time view of the keyword index of an
+ *           engine: the documents that had been added, and their postings,
+ *           when the snapshot was published. A {@link Query} created on a
+ *           snapshot sees exactly those documents, however many documents are
+ *           added to the engine afterwards.
+ *
+ *           Snapshots are published by the writer (see
+ *           {@link Engine#snapshot()}) and are never modified, so any number
+ *           of threads can read one at the same time without locking.
+ *
+ *           The postings of a snapshot may include documents that had been
+ *           deleted when it was published (see {@link #isDeleted(int)}), which
+ *           queries must skip.
+ *
+ * @version 1.0 <br>
+ *          1.1 deleted documents
+ */
+public class IndexSnapshot {
+  private IndexSegment[] segments; // frozen segments or views, in id order
+  private DocStore docs; // the engine's documents, only ever appended to
+  private int[] docLens; // document id -> length, for ids < numDocs
+  private int numDocs;
+  private float avgDocLen;
+  private BitSet deleted; // the ids of the deleted documents
+  private long generation;
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>segments</code> are not modified after this call, they
+   *           cover the document ids <code>[0, numDocs)</code>,
+   *           <code>docs</code> and <code>docLens</code> have at least
+   *           <code>numDocs</code> documents and elements, which are not
+   *           modified, and
+   *           <code>deleted</code> is not modified
+   * @effects initialises <code>this</code> to be the snapshot number
+   *          <code>generation</code> of an index with the given content, in
+   *          which the documents in <code>deleted</code> are deleted
+   */
+  IndexSnapshot(IndexSegment[] segments, DocStore docs, int[] docLens,
+      int numDocs, long totalLen, BitSet deleted, long generation) {
+    this.segments = segments;
+    this.docs = docs;
+    this.docLens = docLens;
+    this.numDocs = numDocs;
+    this.avgDocLen = (numDocs == 0) ? 0f : (float) ((double) totalLen / numDocs);
+    this.deleted = deleted;
+    this.generation = generation;
+  }
+
+  /**
+   * @effects returns the number of the publication of <code>this</code>;
+   *          snapshots published later have larger numbers
+   */
+  public long generation() {
+    return generation;
+  }
+
+  /**
+   * @effects returns the number of documents in <code>this</code>, including
+   *          the deleted ones; the document ids are less than this number
+   */
+  public int numDocs() {
+    return numDocs;
+  }
+
+  /**
+   * @effects returns the number of deleted documents in <code>this</code>
+   */
+  public int numDeleted() {
+    return deleted.cardinality();
+  }
+
+  /**
+   * @effects if the document whose id is <code>id</code> is deleted in
+   *          <code>this</code> returns <code>true</code>, else returns
+   *          <code>false</code>
+   */
+  boolean isDeleted(int id) {
+    return deleted.get(id);
+  }
+
+  /**
+   * @effects returns the ids of the deleted documents of <code>this</code>,
+   *          which must not be modified
+   */
+  BitSet deleted() {
+    return deleted;
+  }
+
+  /**
+   * @effects returns the average length of the documents in <code>this</code>,
+   *          or <code>0</code> if it is empty
+   */
+  float avgDocLen() {
+    return avgDocLen;
+  }
+
+  /**
+   * @requires <code>0 <= id < numDocs()</code>
+   * @effects returns the length of the document whose id is <code>id</code>
+   */
+  int docLen(int id) {
+    return docLens[id];
+  }
+
+  /**
+   * @requires <code>id</code> is the id of a document of the engine, which
+   *           may have been added after <code>this</code> was published
+   * @effects returns the document whose id is <code>id</code>
+   */
+  Doc doc(int id) {
+    return docs.doc(id);
+  }
+
+  /**
+   * @effects if <code>w</code> is a keyword of <code>this</code> returns its
+   *          postings, else returns <code>null</code>
+   */
+  Postings postings(String w) {
+    PostingList[] parts = new PostingList[segments.length];
+    int n = 0;
+    for (IndexSegment seg : segments) {
+      PostingList pl = seg.postings(w);
+      if (pl != null && pl.size() > 0)
+        parts[n++] = pl;
+    }
+
+    if (n == 0)
+      return null;
+
+    PostingList[] found = new PostingList[n];
+    System.arraycopy(parts, 0, found, 0, n);
+    return new Postings(found);
+  }
+
+  /**
+   * @effects if <code>w</code> is a keyword of a document of <code>this</code> 
+   *          that is not deleted returns <code>true</code>, else returns 
+   *          <code>false</code>
+   */
+  boolean isKeyword(String w) {
+    for (IndexSegment seg : segments) {
+      if (hasLive(seg.postings(w)))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * @effects if <code>pl</code> is not <code>null</code> and has a posting of 
+   *          a document that is not deleted in <code>this</code> returns 
+   *          <code>true</code>, else returns <code>false</code>. The postings 
+   *          are only read up to the first such one, which is usually the first.
+   */
+  private boolean hasLive(PostingList pl) {
+    if (pl == null || pl.size() == 0)
+      return false;
+    if (deleted.isEmpty())
+      return true;
+
+    PostingIterator it = pl.iterator();
+    while (it.nextDoc() != PostingIterator.NO_MORE_DOCS) {
+      if (!deleted.get(it.doc()))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * A method to find the keywords that match a pattern.
+   *
+   * @param max
+   *          the maximum number of keywords to return
+   * @effects if more than <code>max</code> keywords of <code>this</code> match
+   *          <code>p</code> throws <code>NotPossibleException</code>, else returns
+   *          them in ascending order. A keyword whose documents are all deleted 
+   *          does not match. In each segment the first keyword that can
+   *          match is found by binary search in its sorted keywords, and only
+   *          the keywords up to {@link TermPattern#to()} are read.
+   */
+  String[] keywords(TermPattern p, int max) throws NotPossibleException {
+    TreeSet<String> found = new TreeSet<>();
+    String to = p.to();
+    for (IndexSegment seg : segments) {
+      String[] ks = seg.sortedKeywords();
+      int i = Arrays.binarySearch(ks, p.from());
+      for (i = (i < 0) ? -i - 1 : i; i < ks.length && (to == null || ks[i].compareTo(to) < 0); i++) {
+        if (p.matches(ks[i]) && hasLive(seg.postings(ks[i])) && found.add(ks[i])
+            && found.size() > max)
+          throw new NotPossibleException(
+              "IndexSnapshot.keywords: more than " + max + " keywords match the pattern");
+      }
+    }
+    return found.toArray(new String[found.size()]);
+  }
+
+  /**
+   * A method to find the keywords that are close to a word.
+   *
+   * @param a
+   *          an automaton that accepts the words close to the word
+   * @param max
+   *          the maximum number of keywords to return
+   * @effects returns the (at most <code>max</code>) keywords of <code>this</code>
+   *          that <code>a</code> accepts that are nearest to the word, nearest
+   *          first and in ascending order among those at the same distance.
+   *          A keyword whose documents are all deleted is not returned.
+   *          The automaton is run over the sorted keywords of each segment (see
+   *          {@link LevenshteinAutomaton#run(String[], LevenshteinAutomaton.Acceptor)}),
+   *          which reports only the accepted ones, so the keywords are not
+   *          compared with the word one by one.
+   */
+  String[] keywords(LevenshteinAutomaton a, int max) {
+    TreeMap<String, Integer> found = new TreeMap<>();
+    for (IndexSegment seg : segments) {
+      String[] ks = seg.sortedKeywords();
+      a.run(ks, (i, dist) -> {
+        if (hasLive(seg.postings(ks[i])))
+          found.put(ks[i], dist);
+      });
+    }
+
+    // the map is in keyword order, so a stable sort by distance keeps it among ties
+    ArrayList<Map.Entry<String, Integer>> es = new ArrayList<>(found.entrySet());
+    es.sort(Map.Entry.comparingByValue());
+
+    String[] nearest = new String[Math.min(max, es.size())];
+    for (int i = 0; i < nearest.length; i++)
+      nearest[i] = es.get(i).getKey();
+    return nearest;
+  }
+
+  /**
+   * @effects returns an iterator over the keywords of <code>this</code>, in
+   *          ascending order
+   */
+  Iterator<String> keywords() {
+    TreeSet<String> keys = new TreeSet<>();
+    for (IndexSegment seg : segments)
+      keys.addAll(seg.keywords());
+    return keys.iterator();
+  }
+}
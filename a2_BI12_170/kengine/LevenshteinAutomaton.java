@@ -0,0 +1,184 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+
+/**
+ * @overview An automaton that accepts the strings within a given edit
+ *           distance of a word. An edit is the insertion, deletion or
+ *           substitution of one character, or the transposition of two
+ *           adjacent characters (the most common typing error), e.g.
+ *           <code>hoagn</code> is one edit away from <code>hoang</code>.
+ *
+ *           A state of the automaton is a row of the edit distance table of
+ *           the word: after reading a string <code>s</code>,
+ *           <code>row[i]</code> is the distance between <code>s</code> and
+ *           the first <code>i</code> characters of the word, capped at
+ *           <code>k + 1</code>. A state is <i>dead</i> if every element of its
+ *           row exceeds <code>k</code>: no string that starts with
+ *           <code>s</code> is accepted.
+ *
+ *           The automaton is run over the sorted keywords of a segment as if
+ *           they were a trie (see {@link #run(String[], Acceptor)}): the states of
+ *           the prefix that a keyword shares with the previous one are reused,
+ *           and when a prefix leads to a dead state all the keywords that start
+ *           with it are skipped by binary search. So the cost depends on the
+ *           number of prefixes that stay within <code>k</code> edits of the
+ *           word rather than on the number of keywords, and only the accepted
+ *           keywords are reported.
+ *
+ * @version 1.0 <br>
+ *          1.1 accepted keywords reported to an Acceptor
+ */
+class LevenshteinAutomaton {
+  /** the largest edit distance supported */
+  static final int MAX_EDITS = 2;
+
+  private String w;
+  private int k; // the maximum edit distance
+
+  /**
+   * @overview The receiver of the keywords accepted by a run of an automaton.
+   */
+  interface Acceptor {
+    /**
+     * @effects handles the keyword at index <code>i</code> of the keywords
+     *          run over, which is <code>dist</code> edits away from the word
+     */
+    void accept(int i, int dist);
+  }
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>w</code> is in canonical form and
+   *           <code>0 <= k <= MAX_EDITS</code>
+   * @effects initialises <code>this</code> to accept the strings within
+   *          <code>k</code> edits of <code>w</code>
+   */
+  LevenshteinAutomaton(String w, int k) {
+    this.w = w;
+    this.k = k;
+  }
+
+  /**
+   * @effects returns the edit distance that Lucene-style <i>auto</i> fuzziness
+   *          allows for <code>w</code>: none for words of up to 2 characters,
+   *          1 for words of 3 to 5 characters and 2 for longer words
+   */
+  static int autoEdits(String w) {
+    int n = w.length();
+    return (n <= 2) ? 0 : (n <= 5) ? 1 : 2;
+  }
+
+  /**
+   * @effects returns the start state, i.e. that of the empty string
+   */
+  private int[] start() {
+    int[] row = new int[w.length() + 1];
+    for (int i = 0; i < row.length; i++)
+      row[i] = Math.min(i, k + 1);
+    return row;
+  }
+
+  /**
+   * @param before
+   *          the state before <code>row</code>, or <code>null</code> if
+   *          <code>row</code> is the start state
+   * @param last
+   *          the character read in <code>before</code> to reach <code>row</code>
+   * @requires <code>out.length == row.length</code>
+   * @modifies <code>out</code>
+   * @effects sets <code>out</code> to the state after reading <code>c</code>
+   *          in the state <code>row</code>, and returns <code>true</code> if
+   *          it is not dead, else <code>false</code>. A dead state cannot lead
+   *          to a live one, even by a transposition.
+   */
+  private boolean step(int[] before, char last, int[] row, char c, int[] out) {
+    out[0] = Math.min(row[0] + 1, k + 1);
+    int min = out[0];
+    for (int i = 1; i < row.length; i++) {
+      int d = row[i - 1] + ((w.charAt(i - 1) == c) ? 0 : 1);
+      d = Math.min(d, Math.min(row[i] + 1, out[i - 1] + 1));
+      if (before != null && i > 1 && w.charAt(i - 1) == last && w.charAt(i - 2) == c)
+        d = Math.min(d, before[i - 2] + 1);
+      out[i] = Math.min(d, k + 1);
+      min = Math.min(min, out[i]);
+    }
+    return min <= k;
+  }
+
+  /**
+   * A method to find the accepted keywords of a segment.
+   *
+   * @param ks
+   *          keywords in ascending order
+   * @effects invokes <code>a.accept(i, e)</code>, in ascending order of
+   *          <code>i</code>, for each keyword <code>ks[i]</code> whose edit
+   *          distance <code>e</code> to <code>w</code> is at most
+   *          <code>k</code>. The keywords that start with a prefix that leads
+   *          to a dead state are skipped without being read.
+   */
+  void run(String[] ks, Acceptor a) {
+    // rows[d] is the state after the first d characters of prev, for d <= depth
+    int[][] rows = new int[16][];
+    rows[0] = start();
+    String prev = "";
+    int depth = 0;
+
+    int i = 0;
+    while (i < ks.length) {
+      String t = ks[i];
+      int d = 0;
+      int max = Math.min(depth, Math.min(prev.length(), t.length()));
+      while (d < max && prev.charAt(d) == t.charAt(d))
+        d++;
+
+      // read the rest of t, unless it leads to a dead state
+      boolean alive = true;
+      while (d < t.length()) {
+        if (d + 1 == rows.length)
+          rows = Arrays.copyOf(rows, rows.length * 2);
+        if (rows[d + 1] == null)
+          rows[d + 1] = new int[w.length() + 1];
+        alive = (d == 0) ? step(null, '\0', rows[0], t.charAt(0), rows[1])
+            : step(rows[d - 1], t.charAt(d - 1), rows[d], t.charAt(d), rows[d + 1]);
+        d++;
+        if (!alive)
+          break;
+      }
+
+      prev = t;
+      if (alive) {
+        depth = d;
+        int e = rows[d][w.length()];
+        if (e <= k)
+          a.accept(i, e);
+        i++;
+      } else {
+        // no keyword that starts with t[0..d) is accepted
+        depth = d - 1;
+        i = skip(ks, i + 1, t, d);
+      }
+    }
+  }
+
+  /**
+   * @requires <code>ks[from..)</code> is in ascending order and
+   *           <code>len <= t.length()</code>
+   * @effects returns the index of the first keyword in <code>ks[from..)</code>
+   *          that does not start with the first <code>len</code> characters
+   *          of <code>t</code>
+   */
+  private static int skip(String[] ks, int from, String t, int len) {
+    int lo = from;
+    int hi = ks.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (ks[mid].length() >= len && ks[mid].regionMatches(0, t, 0, len))
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+}
@@ -0,0 +1,21 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview The receiver of the documents that match a standing query
+ *           registered with {@link Engine#register(MatchListener, String...)}.
+ *
+ *           A listener is invoked by the thread that adds the document, while
+ *           the engine is locked, so it should return quickly and must not add
+ *           documents to the engine or register standing queries itself.
+ *
+ * @version 1.0
+ */
+public interface MatchListener {
+  /**
+   * @param dc
+   *          a new document that contains all the keywords of the standing
+   *          query, with the sum of their numbers of occurrences in it
+   * @effects reacts to the match of <code>dc</code>
+   */
+  public void matched(DocCnt dc);
+}
@@ -0,0 +1,381 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview The matches of a query or of a part of it, as parallel arrays sorted
+ *           by document id: <code>ids[0..n)</code> are the document ids in
+ *           ascending order, <code>sums[i]</code> is the sum of the keyword
+ *           counts of <code>ids[i]</code> and <code>scores[i]</code> its score.
+ *
+ *           The operations combine the matches with the postings of a keyword
+ *           or with other matches in place. Postings are read through
+ *           {@link PostingIterator}s, which decode packed lists one block at a
+ *           time, and are never copied to be combined: the shorter side drives
+ *           and each of its ids is located in the other by galloping search.
+ *
+ *           Every match starts from {@link #of(Postings, float, Query)}, which
+ *           skips the documents deleted in the snapshot of the query, so the
+ *           operations that only remove matches never see a deleted one.
+ *
+ * @version 1.0 <br>
+ *          1.1 postings read through iterators <br>
+ *          1.2 deleted documents are skipped
+ */
+class Matches {
+  /**
+   * the fraction of the documents above which a union is accumulated in arrays
+   * indexed by document id rather than merged
+   */
+  private static final int DENSE_RATIO = 8;
+
+  int[] ids;
+  int[] sums;
+  float[] scores;
+  int n;
+
+  /**
+   * Constructor method
+   *
+   * @requires the arrays have at least <code>n</code> elements and
+   *           <code>ids[0..n)</code> is in ascending order
+   * @effects initialises <code>this</code> with the given rep
+   */
+  Matches(int[] ids, int[] sums, float[] scores, int n) {
+    this.ids = ids;
+    this.sums = sums;
+    this.scores = scores;
+    this.n = n;
+  }
+
+  /**
+   * @effects returns new empty matches
+   */
+  static Matches empty() {
+    return new Matches(new int[0], new int[0], new float[0], 0);
+  }
+
+  /**
+   * @param weight
+   *          the scorer's weight of the keyword
+   * @param q
+   *          the query that scores the matches
+   * @effects returns new matches that are the documents of <code>ps</code> that
+   *          are not deleted in the snapshot of <code>q</code>, with their
+   *          counts and scores
+   */
+  static Matches of(Postings ps, float weight, Query q) {
+    int n = ps.size();
+    Matches m = new Matches(new int[n], new int[n], new float[n], 0);
+    IndexSnapshot snap = q.snapshot();
+    int pos = 0;
+    for (int p = 0; p < ps.numParts(); p++) {
+      PostingIterator it = ps.part(p).iterator();
+      for (int id = it.nextDoc(); id != PostingIterator.NO_MORE_DOCS; id = it.nextDoc()) {
+        if (snap.isDeleted(id))
+          continue;
+        m.ids[pos] = id;
+        m.sums[pos] = it.count();
+        m.scores[pos] = q.score(weight, m.sums[pos], id);
+        pos++;
+      }
+    }
+    m.n = pos;
+    return m;
+  }
+
+  /**
+   * A method to intersect <code>this</code> with the postings of a keyword.
+   *
+   * @requires <code>ps</code> is not <code>null</code>
+   * @modifies <code>this</code>
+   * @effects keeps in <code>this</code> only the documents that are also in
+   *          <code>ps</code>, adding their counts in <code>ps</code> to
+   *          <code>sums</code> and their scores to <code>scores</code>, where
+   *          <code>weight</code> is the weight of the keyword. Each part of
+   *          <code>ps</code> is intersected with the matches that fall in its
+   *          id range.
+   */
+  void and(Postings ps, float weight, Query q) {
+    int k = 0; // number of matches kept
+    int i = 0; // first match not yet considered
+    for (int p = 0; p < ps.numParts() && i < n; p++) {
+      PostingList pl = ps.part(p);
+      // the matches up to the last id of pl
+      int end = PostingList.gallop(ids, i, n, pl.lastId() + 1);
+      k = and(pl.iterator(), pl.size(), i, end, k, weight, q);
+      i = end;
+    }
+
+    n = k;
+  }
+
+  /**
+   * A method to intersect some of the matches with a posting list.
+   *
+   * @param it
+   *          a new cursor over a posting list of <code>m</code> postings
+   * @requires <code>k <= from <= to <= n</code>
+   * @modifies <code>this</code>, <code>it</code>
+   * @effects writes the documents of <code>ids[from..to)</code> that are also
+   *          in the list to <code>ids[k..)</code>, with their sums and scores
+   *          increased by their counts and scores in the list, and returns the
+   *          index after the last one written. The shorter of the two drives
+   *          the merge: if it is the matches, the cursor is advanced to each
+   *          of them, else each posting is located in the matches by galloping
+   *          search.
+   */
+  private int and(PostingIterator it, int m, int from, int to, int k, float weight, Query q) {
+    int i = from; // position in ids
+
+    if (to - from <= m) {
+      // matches drive: advance the cursor
+      for (; i < to; i++) {
+        int d = it.advance(ids[i]);
+        if (d == PostingIterator.NO_MORE_DOCS)
+          break;
+        if (d == ids[i]) {
+          ids[k] = d;
+          sums[k] = sums[i] + it.count();
+          scores[k] = scores[i] + q.score(weight, it.count(), d);
+          k++;
+        }
+      }
+    } else {
+      // postings drive: gallop in the matches
+      for (int d = it.nextDoc(); d != PostingIterator.NO_MORE_DOCS && i < to; d = it.nextDoc()) {
+        i = PostingList.gallop(ids, i, to, d);
+        if (i < to && ids[i] == d) {
+          ids[k] = d;
+          sums[k] = sums[i] + it.count();
+          scores[k] = scores[i] + q.score(weight, it.count(), d);
+          k++;
+          i++;
+        }
+      }
+    }
+
+    return k;
+  }
+
+  /**
+   * A method to intersect <code>this</code> with other matches.
+   *
+   * @modifies <code>this</code>
+   * @effects keeps in <code>this</code> only the documents that are also in
+   *          <code>m</code>, adding their sums and scores in <code>m</code>
+   */
+  void and(Matches m) {
+    int k = 0;
+    int j = 0;
+    for (int i = 0; i < n && j < m.n; i++) {
+      j = PostingList.gallop(m.ids, j, m.n, ids[i]);
+      if (j < m.n && m.ids[j] == ids[i]) {
+        ids[k] = ids[i];
+        sums[k] = sums[i] + m.sums[j];
+        scores[k] = scores[i] + m.scores[j];
+        k++;
+        j++;
+      }
+    }
+    n = k;
+  }
+
+  /**
+   * A method to remove the documents of a keyword from <code>this</code>.
+   *
+   * @requires <code>ps</code> is not <code>null</code>
+   * @modifies <code>this</code>
+   * @effects removes from <code>this</code> the documents that are in
+   *          <code>ps</code>. The cursor of each part of <code>ps</code> is
+   *          advanced to the matches in its id range.
+   */
+  void andNot(Postings ps) {
+    int k = 0;
+    int p = 0; // the current part of ps
+    PostingList pl = ps.part(0);
+    PostingIterator it = pl.iterator();
+    for (int i = 0; i < n; i++) {
+      int id = ids[i];
+      while (pl != null && pl.lastId() < id) {
+        pl = (++p < ps.numParts()) ? ps.part(p) : null;
+        it = (pl != null) ? pl.iterator() : null;
+      }
+      if (pl != null && it.advance(id) == id)
+        continue;
+      ids[k] = id;
+      sums[k] = sums[i];
+      scores[k] = scores[i];
+      k++;
+    }
+    n = k;
+  }
+
+  /**
+   * A method to remove the documents of other matches from <code>this</code>.
+   *
+   * @modifies <code>this</code>
+   * @effects removes from <code>this</code> the documents that are in
+   *          <code>m</code>
+   */
+  void andNot(Matches m) {
+    int k = 0;
+    int j = 0;
+    for (int i = 0; i < n; i++) {
+      j = PostingList.gallop(m.ids, j, m.n, ids[i]);
+      if (j < m.n && m.ids[j] == ids[i])
+        continue;
+      ids[k] = ids[i];
+      sums[k] = sums[i];
+      scores[k] = scores[i];
+      k++;
+    }
+    n = k;
+  }
+
+  /**
+   * A method to compute the union of several matches.
+   *
+   * @param ms
+   *          the matches to unite, which may be modified
+   * @param numDocs
+   *          the number of documents, which are numbered from 0
+   * @requires <code>ms</code> is not empty and every id is less than
+   *           <code>numDocs</code>
+   * @effects returns the documents that are in some element of
+   *          <code>ms</code>, each with the sum of its sums and scores in them.
+   *          If the matches cover a large part of the documents they are
+   *          accumulated in arrays indexed by document id with a bit set of the
+   *          ids seen, else they are merged two at a time, smallest first.
+   */
+  static Matches or(Matches[] ms, int numDocs) {
+    long total = 0;
+    for (Matches m : ms)
+      total += m.n;
+
+    if (total * DENSE_RATIO >= numDocs)
+      return orDense(ms, numDocs);
+
+    Matches[] rest = ms.clone();
+    Arrays.sort(rest, (a, b) -> Integer.compare(a.n, b.n));
+    Matches u = rest[0];
+    for (int i = 1; i < rest.length; i++)
+      u = merge(u, rest[i]);
+    return u;
+  }
+
+  /**
+   * @effects returns the union of <code>ms</code> accumulated by document id
+   */
+  private static Matches orDense(Matches[] ms, int numDocs) {
+    BitSet seen = new BitSet(numDocs);
+    int[] sums = new int[numDocs];
+    float[] scores = new float[numDocs];
+    for (Matches m : ms) {
+      for (int i = 0; i < m.n; i++) {
+        int id = m.ids[i];
+        seen.set(id);
+        sums[id] += m.sums[i];
+        scores[id] += m.scores[i];
+      }
+    }
+
+    int n = seen.cardinality();
+    Matches u = new Matches(new int[n], new int[n], new float[n], n);
+    int k = 0;
+    for (int id = seen.nextSetBit(0); id >= 0; id = seen.nextSetBit(id + 1), k++) {
+      u.ids[k] = id;
+      u.sums[k] = sums[id];
+      u.scores[k] = scores[id];
+    }
+    return u;
+  }
+
+  /**
+   * @effects returns the union of <code>a</code> and <code>b</code> merged in
+   *          id order
+   */
+  private static Matches merge(Matches a, Matches b) {
+    int cap = a.n + b.n;
+    Matches u = new Matches(new int[cap], new int[cap], new float[cap], 0);
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < a.n || j < b.n) {
+      if (j == b.n || (i < a.n && a.ids[i] < b.ids[j])) {
+        u.ids[k] = a.ids[i];
+        u.sums[k] = a.sums[i];
+        u.scores[k] = a.scores[i];
+        i++;
+      } else if (i == a.n || b.ids[j] < a.ids[i]) {
+        u.ids[k] = b.ids[j];
+        u.sums[k] = b.sums[j];
+        u.scores[k] = b.scores[j];
+        j++;
+      } else {
+        u.ids[k] = a.ids[i];
+        u.sums[k] = a.sums[i] + b.sums[j];
+        u.scores[k] = a.scores[i] + b.scores[j];
+        i++;
+        j++;
+      }
+      k++;
+    }
+    u.n = k;
+    return u;
+  }
+
+  /**
+   * A method to keep only the matches that satisfy a proximity constraint.
+   *
+   * @requires <code>this</code> is contained in the intersection of the
+   *           postings in <code>snap</code> of the keywords of <code>p</code>
+   * @modifies <code>this</code>
+   * @effects if the postings of the keywords have no positions throws
+   *          <code>NotPossibleException</code>, else removes from
+   *          <code>this</code> the documents in which the positions of the
+   *          keywords do not satisfy <code>p</code>
+   */
+  void filter(Proximity p, IndexSnapshot snap) throws NotPossibleException {
+    String[] ts = p.terms();
+    int k = ts.length;
+    Postings[] lists = new Postings[k];
+    int[] part = new int[k]; // the current part of each list
+    PostingIterator[] its = new PostingIterator[k]; // a cursor over that part
+    int[][] pos = new int[k][];
+    int[] cnt = new int[k];
+    for (int j = 0; j < k; j++) {
+      lists[j] = snap.postings(ts[j]);
+      its[j] = lists[j].part(0).iterator();
+    }
+
+    int kept = 0;
+    for (int i = 0; i < n; i++) {
+      int id = ids[i];
+
+      // the matches are in id order, so each list is read forwards only
+      for (int j = 0; j < k; j++) {
+        while (lists[j].part(part[j]).lastId() < id)
+          its[j] = lists[j].part(++part[j]).iterator();
+        if (!its[j].hasPositions())
+          throw new NotPossibleException("Query.filter: word positions are not indexed");
+
+        its[j].advance(id);
+        pos[j] = its[j].positions(pos[j]);
+        cnt[j] = its[j].count();
+      }
+
+      if (p.matches(pos, cnt)) {
+        ids[kept] = id;
+        sums[kept] = sums[i];
+        scores[kept] = scores[i];
+        kept++;
+      }
+    }
+
+    n = kept;
+  }
+}
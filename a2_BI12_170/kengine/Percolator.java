@@ -0,0 +1,168 @@
+package a2_BI12_170.kengine;
+
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * @overview A set of standing queries, each a set of keywords with a
+ *           {@link MatchListener}, that new documents are matched against as
+ *           they are added: the listener of a query is told of every new
+ *           document that contains all its keywords.
+ *
+ *           Each query is indexed under one of its keywords only, the
+ *           <i>anchor</i>, which is the one in the fewest documents of the
+ *           index when the query is registered: a document that matches the
+ *           query must contain the anchor, and the rarest keyword is the one
+ *           that fewest documents will contain. A new document is matched by
+ *           looking up its keywords (or the anchors, if there are fewer of
+ *           them) in the table of anchors and checking the other keywords of
+ *           only the queries found, so the cost depends on the number of words
+ *           of the document and of the candidate queries rather than on the
+ *           number of registered queries.
+ *
+ * @version 1.0
+ */
+class Percolator {
+  /**
+   * @overview A registered query.
+   */
+  private static class Standing {
+    int id;
+    String[] keys;
+    String anchor;
+    MatchListener l;
+
+    Standing(int id, String[] keys, String anchor, MatchListener l) {
+      this.id = id;
+      this.keys = keys;
+      this.anchor = anchor;
+      this.l = l;
+    }
+  }
+
+  private Hashtable<String, Vector<Standing>> byAnchor; // the queries of each anchor
+  private Hashtable<Integer, Standing> byId;
+  private int nextId;
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to have no queries
+   */
+  Percolator() {
+    byAnchor = new Hashtable<>();
+    byId = new Hashtable<>();
+  }
+
+  /**
+   * A method to register a standing query.
+   *
+   * @param keys
+   *          the keywords of the query, in canonical form and not repeated
+   * @param snap
+   *          the index whose document frequencies choose the anchor
+   * @requires the arguments are not <code>null</code> and <code>keys</code>
+   *           is not empty
+   * @modifies <code>this</code>
+   * @effects adds the query for <code>keys</code> with listener <code>l</code>
+   *          to <code>this</code> and returns its id
+   */
+  int register(String[] keys, IndexSnapshot snap, MatchListener l) {
+    String anchor = null;
+    int min = Integer.MAX_VALUE;
+    for (String k : keys) {
+      Postings ps = snap.postings(k);
+      int df = (ps == null) ? 0 : ps.size();
+      if (df < min) {
+        min = df;
+        anchor = k;
+      }
+    }
+
+    Standing s = new Standing(nextId++, keys.clone(), anchor, l);
+    Vector<Standing> v = byAnchor.get(anchor);
+    if (v == null) {
+      v = new Vector<>();
+      byAnchor.put(anchor, v);
+    }
+    v.add(s);
+    byId.put(s.id, s);
+    return s.id;
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects if <code>id</code> is the id of a query of <code>this</code>
+   *          removes it and returns <code>true</code>, else returns
+   *          <code>false</code>
+   */
+  boolean unregister(int id) {
+    Standing s = byId.remove(id);
+    if (s == null)
+      return false;
+
+    Vector<Standing> v = byAnchor.get(s.anchor);
+    v.remove(s);
+    if (v.isEmpty())
+      byAnchor.remove(s.anchor);
+    return true;
+  }
+
+  /**
+   * @effects returns the number of queries of <code>this</code>
+   */
+  int size() {
+    return byId.size();
+  }
+
+  /**
+   * A method to match a new document against the queries.
+   *
+   * @param h
+   *          the table mapping the interesting words of <code>d</code> to
+   *          their numbers of occurrences, or <code>null</code> if it has none
+   * @effects invokes the listener of each query of <code>this</code> whose
+   *          keywords are all in <code>h</code>, once, with <code>d</code> and
+   *          the sum of the numbers of occurrences of the keywords
+   */
+  void match(Doc d, Hashtable<String, Integer> h) {
+    if (h == null || byAnchor.isEmpty())
+      return;
+
+    if (h.size() <= byAnchor.size()) {
+      for (String w : h.keySet())
+        match(d, h, byAnchor.get(w));
+    } else {
+      for (Map.Entry<String, Vector<Standing>> e : byAnchor.entrySet()) {
+        if (h.containsKey(e.getKey()))
+          match(d, h, e.getValue());
+      }
+    }
+  }
+
+  /**
+   * @effects invokes the listener of each query in <code>cands</code> whose
+   *          keywords are all in <code>h</code>, with <code>d</code> and the
+   *          sum of their numbers of occurrences; does nothing if
+   *          <code>cands</code> is <code>null</code>
+   */
+  private void match(Doc d, Hashtable<String, Integer> h, Vector<Standing> cands) {
+    if (cands == null)
+      return;
+
+    for (Standing s : cands) {
+      int sum = 0;
+      for (String k : s.keys) {
+        Integer c = h.get(k);
+        if (c == null) {
+          sum = -1;
+          break;
+        }
+        sum += c;
+      }
+      if (sum > 0)
+        s.l.matched(new DocCnt(d, sum));
+    }
+  }
+}
@@ -0,0 +1,441 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview An inverted index that maps each interesting word to the
+ *           {@link Postings} of the documents containing it. Documents are
+ *           identified in the postings by dense integer ids, which are
+ *           assigned in the order the documents are added. Uninteresting
+ *           (stop) words are filtered out by the word table (see
+ *           {@link StopWords}) and never get a posting list.
+ *
+ *           The postings are held in {@link IndexSegment}s. New documents go
+ *           to a small in-memory buffer segment; once it holds
+ *           <code>flushDocs</code> documents it is flushed, i.e. frozen and
+ *           appended to the list of segments. Frozen segments are merged by a
+ *           background thread according to a {@link TieredMergePolicy}, so
+ *           neither adding documents nor looking up keywords ever waits for a
+ *           merge.
+ *
+ *           Lookups do not read the segments directly but an
+ *           {@link IndexSnapshot}, which is published lazily: adding or
+ *           deleting a document only marks <code>this</code> as changed, and
+ *           the next reader that asks for a snapshot (see {@link #snapshot()})
+ *           publishes one. A snapshot holds the frozen segments plus a view of
+ *           the buffer segment, so publishing it copies no postings, and
+ *           reading it takes no lock unless it has to be published. A batch
+ *           of documents added between two reads thus costs one view of the
+ *           buffer, not one per document.
+ *
+ *           For scoring, the index also keeps the length of each document,
+ *           i.e. its number of interesting words, and the total length of all
+ *           documents; the document frequency of a keyword is the size of its
+ *           postings.
+ *
+ *           A document is deleted by setting its id in a bit set of
+ *           <i>tombstones</i>, which each snapshot copies when it changes;
+ *           queries drop the deleted documents from their matches. The
+ *           postings of a deleted document are reclaimed when its segment is
+ *           merged, and its id is never reused. Like the document
+ *           frequencies, the collection statistics still count the deleted
+ *           documents until then.
+ *
+ *           The documents themselves are kept by a {@link DocStore}, which
+ *           assigns their ids.
+ *
+ * @version 2.3 stop words moved to StopWords <br>
+ *          2.4 deleted documents <br>
+ *          2.5 documents kept by a DocStore <br>
+ *          2.6 snapshots published lazily, when read
+ */
+class PostingIndex {
+  /** the default number of documents of a flushed segment */
+  static final int DEFAULT_FLUSH_DOCS = 1000;
+  /** the default number of segments merged at once */
+  static final int DEFAULT_MERGE_FACTOR = 10;
+
+  private DocStore docs; // document id -> Doc
+  private int[] docLens; // document id -> length, grown by doubling
+  private long totalLen; // the sum of the document lengths
+  private BitSet deleted; // the ids of the deleted documents
+  private BitSet publishedDeleted; // a copy of deleted as of the last snapshot
+  private boolean deletedChanged; // whether deleted has changed since it was copied
+
+  private int flushDocs; // the number of documents that triggers a flush
+  private TieredMergePolicy mergePolicy;
+  private volatile IndexSegment[] segments; // frozen, in document id order
+  private IndexSegment buffer; // the segment new documents are added to
+  private ExecutorService merger; // background merge thread, created lazily
+  private Future<?> lastMerge; // the most recently scheduled merge
+
+  private volatile IndexSnapshot current; // the most recently published snapshot
+  private volatile boolean dirty; // whether this has changed since it was published
+  private boolean adding; // whether a document is added but not all its postings
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to be an empty index that keeps
+   *          the content of its documents, using the default flush and merge
+   *          settings
+   */
+  PostingIndex() {
+    this(DEFAULT_FLUSH_DOCS, DEFAULT_MERGE_FACTOR, true);
+  }
+
+  /**
+   * Constructor method
+   *
+   * @param flushDocs
+   *          the number of documents of the buffer segment that triggers a
+   *          flush
+   * @param mergeFactor
+   *          the number of segments of a tier that are merged at once
+   * @param storeContent
+   *          whether the content of the documents is kept (see
+   *          {@link DocStore})
+   * @effects if <code>flushDocs < 1</code> or <code>mergeFactor < 2</code>
+   *          throws <code>NotPossibleException</code>, else initialises
+   *          <code>this</code> to be an empty index
+   */
+  PostingIndex(int flushDocs, int mergeFactor, boolean storeContent)
+      throws NotPossibleException {
+    if (flushDocs < 1 || mergeFactor < 2)
+      throw new NotPossibleException("PostingIndex.init: invalid settings: "
+          + flushDocs + ", " + mergeFactor);
+
+    docs = new DocStore(storeContent);
+    docLens = new int[16];
+    deleted = new BitSet();
+    publishedDeleted = new BitSet();
+    this.flushDocs = flushDocs;
+    mergePolicy = new TieredMergePolicy(flushDocs, mergeFactor);
+    segments = new IndexSegment[0];
+    buffer = new IndexSegment(0);
+    current = new IndexSnapshot(segments, docs, docLens, 0, 0, publishedDeleted, 0);
+  }
+
+  /**
+   * @effects returns an iterator over the keywords of <code>this</code>, in
+   *          ascending order
+   */
+  Iterator<String> keywords() {
+    return snapshot().keywords();
+  }
+
+  /**
+   * A method to register a new document with <code>this</code>.
+   *
+   * @param len
+   *          the number of interesting words of <code>d</code>
+   * @requires <code>len >= 0</code>
+   * @modifies <code>this</code>
+   * @effects adds <code>d</code> to the documents of <code>this</code>, which
+   *          assigns it the next document id, records its length and returns
+   *          the id
+   */
+  synchronized int addDoc(Doc d, int len) {
+    int id = docs.add(d);
+    if (id == docLens.length)
+      docLens = Arrays.copyOf(docLens, id << 1);
+    docLens[id] = len;
+    totalLen += len;
+
+    buffer.addDoc(id);
+    dirty = true;
+    adding = true;
+    return id;
+  }
+
+  /**
+   * @effects returns the document that {@link #addDoc(Doc, int)} would add
+   *          for <code>d</code>: <code>d</code> itself, or a copy of it if it
+   *          belongs to another index (see {@link DocStore#own(Doc)})
+   */
+  Doc own(Doc d) {
+    return docs.own(d);
+  }
+
+  /**
+   * A method to delete a document.
+   *
+   * @modifies <code>this</code>
+   * @effects if <code>id</code> is the id of a document of <code>this</code>
+   *          that is not deleted marks it as deleted and returns
+   *          <code>true</code>, else returns <code>false</code>. Its postings
+   *          are left in place.
+   */
+  synchronized boolean delete(int id) {
+    if (id < 0 || id >= docs.size() || deleted.get(id))
+      return false;
+
+    deleted.set(id);
+    deletedChanged = true;
+    dirty = true;
+    return true;
+  }
+
+  /**
+   * @effects returns the number of deleted documents of <code>this</code>
+   */
+  synchronized int numDeleted() {
+    return deleted.cardinality();
+  }
+
+  /**
+   * A method to add a posting for a keyword.
+   *
+   * @requires <code>id</code> is the id of the most recently added document
+   * @modifies <code>this</code>
+   * @param p
+   *          the encoded positions of the occurrences of <code>w</code>, or
+   *          <code>null</code> if positions are not indexed
+   * @effects appends <code>&lt;id,cnt&gt;</code> (and its positions) to the
+   *          posting list of <code>w</code>, creating the list if necessary
+   */
+  synchronized void addPosting(String w, int id, int cnt, byte[] p) {
+    buffer.addPosting(w, id, cnt, p);
+    dirty = true;
+  }
+
+  /**
+   * A method to set the posting list of a keyword.
+   *
+   * @requires <code>w</code> is not yet a keyword of <code>this</code> and the
+   *           ids in <code>pl</code> are ids of documents that were added
+   *           since the last flush
+   * @modifies <code>this</code>
+   * @effects makes <code>pl</code> the posting list of <code>w</code>
+   */
+  synchronized void putPostings(String w, PostingList pl) {
+    buffer.putPostings(w, pl);
+    dirty = true;
+  }
+
+  /**
+   * A method to flush the buffer segment if it is full; invoked after all the
+   * postings of a document have been added.
+   *
+   * @modifies <code>this</code>
+   * @effects if the buffer segment has at least <code>flushDocs</code>
+   *          documents flushes it
+   */
+  synchronized void maybeFlush() {
+    adding = false;
+    if (buffer.numDocs() >= flushDocs)
+      flush();
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects if the buffer segment is not empty freezes it, appends it to the
+   *          segments of <code>this</code>, starts a new buffer segment and
+   *          schedules a background merge
+   */
+  synchronized void flush() {
+    adding = false;
+    if (buffer.numDocs() == 0)
+      return;
+
+    IndexSegment[] segs = segments;
+    IndexSegment[] newSegs = new IndexSegment[segs.length + 1];
+    System.arraycopy(segs, 0, newSegs, 0, segs.length);
+    newSegs[segs.length] = buffer.freeze();
+    segments = newSegs;
+    buffer = new IndexSegment(docs.size());
+    dirty = true;
+
+    if (merger == null) {
+      merger = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "PostingIndex-merger");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    lastMerge = merger.submit(this::mergeSegments);
+  }
+
+  /**
+   * A method that is run by the background merge thread.
+   *
+   * @modifies <code>this</code>
+   * @effects repeatedly merges the segments chosen by the merge policy until
+   *          it chooses none. Only this method removes segments and it runs
+   *          on a single thread, so the merged segments are still at the same
+   *          positions when the result is swapped in; flushes only append.
+   */
+  private void mergeSegments() {
+    while (true) {
+      IndexSegment[] segs = segments;
+      int[] run = mergePolicy.findMerge(segs);
+      if (run == null)
+        return;
+
+      // the expensive part, done without holding the lock; the documents
+      // deleted since the last snapshot are dropped by a later merge
+      IndexSegment merged = IndexSegment.merge(segs, run[0], run[1], current.deleted());
+
+      synchronized (this) {
+        IndexSegment[] cur = segments;
+        IndexSegment[] newSegs = new IndexSegment[cur.length - (run[1] - run[0]) + 1];
+        System.arraycopy(cur, 0, newSegs, 0, run[0]);
+        newSegs[run[0]] = merged;
+        System.arraycopy(cur, run[1], newSegs, run[0] + 1, cur.length - run[1]);
+        segments = newSegs;
+        // the next snapshot reads the merged segment
+        dirty = true;
+      }
+    }
+  }
+
+  /**
+   * @effects waits until the background merges scheduled so far have
+   *          finished; if a merge failed throws
+   *          <code>NotPossibleException</code>
+   */
+  void awaitMerges() throws NotPossibleException {
+    Future<?> f;
+    synchronized (this) {
+      f = lastMerge;
+    }
+
+    if (f != null) {
+      try {
+        f.get();
+      } catch (Exception e) {
+        throw new NotPossibleException("PostingIndex.awaitMerges: merge failed: " + e);
+      }
+    }
+  }
+
+  /**
+   * @effects returns the number of frozen segments of <code>this</code>
+   */
+  int numSegments() {
+    return segments.length;
+  }
+
+  /**
+   * A method to publish the current content of <code>this</code>.
+   *
+   * @modifies <code>this</code>
+   * @effects if <code>this</code> has changed since the last snapshot was
+   *          published, and no document is half added, i.e. added without
+   *          the {@link #maybeFlush()} or {@link #flush()} that follows its
+   *          postings, publishes a new snapshot of it; returns the current
+   *          snapshot. The cost is proportional to the number of keywords of
+   *          the buffer segment, plus the number of documents if some were
+   *          deleted since; no posting is copied.
+   */
+  synchronized IndexSnapshot refresh() {
+    if (dirty && !adding) {
+      IndexSegment[] segs = segments;
+      IndexSegment[] snapSegs;
+      if (buffer.numDocs() == 0) {
+        snapSegs = segs;
+      } else {
+        snapSegs = new IndexSegment[segs.length + 1];
+        System.arraycopy(segs, 0, snapSegs, 0, segs.length);
+        snapSegs[segs.length] = buffer.view();
+      }
+
+      if (deletedChanged) {
+        publishedDeleted = (BitSet) deleted.clone();
+        deletedChanged = false;
+      }
+
+      current = new IndexSnapshot(snapSegs, docs, docLens, docs.size(), totalLen,
+          publishedDeleted, current.generation() + 1);
+      dirty = false;
+    }
+    return current;
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects returns a snapshot of the current content of <code>this</code>:
+   *          if <code>this</code> has changed since the last snapshot was
+   *          published publishes a new one (see {@link #refresh()}), else
+   *          returns the last one without taking any lock
+   */
+  IndexSnapshot snapshot() {
+    return dirty ? refresh() : current;
+  }
+
+  /**
+   * @effects if <code>w</code> is a keyword of <code>this</code> returns its
+   *          postings, else returns <code>null</code>. The postings are read
+   *          from a fresh snapshot, so they are not affected by documents
+   *          added later.
+   */
+  Postings postings(String w) {
+    return snapshot().postings(w);
+  }
+
+  /**
+   * @effects if <code>w</code> is a keyword of <code>this</code> returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean isKeyword(String w) {
+    return snapshot().isKeyword(w);
+  }
+
+  /**
+   * @requires <code>0 <= id < numDocs()</code>
+   * @effects returns the document whose id is <code>id</code>
+   */
+  Doc doc(int id) {
+    return docs.doc(id);
+  }
+
+  /**
+   * @effects if <code>d</code> is in <code>this</code> and not deleted returns 
+   *          its document id, else returns <code>-1</code>
+   */
+  synchronized int idOf(Doc d) {
+    int id = d.idIn(docs);
+    return (id < 0 || deleted.get(id)) ? -1 : id;
+  }
+
+  /**
+   * @effects if <code>this</code> keeps the content of its documents returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean storesContent() {
+    return docs.storesContent();
+  }
+
+  /**
+   * @effects returns the number of documents in <code>this</code>
+   */
+  int numDocs() {
+    return docs.size();
+  }
+
+  /**
+   * @requires <code>0 <= id < numDocs()</code> and <code>id</code> was
+   *           obtained from <code>addDoc</code> or from postings of
+   *           <code>this</code> (which makes the length visible to the caller)
+   * @effects returns the length of the document whose id is <code>id</code>
+   */
+  int docLen(int id) {
+    return docLens[id];
+  }
+
+  /**
+   * @effects returns the average length of the documents in <code>this</code>,
+   *          or <code>0</code> if it is empty
+   */
+  synchronized float avgDocLen() {
+    int n = docs.size();
+    return (n == 0) ? 0f : (float) ((double) totalLen / n);
+  }
+}
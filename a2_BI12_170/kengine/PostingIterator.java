@@ -0,0 +1,238 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview A cursor over the postings of a {@link PostingList}, in ascending
+ *           document id order. The cursor is positioned before the first
+ *           posting when it is created and is moved forwards only, by
+ *           {@link #nextDoc()} or {@link #advance(int)}.
+ *
+ *           Over a packed list the cursor decodes one block at a time into
+ *           arrays of <code>BlockCodec.BLOCK_SIZE</code> elements, so a list is
+ *           never expanded as a whole; the counts of a block are only decoded
+ *           if {@link #count()} is invoked on one of its postings. Over an
+ *           unpacked list it reads the arrays of the list.
+ *
+ *           {@link #advance(int)} uses the skip pointers of a packed list (the
+ *           last id of each block) to find the block of its target by galloping
+ *           search and decodes only that block, so intersecting a short list
+ *           with a long one decodes at most one block of the long list per
+ *           posting of the short one.
+ *
+ * @version 1.0 <br>
+ *          1.1 skip pointers
+ */
+class PostingIterator {
+  /** the document id of a cursor that is past the last posting */
+  static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+  private int size; // the number of postings of the list
+  private byte[] blocks; // the blocks of a packed list, or null
+  private int[] blockStart; // the offset of each block in blocks
+  private int[] blockLast; // the last id of each block
+  private byte[] pos; // the encoded positions of the list, or null
+  private int[] posEnd; // of an unpacked list: the end of the positions of each posting
+  private int[] blockPos; // of a packed list: the offset of the positions of each block
+
+  // the current block: the postings ids[0..n), cnts[0..n)
+  private int[] ids;
+  private int[] cnts;
+  private int n;
+  private int block; // the index of the block
+  private int cntOff; // the offset of its counts in blocks, or -1 if they are in cnts
+  private int i; // the index of the current posting in the block, -1 before the first
+  private int doc; // the id of the current posting, -1 before the first
+
+  // of a packed list: the positions of posting posIdx of the block start at posOff
+  private int posIdx;
+  private int posOff;
+
+  /**
+   * Constructor method
+   *
+   * @requires the arrays are those of an unpacked posting list of
+   *           <code>size</code> postings (<code>pos</code> and
+   *           <code>posEnd</code> are <code>null</code> if it is not
+   *           positional) and are not modified while <code>this</code> is used
+   * @effects initialises <code>this</code> to be a cursor over the list,
+   *          before its first posting
+   */
+  PostingIterator(int[] ids, int[] cnts, int size, byte[] pos, int[] posEnd) {
+    this.size = size;
+    this.ids = ids;
+    this.cnts = cnts;
+    this.n = size;
+    this.pos = pos;
+    this.posEnd = posEnd;
+    this.cntOff = -1;
+    this.i = -1;
+    this.doc = -1;
+  }
+
+  /**
+   * Constructor method
+   *
+   * @requires the arrays are those of a packed posting list of
+   *           <code>size</code> postings (<code>pos</code> and
+   *           <code>blockPos</code> are <code>null</code> if it is not
+   *           positional) and are not modified
+   * @effects initialises <code>this</code> to be a cursor over the list,
+   *          before its first posting
+   */
+  PostingIterator(byte[] blocks, int[] blockStart, int[] blockLast, int size, byte[] pos,
+      int[] blockPos) {
+    this.size = size;
+    this.blocks = blocks;
+    this.blockStart = blockStart;
+    this.blockLast = blockLast;
+    this.pos = pos;
+    this.blockPos = blockPos;
+    this.ids = new int[BlockCodec.BLOCK_SIZE];
+    this.cnts = new int[BlockCodec.BLOCK_SIZE];
+    this.n = 0;
+    this.block = -1;
+    this.i = -1;
+    this.doc = -1;
+  }
+
+  /**
+   * @effects returns the document id of the current posting, <code>-1</code>
+   *          if the cursor is before the first posting or
+   *          <code>NO_MORE_DOCS</code> if it is past the last one
+   */
+  int doc() {
+    return doc;
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects moves the cursor to the next posting and returns its document
+   *          id, or <code>NO_MORE_DOCS</code> if there is none
+   */
+  int nextDoc() {
+    if (doc == NO_MORE_DOCS)
+      return doc;
+    if (++i == n) {
+      if (blocks == null || block + 1 == blockStart.length)
+        return doc = NO_MORE_DOCS;
+      readBlock(block + 1);
+      i = 0;
+    }
+    return doc = ids[i];
+  }
+
+  /**
+   * A method to move the cursor to a document.
+   *
+   * @modifies <code>this</code>
+   * @effects moves the cursor forwards to the first posting whose document id
+   *          is at least <code>target</code> (staying where it is if the
+   *          current posting is such a posting) and returns its id, or
+   *          <code>NO_MORE_DOCS</code> if there is none. If the posting is
+   *          not in the current block, the block that contains it is found by
+   *          the skip pointers and is the only one decoded.
+   */
+  int advance(int target) {
+    if (doc >= target)
+      return doc;
+
+    if (n == 0 || ids[n - 1] < target) {
+      if (blocks == null || blockLast[blockLast.length - 1] < target) {
+        i = n;
+        return doc = NO_MORE_DOCS;
+      }
+      readBlock(PostingList.gallop(blockLast, block + 1, blockLast.length, target));
+      i = 0;
+    }
+
+    i = PostingList.gallop(ids, Math.max(i, 0), n, target);
+    return doc = ids[i];
+  }
+
+  /**
+   * @requires the cursor is on a posting
+   * @effects returns the keyword count of the current posting
+   */
+  int count() {
+    if (cntOff >= 0) {
+      BlockCodec.decodeCounts(blocks, cntOff, n, cnts);
+      cntOff = -1;
+    }
+    return cnts[i];
+  }
+
+  /**
+   * @effects if the list is positional returns <code>true</code>, else
+   *          returns <code>false</code>
+   */
+  boolean hasPositions() {
+    return pos != null;
+  }
+
+  /**
+   * A method to read the positions of the current posting.
+   *
+   * @requires the list is positional and the cursor is on a posting
+   * @effects returns an array whose first <code>count()</code> elements are
+   *          the positions of the current posting in ascending order; this is
+   *          <code>buf</code> if it is long enough, else a new array
+   */
+  int[] positions(int[] buf) {
+    int c = count();
+    if (buf == null || buf.length < c)
+      buf = new int[Math.max(c, 8)];
+    PostingList.decode(pos, positionsFrom(), c, buf);
+    return buf;
+  }
+
+  /**
+   * @requires the list is positional and the cursor is on a posting
+   * @effects returns the offset of the encoded positions of the current
+   *          posting in {@link #positionBytes()}
+   */
+  int positionsFrom() {
+    if (blocks == null)
+      return (i == 0) ? 0 : posEnd[i - 1];
+
+    count(); // the counts of the block give the number of positions to skip
+    while (posIdx < i)
+      posOff = PostingList.skip(pos, posOff, cnts[posIdx++]);
+    return posOff;
+  }
+
+  /**
+   * @requires the list is positional and the cursor is on a posting
+   * @effects returns the offset after the encoded positions of the current
+   *          posting in {@link #positionBytes()}
+   */
+  int positionsTo() {
+    if (blocks == null)
+      return posEnd[i];
+    return PostingList.skip(pos, positionsFrom(), count());
+  }
+
+  /**
+   * @requires the list is positional
+   * @effects returns the encoded positions of the list, which must not be
+   *          modified
+   */
+  byte[] positionBytes() {
+    return pos;
+  }
+
+  /**
+   * @requires the list is packed and <code>block < k</code>
+   * @modifies <code>this</code>
+   * @effects decodes the ids of block <code>k</code> and makes it the current
+   *          block
+   */
+  private void readBlock(int k) {
+    int base = (k == 0) ? -1 : blockLast[k - 1];
+    block = k;
+    n = Math.min(BlockCodec.BLOCK_SIZE, size - k * BlockCodec.BLOCK_SIZE);
+    cntOff = BlockCodec.decodeIds(blocks, blockStart[k], n, base, ids);
+    if (pos != null) {
+      posIdx = 0;
+      posOff = blockPos[k];
+    }
+  }
+}
@@ -0,0 +1,558 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * @overview A posting list of a keyword: a sequence of <code>&lt;id,cnt&gt;</code>
+ *           pairs, where <code>id</code> is the integer id of a document that
+ *           contains the keyword and <code>cnt</code> is the number of
+ *           occurrences of the keyword in that document.
+ *
+ *           Postings are stored in two parallel <code>int</code> arrays (rather
+ *           than as <code>DocCnt</code> objects in a <code>Vector</code>) so that
+ *           a posting costs 8 bytes of heap and no object header. Postings are
+ *           appended in increasing document id order, so the ids are sorted
+ *           and can be searched with {@link #gallop(int, int)}.
+ *
+ *           A list can also be <i>positional</i>: then each posting has the
+ *           word positions of its <code>cnt</code> occurrences, in ascending
+ *           order. The positions are delta-encoded (the first one relative to
+ *           0) as variable-length integers, 7 bits per byte with the high bit
+ *           set on all but the last byte, and the bytes of all the postings
+ *           are kept in one array, so a posting with small gaps between its
+ *           occurrences takes about one byte per occurrence.
+ *
+ *           A list that is not modified any more can be <i>packed</i> (see
+ *           {@link #pack()}): its postings are then compressed in blocks of
+ *           <code>BlockCodec.BLOCK_SIZE</code> (see {@link BlockCodec}), which
+ *           typically takes one to two bytes per posting rather than eight. A
+ *           packed list is read with a {@link PostingIterator}, which decodes
+ *           one block at a time; the methods that read a posting by its index
+ *           are only for unpacked lists. The last id of each block is kept
+ *           uncompressed as a <i>skip pointer</i>, so a cursor can jump to the
+ *           block that contains a document without decoding the blocks before
+ *           it.
+ *
+ * @version 1.1 optional positions <br>
+ *          1.2 packed lists <br>
+ *          1.3 skip pointers
+ */
+class PostingList {
+  private static final int INIT_CAPACITY = 4;
+
+  private int[] ids; // document ids, or null if packed
+  private int[] cnts; // keyword counts, cnts[i] is the count for ids[i]
+  private int size; // number of postings
+  private byte[] pos; // the encoded positions of all postings, or null
+  private int[] posEnd; // posEnd[i] is the end of the positions of posting i in pos
+
+  // the packed form
+  private byte[] blocks; // the encoded blocks, or null if not packed
+  private int[] blockStart; // blockStart[k] is the offset of block k in blocks
+  private int[] blockPos; // blockPos[k] is the offset of the positions of block k in pos
+  private int[] blockLast; // blockLast[k] is the id of the last posting of block k
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to be an empty posting list
+   */
+  PostingList() {
+    this(false);
+  }
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to be an empty posting list, which
+   *          is positional if <code>positional</code> is <code>true</code>
+   */
+  PostingList(boolean positional) {
+    ids = new int[INIT_CAPACITY];
+    cnts = new int[INIT_CAPACITY];
+    size = 0;
+    if (positional) {
+      pos = new byte[INIT_CAPACITY * 4];
+      posEnd = new int[INIT_CAPACITY];
+    }
+  }
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>ids</code> and <code>cnts</code> have the same length and
+   *           <code>ids</code> is sorted in ascending order
+   * @effects initialises <code>this</code> to contain the postings
+   *          <code>&lt;ids[i],cnts[i]&gt;</code>, using the arrays as they are
+   */
+  PostingList(int[] ids, int[] cnts) {
+    this.ids = ids;
+    this.cnts = cnts;
+    this.size = ids.length;
+  }
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>ids</code> and <code>cnts</code> have at least
+   *           <code>size</code> elements and <code>ids[0..size)</code> is
+   *           sorted in ascending order
+   * @effects initialises <code>this</code> to contain the postings
+   *          <code>&lt;ids[i],cnts[i]&gt;</code> for <code>i < size</code>,
+   *          using the arrays as they are
+   */
+  private PostingList(int[] ids, int[] cnts, int size) {
+    this.ids = ids;
+    this.cnts = cnts;
+    this.size = size;
+  }
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>ids</code>, <code>cnts</code> and <code>posEnd</code> have
+   *           the same length, <code>ids</code> is sorted in ascending order and
+   *           <code>pos[posEnd[i-1]..posEnd[i])</code> (with
+   *           <code>posEnd[-1] = 0</code>) encodes <code>cnts[i]</code>
+   *           positions
+   * @effects initialises <code>this</code> to be a positional list of the
+   *          postings <code>&lt;ids[i],cnts[i]&gt;</code> with the given
+   *          positions, using the arrays as they are
+   */
+  PostingList(int[] ids, int[] cnts, byte[] pos, int[] posEnd) {
+    this(ids, cnts, ids.length);
+    this.pos = pos;
+    this.posEnd = posEnd;
+  }
+
+  /**
+   * Constructor method
+   *
+   * @requires the arrays are the packed form of <code>size</code> postings
+   * @effects initialises <code>this</code> to be a packed list with the given
+   *          rep
+   */
+  private PostingList(byte[] blocks, int[] blockStart, int[] blockLast, int size, byte[] pos,
+      int[] blockPos) {
+    this.blocks = blocks;
+    this.blockStart = blockStart;
+    this.size = size;
+    this.blockLast = blockLast;
+    this.pos = pos;
+    this.blockPos = blockPos;
+  }
+
+  /**
+   * A method to append a posting to <code>this</code>.
+   *
+   * @param id
+   *          a document id
+   * @param cnt
+   *          the number of occurrences of the keyword in the document
+   * @requires <code>this</code> is not packed
+   * @modifies <code>this</code>
+   * @effects appends <code>&lt;id,cnt&gt;</code> to the end of <code>this</code>,
+   *          growing the arrays if they are full
+   */
+  void add(int id, int cnt) {
+    if (size == ids.length) {
+      int newCapacity = ids.length << 1;
+      int[] newIds = new int[newCapacity];
+      int[] newCnts = new int[newCapacity];
+      System.arraycopy(ids, 0, newIds, 0, size);
+      System.arraycopy(cnts, 0, newCnts, 0, size);
+      ids = newIds;
+      cnts = newCnts;
+      if (posEnd != null) {
+        int[] newEnd = new int[newCapacity];
+        System.arraycopy(posEnd, 0, newEnd, 0, size);
+        posEnd = newEnd;
+      }
+    }
+
+    ids[size] = id;
+    cnts[size] = cnt;
+    size++;
+  }
+
+  /**
+   * A method to append a posting with its positions to <code>this</code>.
+   *
+   * @param id
+   *          a document id
+   * @param cnt
+   *          the number of occurrences of the keyword in the document
+   * @param p
+   *          the positions of the occurrences, encoded by
+   *          {@link #encode(int[], int, int)}
+   * @requires <code>this</code> is positional and not packed
+   * @modifies <code>this</code>
+   * @effects appends <code>&lt;id,cnt&gt;</code> and its positions to the end
+   *          of <code>this</code>
+   */
+  void add(int id, int cnt, byte[] p) {
+    int start = posEnd(size - 1);
+    if (start + p.length > pos.length) {
+      byte[] newPos = new byte[Math.max(start + p.length, pos.length << 1)];
+      System.arraycopy(pos, 0, newPos, 0, start);
+      pos = newPos;
+    }
+    System.arraycopy(p, 0, pos, start, p.length);
+
+    add(id, cnt);
+    posEnd[size - 1] = start + p.length;
+  }
+
+  /**
+   * @requires <code>this</code> is not packed
+   * @effects returns a new posting list with the same postings as
+   *          <code>this</code> whose arrays are exactly as long as needed
+   */
+  PostingList copy() {
+    int[] newIds = new int[size];
+    int[] newCnts = new int[size];
+    System.arraycopy(ids, 0, newIds, 0, size);
+    System.arraycopy(cnts, 0, newCnts, 0, size);
+    if (pos == null)
+      return new PostingList(newIds, newCnts);
+
+    int[] newEnd = new int[size];
+    System.arraycopy(posEnd, 0, newEnd, 0, size);
+    byte[] newPos = new byte[posEnd(size - 1)];
+    System.arraycopy(pos, 0, newPos, 0, newPos.length);
+    return new PostingList(newIds, newCnts, newPos, newEnd);
+  }
+
+  /**
+   * @requires <code>this</code> is not packed
+   * @effects returns a posting list with the postings that are in
+   *          <code>this</code> now, which shares the arrays of
+   *          <code>this</code>. Appending to <code>this</code> only writes
+   *          past the end of the view (or to new arrays), so the view never
+   *          changes and costs no copying.
+   */
+  PostingList view() {
+    PostingList v = new PostingList(ids, cnts, size);
+    v.pos = pos;
+    v.posEnd = posEnd;
+    return v;
+  }
+
+  /**
+   * A method to compress <code>this</code>.
+   *
+   * @requires <code>this</code> is not packed
+   * @effects returns a new packed posting list with the same postings as
+   *          <code>this</code>
+   */
+  PostingList pack() {
+    int numBlocks = (size + BlockCodec.BLOCK_SIZE - 1) / BlockCodec.BLOCK_SIZE;
+    int[] starts = new int[numBlocks];
+    int[] last = new int[numBlocks];
+    int[] bpos = (pos != null) ? new int[numBlocks] : null;
+    byte[] out = new byte[BlockCodec.maxBytes(size)];
+    int[] tmp = new int[BlockCodec.BLOCK_SIZE];
+
+    int off = 0;
+    int base = -1;
+    for (int k = 0; k < numBlocks; k++) {
+      int from = k * BlockCodec.BLOCK_SIZE;
+      int n = Math.min(BlockCodec.BLOCK_SIZE, size - from);
+      starts[k] = off;
+      off = BlockCodec.encode(ids, cnts, from, n, base, tmp, out, off);
+      base = last[k] = ids[from + n - 1];
+      if (bpos != null)
+        bpos[k] = posEnd(from - 1);
+    }
+
+    byte[] newPos = (pos != null) ? Arrays.copyOf(pos, posEnd(size - 1)) : null;
+    return new PostingList(Arrays.copyOf(out, off), starts, last, size, newPos, bpos);
+  }
+
+  /**
+   * @effects if <code>this</code> is packed returns a new unpacked posting
+   *          list with the same postings, else returns <code>this</code>
+   */
+  PostingList unpack() {
+    return (blocks == null) ? this : concat(new PostingList[] { this });
+  }
+
+  /**
+   * @effects if <code>this</code> is packed returns <code>true</code>, else
+   *          returns <code>false</code>
+   */
+  boolean isPacked() {
+    return blocks != null;
+  }
+
+  /**
+   * @effects returns a new cursor over the postings of <code>this</code>
+   */
+  PostingIterator iterator() {
+    if (blocks != null)
+      return new PostingIterator(blocks, blockStart, blockLast, size, pos, blockPos);
+    return new PostingIterator(ids, cnts, size, pos, posEnd);
+  }
+
+  /**
+   * @requires <code>this</code> is not empty
+   * @effects returns the document id of the last posting of <code>this</code>
+   */
+  int lastId() {
+    return (blocks != null) ? blockLast[blockLast.length - 1] : ids[size - 1];
+  }
+
+  /**
+   * A method to join posting lists that cover consecutive ranges of documents.
+   *
+   * @requires <code>lists</code> is not empty and each id of
+   *           <code>lists[i]</code> is smaller than every id of
+   *           <code>lists[i+1]</code>
+   * @effects returns a new unpacked posting list containing the postings of
+   *          all of <code>lists</code> in order; it is positional if all of
+   *          <code>lists</code> are
+   */
+  static PostingList concat(PostingList[] lists) {
+    return concat(lists, null);
+  }
+
+  /**
+   * A method to join posting lists and drop the postings of deleted documents.
+   *
+   * @param deleted
+   *          the ids of the deleted documents, or <code>null</code> if there
+   *          are none
+   * @requires as {@link #concat(PostingList[])}
+   * @effects returns a new unpacked posting list containing the postings of
+   *          all of <code>lists</code> in order, except those whose ids are in
+   *          <code>deleted</code>; it is positional if all of
+   *          <code>lists</code> are
+   */
+  static PostingList concat(PostingList[] lists, BitSet deleted) {
+    int total = 0;
+    int totalBytes = 0;
+    boolean positional = true;
+    for (PostingList pl : lists) {
+      total += pl.size;
+      if (pl.pos == null)
+        positional = false;
+      else
+        totalBytes += (pl.blocks != null) ? pl.pos.length : pl.posEnd(pl.size - 1);
+    }
+
+    int[] newIds = new int[total];
+    int[] newCnts = new int[total];
+    int[] newEnd = positional ? new int[total] : null;
+    byte[] newPos = positional ? new byte[totalBytes] : null;
+    int at = 0;
+    int byteAt = 0;
+    for (PostingList pl : lists) {
+      PostingIterator it = pl.iterator();
+      while (it.nextDoc() != PostingIterator.NO_MORE_DOCS) {
+        if (deleted != null && deleted.get(it.doc()))
+          continue;
+        newIds[at] = it.doc();
+        newCnts[at] = it.count();
+        if (positional) {
+          int from = it.positionsFrom();
+          int len = it.positionsTo() - from;
+          System.arraycopy(it.positionBytes(), from, newPos, byteAt, len);
+          byteAt += len;
+          newEnd[at] = byteAt;
+        }
+        at++;
+      }
+    }
+
+    if (at < total) {
+      newIds = Arrays.copyOf(newIds, at);
+      newCnts = Arrays.copyOf(newCnts, at);
+      if (positional)
+        newEnd = Arrays.copyOf(newEnd, at);
+    }
+    return positional ? new PostingList(newIds, newCnts, newPos, newEnd)
+        : new PostingList(newIds, newCnts);
+  }
+
+  /**
+   * @effects returns the number of postings in <code>this</code>
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @requires <code>this</code> is not packed and <code>0 <= i < size()</code>
+   * @effects returns the document id of the <code>i</code>th posting
+   */
+  int id(int i) {
+    return ids[i];
+  }
+
+  /**
+   * @requires <code>this</code> is not packed and <code>0 <= i < size()</code>
+   * @effects returns the keyword count of the <code>i</code>th posting
+   */
+  int count(int i) {
+    return cnts[i];
+  }
+
+  /**
+   * @effects if <code>this</code> is positional returns <code>true</code>,
+   *          else returns <code>false</code>
+   */
+  boolean hasPositions() {
+    return pos != null;
+  }
+
+  /**
+   * @requires <code>this</code> is positional and not packed, and
+   *           <code>-1 <= i < size()</code>
+   * @effects returns the end of the encoded positions of the
+   *          <code>i</code>th posting (<code>0</code> if <code>i = -1</code>)
+   */
+  int posEnd(int i) {
+    return (i < 0) ? 0 : posEnd[i];
+  }
+
+  /**
+   * @requires <code>this</code> is positional and not packed
+   * @effects returns the array of the encoded positions of <code>this</code>,
+   *          whose first <code>posEnd(size()-1)</code> bytes are used. The
+   *          array is shared and must not be modified.
+   */
+  byte[] positionBytes() {
+    return pos;
+  }
+
+  /**
+   * A method to read the positions of a posting.
+   *
+   * @requires <code>this</code> is positional and not packed, and
+   *           <code>0 <= i < size()</code>
+   * @effects returns an array whose first <code>count(i)</code> elements are
+   *          the positions of the <code>i</code>th posting in ascending order;
+   *          this is <code>buf</code> if it is long enough, else a new array
+   */
+  int[] positions(int i, int[] buf) {
+    int n = cnts[i];
+    if (buf == null || buf.length < n)
+      buf = new int[Math.max(n, 8)];
+    decode(pos, posEnd(i - 1), n, buf);
+    return buf;
+  }
+
+  /**
+   * A method to encode word positions.
+   *
+   * @requires <code>p[from..from+n)</code> is in ascending order and
+   *           <code>p[from] >= 0</code>
+   * @effects returns the delta-encoded variable-length bytes of
+   *          <code>p[from..from+n)</code>
+   */
+  static byte[] encode(int[] p, int from, int n) {
+    byte[] out = new byte[5 * n];
+    int len = 0;
+    int prev = 0;
+    for (int i = from; i < from + n; i++) {
+      int v = p[i] - prev;
+      prev = p[i];
+      while ((v & ~0x7F) != 0) {
+        out[len++] = (byte) ((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      out[len++] = (byte) v;
+    }
+    return Arrays.copyOf(out, len);
+  }
+
+  /**
+   * @requires <code>b[off..)</code> starts with <code>n</code> encoded
+   *           positions and <code>out.length >= n</code>
+   * @modifies <code>out</code>
+   * @effects decodes the positions into <code>out[0..n)</code> and returns the
+   *          offset after them
+   */
+  static int decode(byte[] b, int off, int n, int[] out) {
+    int prev = 0;
+    for (int i = 0; i < n; i++) {
+      int v = 0;
+      int shift = 0;
+      byte x;
+      do {
+        x = b[off++];
+        v |= (x & 0x7F) << shift;
+        shift += 7;
+      } while (x < 0);
+      prev += v;
+      out[i] = prev;
+    }
+    return off;
+  }
+
+  /**
+   * @requires <code>b[off..)</code> starts with <code>n</code> encoded
+   *           positions
+   * @effects returns the offset after them
+   */
+  static int skip(byte[] b, int off, int n) {
+    while (n > 0) {
+      if (b[off++] >= 0)
+        n--;
+    }
+    return off;
+  }
+
+  /**
+   * A method to locate a document id in <code>this</code> by galloping search.
+   *
+   * @requires <code>this</code> is not packed and <code>from >= 0</code>
+   * @effects returns the smallest <code>i</code> such that
+   *          <code>from <= i < size()</code> and <code>id(i) >= target</code>,
+   *          or <code>size()</code> if there is no such <code>i</code>
+   */
+  int gallop(int from, int target) {
+    return gallop(ids, from, size, target);
+  }
+
+  /**
+   * A method to locate a value in a sorted array by galloping search: probes
+   * <code>from+1, from+2, from+4, ...</code> until it passes
+   * <code>target</code> and then binary-searches the last gap. The cost is
+   * logarithmic in the distance moved rather than in the array length, which
+   * makes a sequence of increasing searches over the same array cheap.
+   *
+   * @requires <code>a[0..size)</code> is sorted in ascending order and
+   *           <code>from >= 0</code>
+   * @effects returns the smallest <code>i</code> such that
+   *          <code>from <= i < size</code> and <code>a[i] >= target</code>, or
+   *          <code>size</code> if there is no such <code>i</code>
+   */
+  static int gallop(int[] a, int from, int size, int target) {
+    if (from >= size || a[from] >= target)
+      return from;
+
+    // a[lo] < target
+    int lo = from;
+    int step = 1;
+    int hi = from + step;
+    while (hi < size && a[hi] < target) {
+      lo = hi;
+      step <<= 1;
+      hi = from + step;
+    }
+    if (hi > size)
+      hi = size;
+
+    // a[lo] < target <= a[hi] (treating a[size] as infinity)
+    while (lo + 1 < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (a[mid] < target)
+        lo = mid;
+      else
+        hi = mid;
+    }
+    return hi;
+  }
+}
@@ -0,0 +1,76 @@
+package a2_BI12_170.kengine;
+
+import java.util.BitSet;
+
+/**
+ * @overview The postings of a keyword across the segments of a
+ *           {@link PostingIndex}: a sequence of non-empty {@link PostingList}
+ *           parts, one per segment that contains the keyword. The parts are
+ *           in ascending document id order and their id ranges do not
+ *           overlap, so reading the parts one after the other yields all the
+ *           postings sorted by document id.
+ *
+ *           The parts are shared with the index and must not be modified.
+ *
+ * @version 1.0
+ */
+class Postings {
+  private PostingList[] parts;
+  private int size; // total number of postings
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>parts</code> is not empty and its elements are non-empty
+   *           posting lists in ascending, non-overlapping id order
+   * @effects initialises <code>this</code> to consist of <code>parts</code>
+   */
+  Postings(PostingList[] parts) {
+    this.parts = parts;
+    for (PostingList pl : parts)
+      size += pl.size();
+  }
+
+  /**
+   * @effects returns the total number of postings of <code>this</code>, i.e.
+   *          the number of documents containing the keyword
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @effects returns the number of parts of <code>this</code>
+   */
+  int numParts() {
+    return parts.length;
+  }
+
+  /**
+   * @requires <code>0 <= i < numParts()</code>
+   * @effects returns the <code>i</code>th part of <code>this</code>
+   */
+  PostingList part(int i) {
+    return parts[i];
+  }
+
+  /**
+   * @effects returns all the postings of <code>this</code> as a single
+   *          unpacked list; if <code>this</code> has one unpacked part, returns
+   *          that part
+   */
+  PostingList toList() {
+    return (parts.length == 1) ? parts[0].unpack() : PostingList.concat(parts);
+  }
+
+  /**
+   * @param deleted
+   *          the ids of the deleted documents
+   * @effects returns the postings of <code>this</code> whose ids are not in
+   *          <code>deleted</code> as a single unpacked list, which may be
+   *          empty
+   */
+  PostingList toList(BitSet deleted) {
+    return deleted.isEmpty() ? toList() : PostingList.concat(parts, deleted);
+  }
+}
@@ -0,0 +1,167 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * @overview A constraint on the positions of the keywords of a query in a
+ *           document, checked against positional postings. It is either
+ *           <ul>
+ *           <li>a <i>phrase</i>: a sequence of words that must occur in the
+ *           document one after the other. An uninteresting word of the phrase
+ *           matches any word at its position; or</li>
+ *           <li>a <i>near</i> constraint: every keyword must occur within a
+ *           window of <code>n</code> words, i.e. with at most <code>n</code>
+ *           between the positions of the first and the last of them, in any
+ *           order.</li>
+ *           </ul>
+ *
+ * @version 1.0
+ */
+class Proximity {
+  private String[] terms; // the distinct keywords
+  private int[] termOf; // occurrence -> index of its keyword in terms
+  private int[] offsets; // occurrence -> offset in the phrase
+  private int window; // the window of a near constraint, or -1 for a phrase
+
+  /**
+   * Constructor method
+   *
+   * @requires the arguments are consistent as described in the rep
+   * @effects initialises <code>this</code> with the given rep
+   */
+  private Proximity(String[] terms, int[] termOf, int[] offsets, int window) {
+    this.terms = terms;
+    this.termOf = termOf;
+    this.offsets = offsets;
+    this.window = window;
+  }
+
+  /**
+   * @param words
+   *          the words of a phrase, in order: a keyword, or <code>null</code>
+   *          for an uninteresting word
+   * @requires <code>words</code> contains some keyword and the keywords are
+   *           in canonical form
+   * @effects returns the phrase constraint of <code>words</code>
+   */
+  static Proximity phrase(String[] words) {
+    Vector<String> ts = new Vector<>();
+    int n = 0;
+    for (String w : words) {
+      if (w != null)
+        n++;
+    }
+
+    int[] termOf = new int[n];
+    int[] offsets = new int[n];
+    int o = 0;
+    for (int i = 0; i < words.length; i++) {
+      if (words[i] == null)
+        continue;
+      int t = ts.indexOf(words[i]);
+      if (t < 0) {
+        t = ts.size();
+        ts.add(words[i]);
+      }
+      termOf[o] = t;
+      offsets[o] = i;
+      o++;
+    }
+
+    return new Proximity(ts.toArray(new String[ts.size()]), termOf, offsets, -1);
+  }
+
+  /**
+   * @param words
+   *          the keywords
+   * @param n
+   *          the size of the window
+   * @requires <code>words</code> is not empty, its elements are distinct
+   *           keywords in canonical form and <code>n >= 0</code>
+   * @effects returns the constraint that all of <code>words</code> occur
+   *          within <code>n</code> words
+   */
+  static Proximity near(String[] words, int n) {
+    int[] termOf = new int[words.length];
+    for (int i = 0; i < termOf.length; i++)
+      termOf[i] = i;
+    return new Proximity(words.clone(), termOf, new int[words.length], n);
+  }
+
+  /**
+   * @effects returns the distinct keywords of <code>this</code>
+   */
+  String[] terms() {
+    return terms.clone();
+  }
+
+  /**
+   * A method to check the constraint in one document.
+   *
+   * @param pos
+   *          <code>pos[j][0..cnt[j])</code> are the positions of
+   *          <code>terms()[j]</code> in the document, in ascending order
+   * @param cnt
+   *          the numbers of positions
+   * @requires <code>cnt[j] > 0</code> for every keyword
+   * @effects if the positions satisfy <code>this</code> returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean matches(int[][] pos, int[] cnt) {
+    return (window < 0) ? matchesPhrase(pos, cnt) : matchesNear(pos, cnt);
+  }
+
+  /**
+   * @effects if some position of the first word of the phrase is followed by
+   *          all the other words at their offsets returns <code>true</code>,
+   *          else returns <code>false</code>. The candidate positions are
+   *          those of the rarest word in the document.
+   */
+  private boolean matchesPhrase(int[][] pos, int[] cnt) {
+    int anchor = 0;
+    for (int o = 1; o < termOf.length; o++) {
+      if (cnt[termOf[o]] < cnt[termOf[anchor]])
+        anchor = o;
+    }
+
+    int[] ap = pos[termOf[anchor]];
+    CANDIDATES: for (int a = 0; a < cnt[termOf[anchor]]; a++) {
+      int start = ap[a] - offsets[anchor];
+      for (int o = 0; o < termOf.length; o++) {
+        int t = termOf[o];
+        if (o != anchor && Arrays.binarySearch(pos[t], 0, cnt[t], start + offsets[o]) < 0)
+          continue CANDIDATES;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @effects if some window of <code>window</code> words contains every
+   *          keyword returns <code>true</code>, else returns
+   *          <code>false</code>. The positions are swept in order, advancing
+   *          the keyword at the smallest position, so the cost is linear in
+   *          the number of positions.
+   */
+  private boolean matchesNear(int[][] pos, int[] cnt) {
+    int k = terms.length;
+    int[] at = new int[k];
+    while (true) {
+      int min = 0;
+      int max = 0;
+      for (int j = 1; j < k; j++) {
+        if (pos[j][at[j]] < pos[min][at[min]])
+          min = j;
+        if (pos[j][at[j]] > pos[max][at[max]])
+          max = j;
+      }
+
+      if (pos[max][at[max]] - pos[min][at[min]] <= window)
+        return true;
+      if (++at[min] == cnt[min])
+        return false;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package a2_BI12_170.kengine;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Vector;
@@ -10,18 +11,69 @@ import utils.NotPossibleException;
 /**
  * @overview Represents a user query
  * 
+ *           The matches are ranked by the score given to them by a {@link Scorer}, 
+ *           which is the count of the keywords unless another scorer is given 
+ *           when the query is created. The scorer sees the number of documents 
+ *           and the average document length of the word table as they were when 
+ *           the query was created.
+ * 
+ *           A query reads the postings of an {@link IndexSnapshot}. A query created 
+ *           on a snapshot (rather than on a word table) sees only the documents of 
+ *           that snapshot and is not updated by <code>addDoc</code>, so queries on 
+ *           snapshots can be run by many threads while documents are being added.
+ *           The documents deleted in the snapshot are never matched.
+ *
+ *           A query can be copied (see {@link #copy(String[])}), e.g. by the
+ *           result cache of an engine: the copy shares the matches of the
+ *           original until a keyword is added to it, and the matches that one
+ *           of them ranks are ranked for the others too.
+ * 
  * @see "Program development in Java", pgs 314,322,326-332,365
  * 
- * @version 4.0 implements full code
+ * @version 4.0 implements full code <br>
+ *          4.3 pluggable scoring <br>
+ *          4.4 reads an index snapshot <br>
+ *          4.5 phrase and proximity queries <br>
+ *          4.6 boolean queries <br>
+ *          4.7 intersections skip over packed postings <br>
+ *          4.8 keeps its ranked matches ranked as documents are added <br>
+ *          4.9 skips deleted documents <br>
+ *          5.0 copies that share the matches and their ranking
  * @author dmle
  * 
  */
 public class Query {
-  private WordTable wt; // reference to the engine's word table
-  private Vector matches; // document matches
+  private WordTable wt; // reference to the engine's word table, or null
+  private IndexSnapshot snap; // the postings that this query reads
   // dmle: use Vector instead of array
   // private String[] keys; // the keywords of this query
   private Vector keys;
+  private float[] weights; // weights[j] is the scorer's weight of keys[j]
+
+  private Scorer scorer;
+  private int numDocs; // collection statistics for the scorer
+  private float avgDocLen;
+
+  // the matches as parallel arrays sorted by document id: this is the 
+  // form used to intersect with the posting lists of new keywords
+  private int[] ids; // document ids, in ascending order
+  private int[] sums; // sums[i] is the sum of keyword counts of ids[i]
+  private float[] scores; // scores[i] is the score of ids[i]
+  private int n; // number of matches
+
+  // the best matches, ranked lazily and only as far as they are needed: 
+  // ranked[0..ranked.length) are indexes into ids/sums/scores, best first. 
+  // null when the matches have changed since they were last ranked, other
+  // than by addDoc, which keeps it ranked
+  private int[] ranked;
+
+  // the query whose match arrays this shares, which it must not modify, or
+  // null. The ranked matches of the source are read and offered through its
+  // synchronized methods
+  private Query source;
+
+  /** the number of matches that are ranked at least, when some are needed */
+  private static final int PAGE_SIZE = 10;
 
   /**
    * Constructor method to create an empty <code>Query</code>
@@ -30,8 +82,31 @@ public class Query {
    */
   public Query() {
     //
-    matches = new Vector();
     keys = new Vector();
+    weights = new float[0];
+    scorer = CountScorer.INSTANCE;
+    ids = new int[0];
+    sums = new int[0];
+    scores = new float[0];
+    n = 0;
+  }
+
+  /**
+   * Constructor method to create an empty <code>Query</code> that is scored by 
+   * <code>scorer</code>
+   * 
+   * @requires <code>snap</code> and <code>scorer</code> are not <code>null</code>
+   * @effects makes an empty query on <code>snap</code>, which is updated with 
+   *          the documents added to <code>wt</code> unless <code>wt</code> is 
+   *          <code>null</code>
+   */
+  private Query(WordTable wt, IndexSnapshot snap, Scorer scorer) {
+    this();
+    this.wt = wt;
+    this.snap = snap;
+    this.scorer = scorer;
+    numDocs = snap.numDocs();
+    avgDocLen = snap.avgDocLen();
   }
 
   /**
@@ -48,27 +123,230 @@ public class Query {
    * @see "Program development in Java", pg 329
    */
   public Query(WordTable wt, String w) {
+    this(wt, w, CountScorer.INSTANCE);
+  }
+
+  /**
+   * Constructor method to create a new <code>Query</code> from a single keyword, 
+   * whose matches are ranked by a given scorer
+   * 
+   * @param wt
+   *          the <code>WordTable</code> object of the engine
+   * @param w
+   *          a keyword to create the query with
+   * @param scorer
+   *          the scoring function of the query
+   * @requires the arguments are not <code>null</code>
+   * @effects make a <code>Query</code> for the single keyword <code>w</code>.
+   * 
+   * @version 4.3
+   */
+  public Query(WordTable wt, String w, Scorer scorer) {
     // call this to initialise rep
-    this();
-    
-    this.wt = wt;
+    this(wt, wt.refresh(), scorer);
+    init(w);
+  }
+
+  /**
+   * Constructor method to create a new <code>Query</code> from a single keyword 
+   * on an index snapshot
+   * 
+   * @param snap
+   *          a snapshot of the index of the engine
+   * @param w
+   *          a keyword to create the query with
+   * @param scorer
+   *          the scoring function of the query
+   * @requires the arguments are not <code>null</code>
+   * @effects make a <code>Query</code> for the single keyword <code>w</code> 
+   *          that matches the documents of <code>snap</code>.
+   * 
+   * @version 4.4
+   */
+  public Query(IndexSnapshot snap, String w, Scorer scorer) {
+    this(null, snap, scorer);
+    init(w);
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects makes <code>this</code> a query for the single keyword <code>w</code>
+   */
+  private void init(String w) {
+    // look up the key in the snapshot
+    // copy the postings (so that the index is not affected); 
+    // the matches are ranked when they are fetched
+    Postings ps = snap.postings(w);
+
+    if (ps != null) {
+      addWeight(w, ps);
+      copy(ps, weights[0]);
+    }
+  }
+
+  /**
+   * Constructor method to create a new <code>Query</code> from several keywords
+   * at once.
+   * 
+   * @param wt
+   *          the <code>WordTable</code> object of the engine
+   * @param ws
+   *          the keywords to create the query with
+   * @requires <code>wt</code>, <code>ws</code> and the elements of
+   *           <code>ws</code> are not <code>null</code> and <code>ws</code> is
+   *           not empty
+   * @effects If some element of <code>ws</code> is repeated throws
+   *          <code>NotPossibleException</code>, else makes a
+   *          <code>Query</code> for all the keywords in <code>ws</code>. The
+   *          posting lists are intersected from the shortest to the longest, so
+   *          the cost is bounded by the rarest keyword. If some keyword is not
+   *          found the query has no matches.
+   * 
+   * @version 4.1
+   */
+  public Query(WordTable wt, String[] ws) throws NotPossibleException {
+    this(wt, ws, CountScorer.INSTANCE);
+  }
 
-    // look up the key in the word table
-    // sort the matches using quick sort
-    Vector newDocs = wt.lookup(w);
-
-    if (newDocs != null) {
-      // must clone newDocs so that changes to the doc counts of its objects
-      // do not affect the word table
-      Vector docClones = new Vector();
-      for (Iterator it = newDocs.iterator(); it.hasNext();) {
-        DocCnt dc = (DocCnt) ((DocCnt) it.next()).clone();
-        docClones.add(dc);
+  /**
+   * Constructor method to create a new <code>Query</code> from several keywords
+   * at once, whose matches are ranked by a given scorer.
+   * 
+   * @param wt
+   *          the <code>WordTable</code> object of the engine
+   * @param ws
+   *          the keywords to create the query with
+   * @param scorer
+   *          the scoring function of the query
+   * @requires the arguments and the elements of <code>ws</code> are not 
+   *           <code>null</code> and <code>ws</code> is not empty
+   * @effects as {@link #Query(WordTable, String[])}
+   * 
+   * @version 4.3
+   */
+  public Query(WordTable wt, String[] ws, Scorer scorer) throws NotPossibleException {
+    this(wt, wt.refresh(), scorer);
+    init(ws);
+  }
+
+  /**
+   * Constructor method to create a new <code>Query</code> from several keywords 
+   * on an index snapshot.
+   * 
+   * @param snap
+   *          a snapshot of the index of the engine
+   * @param ws
+   *          the keywords to create the query with
+   * @param scorer
+   *          the scoring function of the query
+   * @requires the arguments and the elements of <code>ws</code> are not 
+   *           <code>null</code> and <code>ws</code> is not empty
+   * @effects as {@link #Query(WordTable, String[])}, except that the query 
+   *          matches the documents of <code>snap</code>
+   * 
+   * @version 4.4
+   */
+  public Query(IndexSnapshot snap, String[] ws, Scorer scorer) throws NotPossibleException {
+    this(null, snap, scorer);
+    init(ws);
+  }
+
+  /**
+   * Constructor method to create a new <code>Query</code> for the documents of 
+   * an index snapshot whose keywords satisfy a proximity constraint, i.e. a 
+   * phrase or a <i>near</i> query.
+   * 
+   * @param snap
+   *          a snapshot of a positional index
+   * @param p
+   *          the constraint
+   * @param scorer
+   *          the scoring function of the query
+   * @requires the arguments are not <code>null</code>
+   * @effects if the postings of <code>snap</code> have no positions throws 
+   *          <code>NotPossibleException</code>, else makes a <code>Query</code> 
+   *          for the keywords of <code>p</code> whose matches are the 
+   *          documents that contain them all and satisfy <code>p</code>. The 
+   *          keywords are intersected first and the positions are only read 
+   *          for the documents that contain them all.
+   * 
+   * @version 4.5
+   */
+  Query(IndexSnapshot snap, Proximity p, Scorer scorer) throws NotPossibleException {
+    this(null, snap, scorer);
+    init(p.terms());
+    if (n > 0) {
+      Matches m = matches();
+      m.filter(p, snap);
+      set(m);
+    }
+  }
+
+  /**
+   * Constructor method to create a new <code>Query</code> for the documents of 
+   * an index snapshot that satisfy a boolean query, e.g. 
+   * <code>hoang AND (huy OR "van an") NOT bui</code>.
+   * 
+   * @param snap
+   *          a snapshot of the index of the engine
+   * @param root
+   *          the boolean query, as parsed by {@link QueryParser}
+   * @param scorer
+   *          the scoring function of the query
+   * @requires the arguments are not <code>null</code>
+   * @effects if <code>root</code> has a phrase and the postings of 
+   *          <code>snap</code> have no positions, or a pattern of <code>root</code> 
+   *          matches too many keywords, throws 
+   *          <code>NotPossibleException</code>, else makes a <code>Query</code> 
+   *          whose matches are the documents of <code>snap</code> that satisfy 
+   *          <code>root</code> and whose keywords are the words that 
+   *          <code>root</code> searches for (i.e. those that are not negated). 
+   *          The score of a match is the sum of the scores of its keywords.
+   * 
+   * @version 4.6
+   */
+  Query(IndexSnapshot snap, QueryNode root, Scorer scorer) throws NotPossibleException {
+    this(null, snap, scorer);
+    Vector<String> ks = new Vector<>();
+    root.keys(snap, ks);
+    for (String w : ks)
+      addWeight(w, snap.postings(w));
+
+    set(root.eval(this, true));
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects if some element of <code>ws</code> is repeated throws
+   *          <code>NotPossibleException</code>, else makes <code>this</code> a 
+   *          query for all the keywords in <code>ws</code>
+   */
+  private void init(String[] ws) throws NotPossibleException {
+    Postings[] lists = new Postings[ws.length];
+    for (int i = 0; i < ws.length; i++) {
+      if (keys.contains(ws[i]))
+        throw new NotPossibleException(
+            "Query.init: keyword is repeated in query: " + ws[i]);
+      lists[i] = snap.postings(ws[i]);
+      addWeight(ws[i], lists[i]);
+    }
+
+    for (int i = 0; i < ws.length; i++) {
+      if (lists[i] == null) {
+        // no document contains all keywords
+        return;
       }
-      matches.addAll(docClones);
-      keys.add(w);
-      
-      Sorting.quickSort(matches);
+    }
+
+    // smallest list first; order[i] is the index in ws of the ith list
+    Integer[] order = new Integer[ws.length];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, (a, b) -> Integer.compare(lists[a].size(), lists[b].size()));
+
+    copy(lists[order[0]], weights[order[0]]);
+    for (int i = 1; i < order.length && n > 0; i++) {
+      intersect(lists[order[i]], weights[order[i]]);
     }
   }
 
@@ -83,53 +361,286 @@ public class Query {
    *          <code>NotPossibleException</code>, else modifies <code>this</code>
    *          to be a query for <code>w</code> and all the keywords already in
    *          <code>this</code>.
-   * @version 4.0
+   * @version 4.1 intersects the document-id sorted matches with the postings 
+   *          of <code>w</code> <br>
+   *          4.7 when there are fewer matches than postings, advances a
+   *          cursor over the postings to each match, so only the blocks of
+   *          the postings that may contain a match are decoded
    * @see "Program development in Java", pg 329
    * 
    */
   public void addKey(String w) throws NotPossibleException {
-    if (matches.isEmpty() || keys.contains(w))
+    if (n == 0 || keys.contains(w))
       throw new NotPossibleException(
           "Query.addKey: query is empty OR keyword already exists in query: "
               + w);
 
+    // a query that is updated with new documents must also see their postings
+    if (wt != null)
+      snap = wt.refresh();
+
+    // the matches are intersected in place, so a shared copy gets its own
+    if (source != null) {
+      ids = Arrays.copyOf(ids, n);
+      sums = Arrays.copyOf(sums, n);
+      scores = Arrays.copyOf(scores, n);
+      source = null;
+    }
+
+    // look up the new query in the snapshot
+    Postings ps = snap.postings(w);
+    addWeight(w, ps);
+    if (ps == null) {
+      n = 0;
+    } else {
+      intersect(ps, weights[keys.size() - 1]);
+    }
+    ranked = null;
+  }
+
+  /**
+   * A method to add a keyword and its weight.
+   * 
+   * @requires <code>w</code> is not a keyword of <code>this</code>
+   * @modifies <code>this</code>
+   * @effects appends <code>w</code> to <code>keys</code> and its scorer weight 
+   *          to <code>weights</code>. If <code>ps</code> is <code>null</code> 
+   *          (<code>w</code> is not yet in any document) the weight is that of 
+   *          a keyword in one document.
+   */
+  private void addWeight(String w, Postings ps) {
+    int df = (ps != null) ? ps.size() : 1;
+    int j = keys.size();
     keys.add(w);
+    weights = Arrays.copyOf(weights, j + 1);
+    weights[j] = scorer.termWeight(df, Math.max(numDocs, df));
+  }
 
-    // look up the new query in word table
-    // store the information about matches in a hash table
-    Vector newDocs = wt.lookup(w);
-
-    // for each current match, look up the document in the hash table and if it
-    // is there, add it to the matches vector
-    DocCnt currentMatch, newDoc;
-    boolean foundNewMatch = false;
-
-    for (int i = 0; i < matches.size(); i++) {
-      currentMatch = (DocCnt) matches.get(i);
-      boolean containsKeyword = false;  // whether or not the current match contains the new keyword
-      INNER: for (Iterator dit = newDocs.iterator(); dit.hasNext();) {
-        newDoc = (DocCnt) dit.next();
-        if (currentMatch.getDoc().equals(newDoc.getDoc())) {
-          // found a new match, update the sum of count in the vector
-          currentMatch.addCount(newDoc.getCount());
-          containsKeyword = true;
-          if (!foundNewMatch)
-            foundNewMatch = true;
-          break INNER;
-        }
-      }
-      
-      if (!containsKeyword) {
-        // remove current match
-        matches.removeElementAt(i);
-        i--;
+  /**
+   * A method to look up the weight of a keyword, adding it if necessary.
+   * 
+   * @modifies <code>this</code>
+   * @effects if <code>w</code> is a keyword of <code>this</code> returns its 
+   *          weight, else adds it (see {@link #addWeight(String, Postings)}) and 
+   *          returns its new weight
+   */
+  float weight(String w, Postings ps) {
+    int j = keys.indexOf(w);
+    if (j < 0) {
+      addWeight(w, ps);
+      j = keys.size() - 1;
+    }
+    return weights[j];
+  }
+
+  /**
+   * @effects returns the score of a keyword of weight <code>weight</code> that 
+   *          occurs <code>tf</code> times in the document <code>id</code>
+   */
+  float score(float weight, int tf, int id) {
+    return scorer.score(weight, tf, snap.docLen(id), avgDocLen);
+  }
+
+  /**
+   * A method to make the postings of a keyword the current matches.
+   * 
+   * @modifies <code>this</code>
+   * @effects sets the matches to the documents of <code>ps</code>, with their 
+   *          counts and scores, where <code>weight</code> is the weight of the
+   *          keyword
+   */
+  private void copy(Postings ps, float weight) {
+    set(Matches.of(ps, weight, this));
+  }
+
+  /**
+   * A method to intersect the current matches with the postings of a keyword.
+   * 
+   * @requires <code>ps</code> is not <code>null</code>
+   * @modifies <code>this</code>
+   * @effects keeps only the matches that are also in <code>ps</code>, adding 
+   *          their counts and scores in <code>ps</code> (see 
+   *          {@link Matches#and(Postings, float, Query)})
+   */
+  private void intersect(Postings ps, float weight) {
+    Matches m = matches();
+    m.and(ps, weight, this);
+    set(m);
+  }
+
+  /**
+   * @effects returns the current matches of <code>this</code>, which share 
+   *          the arrays of <code>this</code>
+   */
+  private Matches matches() {
+    return new Matches(ids, sums, scores, n);
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects makes <code>m</code> the matches of <code>this</code>
+   */
+  private void set(Matches m) {
+    ids = m.ids;
+    sums = m.sums;
+    scores = m.scores;
+    n = m.n;
+    ranked = null;
+  }
+
+  /**
+   * A method to rank the best matches.
+   * 
+   * @modifies <code>this</code>
+   * @effects makes <code>ranked</code> contain the indexes of the 
+   *          <code>min(k,n)</code> best matches, best first, unless it already 
+   *          does. A match is better than another if its score is larger, or 
+   *          if the scores are equal and its document id is smaller. The matches are 
+   *          selected with a bounded heap of size <code>k</code>, so the cost 
+   *          is <code>O(n log k)</code> rather than that of sorting all matches.
+   *          A copy uses the ranking of its source if it is long enough, and
+   *          offers its own to the source otherwise.
+   */
+  private void rank(int k) {
+    if (k > n)
+      k = n;
+    if (k == 0)
+      return; // no match is asked for
+    if (source != null) {
+      int[] r = source.sharedRanking();
+      if (r != null && (ranked == null || r.length > ranked.length))
+        ranked = r;
+    }
+    if (ranked != null && (ranked.length >= k || ranked.length == n))
+      return;
+
+    // heap[0..size) is a heap with the worst selected match at the root
+    int[] heap = new int[k];
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      if (size < k) {
+        heap[size] = i;
+        siftUp(heap, size++);
+      } else if (better(i, heap[0])) {
+        heap[0] = i;
+        siftDown(heap, 0, size);
       }
     }
 
-    // sort the vector using quick-sort
-    if (foundNewMatch) {
-      Sorting.quickSort(matches);
+    // move the worst remaining match to the end until the heap is empty
+    for (int end = size - 1; end > 0; end--) {
+      int t = heap[0];
+      heap[0] = heap[end];
+      heap[end] = t;
+      siftDown(heap, 0, end);
+    }
+
+    ranked = heap;
+    if (source != null)
+      source.shareRanking(heap);
+  }
+
+  /**
+   * @effects returns the ranked matches of <code>this</code>, which must not
+   *          be modified, or <code>null</code> if they are not ranked
+   */
+  private synchronized int[] sharedRanking() {
+    return ranked;
+  }
+
+  /**
+   * @requires <code>r</code> ranks the matches of <code>this</code> (see
+   *           {@link #rank(int)}) and is not modified
+   * @modifies <code>this</code>
+   * @effects if <code>r</code> ranks more matches than <code>this</code> has
+   *          ranked makes it the ranking of <code>this</code>
+   */
+  private synchronized void shareRanking(int[] r) {
+    if (ranked == null || r.length > ranked.length)
+      ranked = r;
+  }
+
+  /**
+   * A method to copy a query on a snapshot.
+   *
+   * @requires <code>this</code> was created on a snapshot, <code>ws</code> is
+   *           a permutation of <code>keys()</code> and <code>this</code> is not
+   *           modified after this call, other than by ranking its matches
+   * @effects returns a new query with the snapshot, scorer and matches of
+   *          <code>this</code>, whose keywords are <code>ws</code>, in that
+   *          order. The matches are shared rather than copied: the copy makes
+   *          its own if a keyword is added to it.
+   */
+  Query copy(String[] ws) {
+    Query c = new Query(null, snap, scorer);
+    c.weights = new float[ws.length];
+    for (int j = 0; j < ws.length; j++) {
+      c.keys.add(ws[j]);
+      c.weights[j] = weights[keys.indexOf(ws[j])];
+    }
+    c.ids = ids;
+    c.sums = sums;
+    c.scores = scores;
+    c.n = n;
+    c.ranked = sharedRanking();
+    c.source = this;
+    return c;
+  }
+
+  /**
+   * @effects if the match at index <code>a</code> is better than the match at 
+   *          index <code>b</code> returns <code>true</code>, else returns 
+   *          <code>false</code>
+   */
+  private boolean better(int a, int b) {
+    return scores[a] > scores[b] || (scores[a] == scores[b] && ids[a] < ids[b]);
+  }
+
+  /**
+   * @modifies <code>heap</code>
+   * @effects restores the heap order of <code>heap[0..i]</code> after 
+   *          <code>heap[i]</code> was set
+   */
+  private void siftUp(int[] heap, int i) {
+    int x = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!better(heap[parent], x))
+        break;
+      heap[i] = heap[parent];
+      i = parent;
     }
+    heap[i] = x;
+  }
+
+  /**
+   * @modifies <code>heap</code>
+   * @effects restores the heap order of <code>heap[i..size)</code> after 
+   *          <code>heap[i]</code> was set
+   */
+  private void siftDown(int[] heap, int i, int size) {
+    int x = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size)
+        break;
+      if (child + 1 < size && better(heap[child], heap[child + 1]))
+        child++;
+      if (!better(x, heap[child]))
+        break;
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = x;
+  }
+
+  /**
+   * @requires <code>0 <= r < ranked.length</code>
+   * @effects returns the <code>DocCnt</code> of the <code>r</code>th best match
+   */
+  private DocCnt rankedMatch(int r) {
+    int i = ranked[r];
+    return new DocCnt(snap.doc(ids[i]), sums[i], scores[i]);
   }
 
   /**
@@ -140,47 +651,143 @@ public class Query {
    * @param h
    *          a <code>Hashtable</code> that maps interesting words in
    *          <code>d</code> to their frequencies in <code>d</code>.
-   * @requires <code>d</code> and <code>h</code> are not <code>null</code>
+   * @requires <code>d</code> has been added to the word table of <code>this</code>
+   *           after all the current matches
    * @modifies <code>this</code>
-   * @effects If <code>this</code> is not empty and <code>d</code> contains all
-   *          the keywords of <code>this</code> then adds <code>d</code> and its
-   *          keyword entries in <code>h</code> to <code>matches</code> as a
-   *          query result, else does nothing
+   * @effects If <code>this</code> is not empty, <code>d</code> contains all
+   *          the keywords of <code>this</code> and is not already a match then
+   *          adds <code>d</code> and its keyword entries in <code>h</code> to
+   *          <code>matches</code> as a query result, else does nothing. A query
+   *          created on a snapshot is never updated.
    * 
-   * @version 4.0
+   * @version 4.1 <br>
+   *          4.8 the match is appended to the matches in id order and, if the
+   *          best matches have been ranked, is inserted among them at the
+   *          place found by binary search, in time linear in the number of
+   *          ranked matches, so adding a document never re-sorts the matches
    */
   public void addDoc(Doc d, Hashtable h) {
-    if (!keys.isEmpty()) {
+    if (wt != null && !keys.isEmpty() && h != null) {
       String k;
       Integer c;
-      int sum = 0;
       for (Iterator kit = keys.iterator(); kit.hasNext();) {
         k = (String) kit.next();
         c = (Integer) h.get(k);
         if (c == null) {
           // d does not contain all keywords of this
           return;
-        } else {
-          sum += c.intValue();
         }
       }
 
       // if we get here then d satisfies the query
-      DocCnt dc = new DocCnt(d, sum);
-      matches.add(dc);
-      DocCnt cm;
-
-      // add dc to a position in the matches vector
-      for (int i = 0; i < matches.size(); i++) {
-        cm = (DocCnt) matches.get(i);
-        if (cm.getCount() < dc.getCount()) {
-          matches.insertElementAt(dc, i);
-          break;
-        }
+      int id = wt.idOf(d);
+      if (n > 0 && ids[n - 1] >= id) {
+        // d is already a match
+        return;
+      }
+
+      int sum = 0;
+      float score = 0;
+      for (int j = 0; j < keys.size(); j++) {
+        int tf = ((Integer) h.get(keys.get(j))).intValue();
+        sum += tf;
+        score += scorer.score(weights[j], tf, wt.docLen(id), avgDocLen);
+      }
+
+      // d is the newest document so its id goes at the end of ids
+      if (n == ids.length) {
+        int newCapacity = Math.max(4, n << 1);
+        ids = Arrays.copyOf(ids, newCapacity);
+        sums = Arrays.copyOf(sums, newCapacity);
+        scores = Arrays.copyOf(scores, newCapacity);
       }
+      ids[n] = id;
+      sums[n] = sum;
+      scores[n] = score;
+      n++;
+
+      addRanked(n - 1);
     }
   }
 
+  /**
+   * A method to remove a deleted document from <code>this</code>.
+   *
+   * @modifies <code>this</code>
+   * @effects if <code>this</code> is updated by <code>addDoc</code> and the
+   *          document whose id is <code>id</code> is a match of
+   *          <code>this</code>, removes it from the matches, else does nothing.
+   *          The match is found by binary search.
+   */
+  void deleteDoc(int id) {
+    if (wt == null)
+      return;
+
+    int i = Arrays.binarySearch(ids, 0, n, id);
+    if (i < 0)
+      return;
+
+    System.arraycopy(ids, i + 1, ids, i, n - i - 1);
+    System.arraycopy(sums, i + 1, sums, i, n - i - 1);
+    System.arraycopy(scores, i + 1, scores, i, n - i - 1);
+    n--;
+    ranked = null;
+  }
+
+  /**
+   * A method to keep the best matches ranked when a match is added.
+   *
+   * @requires the match at index <code>i</code> has just been added and
+   *           <code>ranked</code> does not contain <code>i</code>
+   * @modifies <code>this</code>
+   * @effects if the best matches are ranked and the match at <code>i</code> is
+   *          better than the worst of them, inserts it in <code>ranked</code>
+   *          at its place, found by binary search, and drops the worst. Then
+   *          <code>ranked</code> is still the <code>ranked.length</code> best
+   *          matches. With <code>k = ranked.length</code>, finding the place
+   *          takes <code>O(log k)</code> comparisons but the insertion shifts
+   *          the worse matches along the array, so the cost is
+   *          <code>O(k)</code> per added match; it is the re-ranking of all
+   *          the matches that this avoids, not the linear cost.
+   */
+  private void addRanked(int i) {
+    if (ranked == null)
+      return;
+
+    // r is the number of ranked matches that are better than i
+    int lo = 0;
+    int hi = ranked.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (better(ranked[mid], i))
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    int r = lo;
+
+    if (r < ranked.length) {
+      System.arraycopy(ranked, r, ranked, r + 1, ranked.length - r - 1);
+      ranked[r] = i;
+    }
+  }
+
+  /**
+   * @effects returns the snapshot that <code>this</code> reads, or 
+   *          <code>null</code> if <code>this</code> is an empty query that was 
+   *          not created on a word table or snapshot
+   */
+  IndexSnapshot snapshot() {
+    return snap;
+  }
+
+  /**
+   * @effects returns the scorer of <code>this</code>
+   */
+  Scorer scorer() {
+    return scorer;
+  }
+
   /**
    * A method to read all the keywords of this query.
    * 
@@ -198,7 +805,7 @@ public class Query {
    * @version 4.0
    */
   public int size() {
-    return matches.size();
+    return n;
   }
 
   /**
@@ -209,15 +816,69 @@ public class Query {
    * @effects if <code>0 <= i < size</code> then returns the ith matching
    *          document in <code>matches</code>, else throws
    *          <code>IndexOutOfBoundsException</code>.
-   * @version 4.0
+   * @version 4.2 ranks only the first <code>i+1</code> matches (or twice as 
+   *          many as were ranked before, so that fetching the matches one by 
+   *          one does not re-rank them each time)
    */
   public Doc fetch(int i) throws IndexOutOfBoundsException {
     if (0 <= i && i < size()) {
-      return ((DocCnt) matches.get(i)).getDoc();
+      int have = (ranked != null) ? ranked.length : 0;
+      rank(Math.max(i + 1, Math.max(2 * have, PAGE_SIZE)));
+      return snap.doc(ids[ranked[i]]);
     } else
       throw new IndexOutOfBoundsException(
           "Query.fetch: document index is invalid " + i);
   }
+
+  /**
+   * A method to return a page of the matching documents of this query.
+   * 
+   * @param offset
+   *          the index of the first matching document to return
+   * @param limit
+   *          the maximum number of documents to return
+   * @effects if <code>offset < 0</code> or <code>limit < 0</code> throws 
+   *          <code>IndexOutOfBoundsException</code>, else returns the matching 
+   *          documents <code>offset, ..., offset+limit-1</code> that exist, in 
+   *          order. Only the first <code>offset+limit</code> matches are ranked.
+   * @version 4.2
+   */
+  public Doc[] fetch(int offset, int limit) throws IndexOutOfBoundsException {
+    if (offset < 0 || limit < 0)
+      throw new IndexOutOfBoundsException(
+          "Query.fetch: page is invalid " + offset + ", " + limit);
+
+    int end = (int) Math.min((long) offset + limit, n);
+    if (offset >= end)
+      return new Doc[0];
+
+    rank(end);
+    Doc[] page = new Doc[end - offset];
+    for (int r = offset; r < end; r++)
+      page[r - offset] = snap.doc(ids[ranked[r]]);
+    return page;
+  }
+
+  /**
+   * A method to return the best matches of this query.
+   * 
+   * @param k
+   *          the number of matches to return
+   * @effects if <code>k < 0</code> throws <code>IndexOutOfBoundsException</code>, 
+   *          else returns the <code>min(k,size())</code> best matches, best first, 
+   *          selected in <code>O(size() log k)</code> time.
+   * @version 4.2
+   */
+  public DocCnt[] top(int k) throws IndexOutOfBoundsException {
+    if (k < 0)
+      throw new IndexOutOfBoundsException("Query.top: invalid number of matches " + k);
+
+    rank(k);
+    DocCnt[] best = new DocCnt[Math.min(k, n)];
+    for (int r = 0; r < best.length; r++)
+      best[r] = rankedMatch(r);
+    return best;
+  }
   
   /**
    * A method to return keywords and matches of <code>this</code> (if any) as string.
@@ -232,9 +893,9 @@ public class Query {
       sb.append(keys.toString());
     }
     
-    if (matches != null && !matches.isEmpty()) {
-      sb.append("\nMatches [").append(matches.size()).append("]:\n");
-      sb.append(matches.toString());
+    if (n > 0) {
+      sb.append("\nMatches [").append(n).append("]:\n");
+      sb.append(Arrays.toString(top(n)));
     }
     
     if (sb.length() > 0) 
@@ -249,10 +910,10 @@ public class Query {
  */
 public Iterator<DocCnt> matchIterator() {
   //returns an Iterator of the query matches or null if no matches. You will need this method to generate the HTML search report.
-    if (matches.isEmpty() || matches == null) {
+    if (n == 0) {
       return null;
     } else {
-    return matches.iterator();
+    return Arrays.asList(top(n)).iterator();
     }
   } 
 }
@@ -0,0 +1,230 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * @overview A bounded cache of the results of keyword queries, i.e. of the
+ *           documents that contain all of a set of keywords. The results of a
+ *           query are cached as a {@link Query} on an {@link IndexSnapshot},
+ *           which is never handed out: callers get copies of it (see
+ *           {@link Query#copy(String[])}), which share its matches and their
+ *           ranking.
+ *
+ *           A query is identified by its keywords in canonical form, sorted,
+ *           so the order in which they are given does not matter. The cache
+ *           holds at most <code>maxEntries</code> queries with at most
+ *           <code>maxWeight</code> matches in all; when it is over either limit
+ *           the least recently used queries are evicted. The results of a query
+ *           with more than <code>maxWeight</code> matches are not cached. A
+ *           limit of <code>0</code> disables the cache: nothing is looked up,
+ *           cached or counted.
+ *
+ *           Recency alone lets a burst of queries that are asked once flush
+ *           out the ones that are asked all the time, so the results of a new
+ *           query are only admitted if they fit without evicting anything, or
+ *           if the query has been looked up more often recently than the least
+ *           recently used query that would be evicted first. The frequencies
+ *           are estimated by a {@link FrequencySketch} of all the keys looked
+ *           up, including those that are not cached.
+ *
+ *           The cache is for one snapshot generation at a time: all the results
+ *           are dropped when a newer snapshot is seen, i.e. after documents are
+ *           added or deleted, and results computed on an older snapshot are not
+ *           cached.
+ *
+ *           The methods are synchronized, and queries are evaluated outside
+ *           them, so the cache does not serialise the searches of an engine.
+ *
+ * @version 1.0 <br>
+ *          1.1 frequency-based admission; limits of 0 disable the cache
+ */
+class QueryCache {
+  /** the default maximum number of cached queries */
+  static final int DEFAULT_MAX_ENTRIES = 256;
+  /** the default maximum number of matches of the cached queries */
+  static final long DEFAULT_MAX_WEIGHT = 1 << 18;
+
+  private LinkedHashMap<String, Query> entries; // least recently used first
+  private int maxEntries;
+  private long maxWeight;
+  private long weight; // the number of matches of the entries
+  private long generation; // the generation of the snapshot of the entries
+  private FrequencySketch sketch; // how often each key has been looked up recently
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+  private long rejections;
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>maxEntries >= 0</code> and <code>maxWeight >= 0</code>
+   * @effects initialises <code>this</code> to be an empty cache with the given
+   *          limits; a cache with a limit of <code>0</code> caches nothing
+   */
+  QueryCache(int maxEntries, long maxWeight) {
+    entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    sketch = new FrequencySketch(maxEntries);
+    generation = -1;
+  }
+
+  /**
+   * @effects if either limit of <code>this</code> is <code>0</code> returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  private boolean disabled() {
+    return maxEntries == 0 || maxWeight == 0;
+  }
+
+  /**
+   * @requires <code>ws</code> is not empty and its elements are in canonical
+   *           form
+   * @effects returns the key of the query for the keywords <code>ws</code>
+   */
+  static String key(String[] ws) {
+    String[] sorted = ws.clone();
+    Arrays.sort(sorted);
+    return String.join(" ", sorted);
+  }
+
+  /**
+   * A method to look up the results of a query.
+   *
+   * @modifies <code>this</code>
+   * @effects if <code>this</code> is disabled returns <code>null</code>; else
+   *          counts a lookup of <code>key</code> and if the results of the
+   *          query <code>key</code> on <code>s</code>, scored by
+   *          <code>scorer</code>, are cached returns them, else returns
+   *          <code>null</code>. If <code>s</code> is newer than the cached
+   *          results, they are all dropped first.
+   */
+  synchronized Query get(String key, IndexSnapshot s, Scorer scorer) {
+    if (disabled())
+      return null;
+
+    sync(s.generation());
+    sketch.increment(key);
+    Query q = entries.get(key);
+    if (q == null || q.scorer() != scorer || q.snapshot() != s) {
+      misses++;
+      return null;
+    }
+
+    hits++;
+    return q;
+  }
+
+  /**
+   * A method to cache the results of a query.
+   *
+   * @requires <code>q</code> was created on a snapshot, for the keywords of
+   *           <code>key</code>, and is not modified from now on
+   * @modifies <code>this</code>
+   * @effects if <code>this</code> is not disabled, the snapshot of
+   *          <code>q</code> is not older than the cached results, <code>q</code>
+   *          fits in <code>this</code> and is admitted, caches it as the
+   *          results of <code>key</code> and evicts the least recently used
+   *          results while <code>this</code> is over its limits
+   */
+  synchronized void put(String key, Query q) {
+    if (disabled())
+      return;
+
+    long g = q.snapshot().generation();
+    if (g < generation)
+      return;
+    sync(g);
+
+    if (q.size() > maxWeight || !admit(key, q))
+      return;
+
+    Query old = entries.put(key, q);
+    if (old != null)
+      weight -= old.size();
+    weight += q.size();
+    evict();
+  }
+
+  /**
+   * @requires <code>maxEntries >= 0</code> and <code>maxWeight >= 0</code>
+   * @modifies <code>this</code>
+   * @effects makes the given limits the limits of <code>this</code> and
+   *          evicts results until <code>this</code> is within them
+   */
+  synchronized void resize(int maxEntries, long maxWeight) {
+    if (maxEntries > this.maxEntries)
+      sketch = new FrequencySketch(maxEntries);
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    if (disabled()) {
+      // results with no matches weigh nothing, so evict() would keep them
+      evictions += entries.size();
+      entries.clear();
+      weight = 0;
+    }
+    evict();
+  }
+
+  /**
+   * @effects returns the statistics of <code>this</code>
+   */
+  synchronized CacheStats stats() {
+    return new CacheStats(hits, misses, evictions, invalidations, rejections, entries.size(),
+        weight);
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects if <code>g</code> is a newer generation than that of the cached
+   *          results drops them all and makes <code>g</code> their generation
+   */
+  private void sync(long g) {
+    if (g > generation) {
+      invalidations += entries.size();
+      entries.clear();
+      weight = 0;
+      generation = g;
+    }
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects if <code>key</code> is cached, or <code>q</code> can be cached as
+   *          its results without evicting any, or <code>key</code> has been
+   *          looked up more often recently than the least recently used key,
+   *          returns <code>true</code>; else counts a rejection and returns
+   *          <code>false</code>
+   */
+  private boolean admit(String key, Query q) {
+    if (entries.containsKey(key)
+        || (entries.size() < maxEntries && weight + q.size() <= maxWeight))
+      return true;
+
+    String victim = entries.keySet().iterator().next();
+    if (sketch.frequency(key) > sketch.frequency(victim))
+      return true;
+
+    rejections++;
+    return false;
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects removes the least recently used results until <code>this</code>
+   *          is within its limits
+   */
+  private void evict() {
+    Iterator<Query> it = entries.values().iterator();
+    while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+      weight -= it.next().size();
+      it.remove();
+      evictions++;
+    }
+  }
+}
@@ -0,0 +1,336 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview A node of the tree of a boolean query: a keyword, a phrase, the
+ *           keywords that match a {@link TermPattern} or are close to a word,
+ *           the conjunction of some nodes minus the union of some others, or
+ *           the disjunction of some nodes. The keywords are in canonical form.
+ *
+ *           A node is evaluated against the snapshot of a {@link Query} into
+ *           {@link Matches}. The operands of a conjunction are evaluated in
+ *           order of their estimated cost (the number of documents they can
+ *           match at most), cheapest first, and a keyword operand is intersected
+ *           directly with its postings, so the cost of a conjunction is bounded
+ *           by its rarest operand.
+ *
+ * @version 1.0 <br>
+ *          1.1 keyword patterns <br>
+ *          1.2 fuzzy keywords <br>
+ *          1.3 the keywords of a plain conjunction
+ */
+abstract class QueryNode {
+
+  /**
+   * @effects if a pattern of <code>this</code> matches too many keywords of 
+   *          <code>s</code> throws <code>NotPossibleException</code>, else 
+   *          returns the maximum number of documents of <code>s</code> that
+   *          <code>this</code> can match
+   */
+  abstract long cost(IndexSnapshot s) throws NotPossibleException;
+
+  /**
+   * @modifies <code>ks</code>
+   * @effects if a pattern of <code>this</code> matches too many keywords of 
+   *          <code>s</code> throws <code>NotPossibleException</code>, else 
+   *          appends to <code>ks</code> the keywords of <code>s</code> that 
+   *          <code>this</code> searches for and that are not already in it
+   */
+  abstract void keys(IndexSnapshot s, Vector<String> ks) throws NotPossibleException;
+
+  /**
+   * @param q
+   *          the query being evaluated, which scores the matches
+   * @param scored
+   *          whether the scores of the matches are needed; they are not for a
+   *          negated node
+   * @modifies <code>q</code>
+   * @effects if <code>this</code> has a phrase and the snapshot of
+   *          <code>q</code> has no positions throws
+   *          <code>NotPossibleException</code>, else returns the matches of
+   *          <code>this</code> in the snapshot of <code>q</code>
+   */
+  abstract Matches eval(Query q, boolean scored) throws NotPossibleException;
+
+  /**
+   * @effects if <code>this</code> is a keyword or the conjunction of some
+   *          keywords returns them, without repetitions, else returns
+   *          <code>null</code>
+   */
+  String[] terms() {
+    return null;
+  }
+
+  /**
+   * @overview A keyword
+   */
+  static class Term extends QueryNode {
+    private String w;
+
+    Term(String w) {
+      this.w = w;
+    }
+
+    long cost(IndexSnapshot s) {
+      Postings ps = s.postings(w);
+      return (ps == null) ? 0 : ps.size();
+    }
+
+    void keys(IndexSnapshot s, Vector<String> ks) {
+      if (!ks.contains(w))
+        ks.add(w);
+    }
+
+    Matches eval(Query q, boolean scored) {
+      Postings ps = q.snapshot().postings(w);
+      if (ps == null)
+        return Matches.empty();
+      return Matches.of(ps, scored ? q.weight(w, ps) : 0f, q);
+    }
+
+    String[] terms() {
+      return new String[] { w };
+    }
+
+    /**
+     * @modifies <code>m</code>, <code>q</code>
+     * @effects intersects <code>m</code> with the postings of <code>this</code>, 
+     *          as {@link QueryNode#eval(Query, boolean)} scores them
+     */
+    void and(Matches m, Query q, boolean scored) {
+      Postings ps = q.snapshot().postings(w);
+      if (ps == null)
+        m.n = 0;
+      else
+        m.and(ps, scored ? q.weight(w, ps) : 0f, q);
+    }
+
+    /**
+     * @modifies <code>m</code>
+     * @effects removes the documents of <code>this</code> from <code>m</code>
+     */
+    void andNot(Matches m, Query q) {
+      Postings ps = q.snapshot().postings(w);
+      if (ps != null)
+        m.andNot(ps);
+    }
+  }
+
+  /**
+   * @overview A phrase, i.e. the conjunction of its keywords constrained by
+   *           their positions
+   */
+  static class Phrase extends QueryNode {
+    private Proximity p;
+    private And terms; // the conjunction of the keywords of p
+
+    Phrase(Proximity p) {
+      this.p = p;
+      String[] ts = p.terms();
+      QueryNode[] pos = new QueryNode[ts.length];
+      for (int i = 0; i < ts.length; i++)
+        pos[i] = new Term(ts[i]);
+      terms = new And(pos, new QueryNode[0]);
+    }
+
+    long cost(IndexSnapshot s) {
+      return terms.cost(s);
+    }
+
+    void keys(IndexSnapshot s, Vector<String> ks) {
+      terms.keys(s, ks);
+    }
+
+    Matches eval(Query q, boolean scored) throws NotPossibleException {
+      Matches m = terms.eval(q, scored);
+      if (m.n > 0)
+        m.filter(p, q.snapshot());
+      return m;
+    }
+  }
+
+  /**
+   * @overview The documents that contain some keyword that matches a pattern, 
+   *           or some of the keywords nearest to a (possibly misspelled) word, 
+   *           i.e. the disjunction of those keywords
+   */
+  static class Expansion extends QueryNode {
+    /** the maximum number of keywords that a pattern may match */
+    static final int MAX_KEYWORDS = 1024;
+    /** the number of nearest keywords that a fuzzy word expands to at most */
+    static final int MAX_FUZZY_KEYWORDS = 50;
+
+    private TermPattern p; // null if fuzzy
+    private LevenshteinAutomaton fuzzy; // null if p is not
+    private IndexSnapshot snap; // the snapshot that this was last expanded on
+    private QueryNode expanded; // the disjunction of the keywords, or null
+
+    Expansion(TermPattern p) {
+      this.p = p;
+    }
+
+    Expansion(LevenshteinAutomaton fuzzy) {
+      this.fuzzy = fuzzy;
+    }
+
+    /**
+     * @modifies <code>this</code>
+     * @effects if <code>p</code> matches more than <code>MAX_KEYWORDS</code> 
+     *          keywords of <code>s</code> throws <code>NotPossibleException</code>, 
+     *          else returns the disjunction of the keywords that match 
+     *          <code>p</code>, or of the <code>MAX_FUZZY_KEYWORDS</code> keywords 
+     *          nearest to the word of <code>fuzzy</code>, or <code>null</code> 
+     *          if there are none
+     */
+    private QueryNode expand(IndexSnapshot s) throws NotPossibleException {
+      if (s != snap) {
+        String[] ks = (p != null) ? s.keywords(p, MAX_KEYWORDS)
+            : s.keywords(fuzzy, MAX_FUZZY_KEYWORDS);
+        QueryNode[] ts = new QueryNode[ks.length];
+        for (int i = 0; i < ks.length; i++)
+          ts[i] = new Term(ks[i]);
+
+        expanded = (ts.length == 0) ? null : (ts.length == 1) ? ts[0] : new Or(ts);
+        snap = s;
+      }
+      return expanded;
+    }
+
+    long cost(IndexSnapshot s) throws NotPossibleException {
+      QueryNode nd = expand(s);
+      return (nd == null) ? 0 : nd.cost(s);
+    }
+
+    void keys(IndexSnapshot s, Vector<String> ks) throws NotPossibleException {
+      QueryNode nd = expand(s);
+      if (nd != null)
+        nd.keys(s, ks);
+    }
+
+    Matches eval(Query q, boolean scored) throws NotPossibleException {
+      QueryNode nd = expand(q.snapshot());
+      return (nd == null) ? Matches.empty() : nd.eval(q, scored);
+    }
+  }
+
+  /**
+   * @overview The documents that match all of some nodes and none of some
+   *           others
+   */
+  static class And extends QueryNode {
+    private QueryNode[] pos; // not empty
+    private QueryNode[] neg;
+
+    And(QueryNode[] pos, QueryNode[] neg) {
+      this.pos = pos;
+      this.neg = neg;
+    }
+
+    long cost(IndexSnapshot s) throws NotPossibleException {
+      long c = Long.MAX_VALUE;
+      for (QueryNode nd : pos)
+        c = Math.min(c, nd.cost(s));
+      return c;
+    }
+
+    void keys(IndexSnapshot s, Vector<String> ks) throws NotPossibleException {
+      for (QueryNode nd : pos)
+        nd.keys(s, ks);
+    }
+
+    /**
+     * @effects evaluates the cheapest operand, intersects the others with it
+     *          in order of cost and then removes the negated operands, stopping
+     *          as soon as there are no matches left
+     */
+    Matches eval(Query q, boolean scored) throws NotPossibleException {
+      IndexSnapshot s = q.snapshot();
+      QueryNode[] ops = sortByCost(pos, s);
+
+      Matches m = ops[0].eval(q, scored);
+      for (int i = 1; i < ops.length && m.n > 0; i++) {
+        if (ops[i] instanceof Term)
+          ((Term) ops[i]).and(m, q, scored);
+        else
+          m.and(ops[i].eval(q, scored));
+      }
+
+      for (int i = 0; i < neg.length && m.n > 0; i++) {
+        if (neg[i] instanceof Term)
+          ((Term) neg[i]).andNot(m, q);
+        else
+          m.andNot(neg[i].eval(q, false));
+      }
+      return m;
+    }
+
+    String[] terms() {
+      if (neg.length > 0)
+        return null;
+
+      Vector<String> ws = new Vector<>();
+      for (QueryNode nd : pos) {
+        if (!(nd instanceof Term))
+          return null;
+        String w = ((Term) nd).w;
+        if (!ws.contains(w))
+          ws.add(w);
+      }
+      return ws.toArray(new String[ws.size()]);
+    }
+  }
+
+  /**
+   * @overview The documents that match some of several nodes
+   */
+  static class Or extends QueryNode {
+    private QueryNode[] ops; // at least two
+
+    Or(QueryNode[] ops) {
+      this.ops = ops;
+    }
+
+    long cost(IndexSnapshot s) throws NotPossibleException {
+      long c = 0;
+      for (QueryNode nd : ops)
+        c += nd.cost(s);
+      return c;
+    }
+
+    void keys(IndexSnapshot s, Vector<String> ks) throws NotPossibleException {
+      for (QueryNode nd : ops)
+        nd.keys(s, ks);
+    }
+
+    Matches eval(Query q, boolean scored) throws NotPossibleException {
+      Matches[] ms = new Matches[ops.length];
+      for (int i = 0; i < ops.length; i++)
+        ms[i] = ops[i].eval(q, scored);
+      return Matches.or(ms, q.snapshot().numDocs());
+    }
+  }
+
+  /**
+   * @effects returns the elements of <code>nodes</code> in ascending order of
+   *          their cost in <code>s</code>; each cost is computed once
+   */
+  private static QueryNode[] sortByCost(QueryNode[] nodes, IndexSnapshot s)
+      throws NotPossibleException {
+    long[] costs = new long[nodes.length];
+    Integer[] order = new Integer[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      costs[i] = nodes[i].cost(s);
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(costs[a], costs[b]));
+
+    QueryNode[] sorted = new QueryNode[nodes.length];
+    for (int i = 0; i < nodes.length; i++)
+      sorted[i] = nodes[order[i]];
+    return sorted;
+  }
+}
@@ -0,0 +1,326 @@
+package a2_BI12_170.kengine;
+
+import java.util.Vector;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview A parser of boolean queries into {@link QueryNode} trees. The syntax
+ *           is
+ *
+ *           <pre>
+ *   query   ::= or
+ *   or      ::= and ( "OR" and )*
+ *   and     ::= unary ( [ "AND" ] unary )*
+ *   unary   ::= [ "NOT" ] primary
+ *   primary ::= "(" or ")" | '"' word+ '"' | "[" bound "TO" bound "]" | pattern
+ *             | word "~" [ "0" | "1" | "2" ] | word
+ *   bound   ::= word | "*"
+ *           </pre>
+ *
+ *           i.e. words next to each other must all occur, <code>NOT</code>
+ *           excludes the documents of the word, phrase or group that follows
+ *           it, <code>AND</code> binds tighter than <code>OR</code> and a
+ *           quoted phrase matches its words one after the other. A pattern is
+ *           a word with wildcards, <code>*</code> for any characters and
+ *           <code>?</code> for one character (e.g. <code>hoa*</code>), and
+ *           matches the documents that contain any keyword that matches it,
+ *           as does a range of keywords, whose bounds are included and
+ *           <code>*</code> means no bound (see {@link TermPattern}). A word
+ *           followed by <code>~</code> matches the keywords within the given
+ *           number of edits of it, or a number that depends on its length if
+ *           none is given (see {@link LevenshteinAutomaton}), so that a
+ *           misspelled word still finds documents. The operators
+ *           are only recognised in upper case, so that <code>and</code>,
+ *           <code>or</code> and <code>not</code> are ordinary (uninteresting)
+ *           words.
+ *
+ *           Uninteresting words are not indexed, so they are dropped from the
+ *           query, except in a phrase where they match any word at their
+ *           position.
+ *
+ * @version 1.0 <br>
+ *          1.1 keyword patterns and ranges <br>
+ *          1.2 fuzzy words
+ */
+class QueryParser {
+  private static final String AND = "AND";
+  private static final String OR = "OR";
+  private static final String NOT = "NOT";
+
+  private WordTable wt;
+
+  // the state of the current parse
+  private String expr;
+  private Vector<String> tokens; // a phrase token starts with '"', a range with '['
+  private int at; // the next token
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to parse queries for the documents
+   *          of <code>wt</code>
+   */
+  QueryParser(WordTable wt) {
+    this.wt = wt;
+  }
+
+  /**
+   * A method to parse a boolean query.
+   *
+   * @requires <code>expr</code> is not <code>null</code>
+   * @effects if <code>expr</code> is not a query, or has no interesting words,
+   *          or has a phrase and <code>wt</code> does not index word positions,
+   *          or a part of it only excludes words (e.g. <code>NOT a</code>),
+   *          throws <code>NotPossibleException</code>; else returns the tree of
+   *          <code>expr</code>
+   */
+  QueryNode parse(String expr) throws NotPossibleException {
+    this.expr = expr;
+    tokens = tokenize(expr);
+    at = 0;
+
+    QueryNode root = or();
+    if (at < tokens.size())
+      throw error("unexpected " + tokens.get(at));
+    if (root == null)
+      throw error("no interesting words");
+    return root;
+  }
+
+  /**
+   * @effects returns the tokens of <code>s</code>: parentheses, phrases (the
+   *          text between a pair of double quotes, prefixed by a double quote),
+   *          ranges (the text between a pair of brackets, prefixed by 
+   *          <code>[</code>) and words (runs of other characters that are not 
+   *          white space)
+   */
+  private Vector<String> tokenize(String s) throws NotPossibleException {
+    Vector<String> ts = new Vector<>();
+    int i = 0;
+    int len = s.length();
+    while (i < len) {
+      char c = s.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '(' || c == ')') {
+        ts.add(String.valueOf(c));
+        i++;
+      } else if (c == '"' || c == '[') {
+        int end = s.indexOf((c == '"') ? '"' : ']', i + 1);
+        if (end < 0)
+          throw error((c == '"') ? "unterminated phrase" : "unterminated range");
+        ts.add(s.substring(i, end));
+        i = end + 1;
+      } else {
+        int start = i;
+        while (i < len && !Character.isWhitespace(c = s.charAt(i)) && c != '(' && c != ')'
+            && c != '"' && c != '[')
+          i++;
+        ts.add(s.substring(start, i));
+      }
+    }
+    return ts;
+  }
+
+  /**
+   * @effects parses <code>or ::= and ( "OR" and )*</code> and returns its node,
+   *          or <code>null</code> if it has no interesting words
+   */
+  private QueryNode or() throws NotPossibleException {
+    Vector<QueryNode> ops = new Vector<>();
+    add(ops, and());
+    while (accept(OR))
+      add(ops, and());
+
+    if (ops.isEmpty())
+      return null;
+    else if (ops.size() == 1)
+      return ops.get(0);
+    else
+      return new QueryNode.Or(ops.toArray(new QueryNode[ops.size()]));
+  }
+
+  /**
+   * @effects parses <code>and ::= unary ( [ "AND" ] unary )*</code> and
+   *          returns its node, or <code>null</code> if it has no interesting
+   *          words
+   */
+  private QueryNode and() throws NotPossibleException {
+    Vector<QueryNode> pos = new Vector<>();
+    Vector<QueryNode> neg = new Vector<>();
+    do {
+      if (at == tokens.size() || peek(")") || peek(OR))
+        throw error("missing word");
+
+      if (accept(NOT))
+        add(neg, primary());
+      else
+        add(pos, primary());
+    } while (accept(AND) || (at < tokens.size() && !peek(")") && !peek(OR)));
+
+    if (pos.isEmpty()) {
+      if (!neg.isEmpty())
+        throw error("NOT must follow the words to search for");
+      return null;
+    } else if (pos.size() == 1 && neg.isEmpty()) {
+      return pos.get(0);
+    } else {
+      return new QueryNode.And(pos.toArray(new QueryNode[pos.size()]),
+          neg.toArray(new QueryNode[neg.size()]));
+    }
+  }
+
+  /**
+   * @effects parses <code>primary</code> and returns its node, or 
+   *          <code>null</code> if it has no interesting words
+   */
+  private QueryNode primary() throws NotPossibleException {
+    if (at == tokens.size())
+      throw error("missing word");
+
+    String t = tokens.get(at++);
+    if (t.equals("(")) {
+      QueryNode nd = or();
+      if (!accept(")"))
+        throw error("missing )");
+      return nd;
+    } else if (t.equals(")") || t.equals(AND) || t.equals(OR) || t.equals(NOT)) {
+      throw error("unexpected " + t);
+    } else if (t.charAt(0) == '"') {
+      return phrase(t.substring(1));
+    } else if (t.charAt(0) == '[') {
+      return range(t.substring(1));
+    } else if (t.indexOf('~') > 0) {
+      return fuzzy(t);
+    } else if (hasWildcard(t)) {
+      return new QueryNode.Expansion(TermPattern.wildcard(Helpers.canon(t)));
+    } else {
+      String w = Helpers.canon(t);
+      return wt.isInteresting(w) ? new QueryNode.Term(w) : null;
+    }
+  }
+
+  /**
+   * @requires <code>t</code> has a <code>~</code> after its first character
+   * @effects returns the node of the fuzzy word <code>t</code>, i.e. 
+   *          <code>word~</code> or <code>word~n</code>
+   */
+  private QueryNode fuzzy(String t) throws NotPossibleException {
+    int at = t.indexOf('~');
+    String w = Helpers.canon(t.substring(0, at));
+    String n = t.substring(at + 1);
+
+    int k;
+    if (n.isEmpty()) {
+      k = LevenshteinAutomaton.autoEdits(w);
+    } else if (n.length() == 1 && n.charAt(0) >= '0'
+        && n.charAt(0) <= '0' + LevenshteinAutomaton.MAX_EDITS) {
+      k = n.charAt(0) - '0';
+    } else {
+      throw error("invalid number of edits in " + t);
+    }
+    if (hasWildcard(w))
+      throw error("wildcard in fuzzy word " + t);
+
+    return new QueryNode.Expansion(new LevenshteinAutomaton(w, k));
+  }
+
+  /**
+   * @effects returns the node of the range <code>[s]</code>, where 
+   *          <code>s</code> is <code>bound "TO" bound</code>
+   */
+  private QueryNode range(String s) throws NotPossibleException {
+    String[] bs = s.trim().split("\\s+");
+    if (bs.length != 3 || !bs[1].equals("TO"))
+      throw error("invalid range [" + s + "]");
+
+    String lo = bs[0].equals("*") ? null : Helpers.canon(bs[0]);
+    String hi = bs[2].equals("*") ? null : Helpers.canon(bs[2]);
+    return new QueryNode.Expansion(TermPattern.range(lo, hi));
+  }
+
+  /**
+   * @effects if <code>t</code> has a wildcard character returns 
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  private static boolean hasWildcard(String t) {
+    for (int i = 0; i < t.length(); i++) {
+      if (TermPattern.isWildcard(t.charAt(i)))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * @effects returns the node of the phrase whose words are <code>s</code>,
+   *          or <code>null</code> if it has no interesting words. A phrase of
+   *          one word is that word.
+   */
+  private QueryNode phrase(String s) throws NotPossibleException {
+    Vector<String> ws = new Vector<>();
+    for (String t : s.trim().split("\\s+")) {
+      if (hasWildcard(t))
+        throw error("wildcard in phrase");
+      if (!t.isEmpty())
+        ws.add(t);
+    }
+
+    String[] words = new String[ws.size()];
+    int keys = 0;
+    for (int i = 0; i < words.length; i++) {
+      String w = Helpers.canon(ws.get(i));
+      if (wt.isInteresting(w)) {
+        words[i] = w;
+        keys++;
+      }
+    }
+
+    if (keys == 0)
+      return null;
+    if (words.length == 1)
+      return new QueryNode.Term(words[0]);
+    if (!wt.isPositional())
+      throw error("word positions are not indexed");
+    return new QueryNode.Phrase(Proximity.phrase(words));
+  }
+
+  /**
+   * @modifies <code>nodes</code>
+   * @effects if <code>nd</code> is not <code>null</code> appends it to
+   *          <code>nodes</code>
+   */
+  private static void add(Vector<QueryNode> nodes, QueryNode nd) {
+    if (nd != null)
+      nodes.add(nd);
+  }
+
+  /**
+   * @effects if the next token is <code>t</code> returns <code>true</code>,
+   *          else returns <code>false</code>
+   */
+  private boolean peek(String t) {
+    return at < tokens.size() && tokens.get(at).equals(t);
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects if the next token is <code>t</code> skips it and returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  private boolean accept(String t) {
+    if (peek(t)) {
+      at++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @effects returns the exception for the error <code>msg</code> in the
+   *          current query
+   */
+  private NotPossibleException error(String msg) {
+    return new NotPossibleException("QueryParser.parse: " + msg + " in query: " + expr);
+  }
+}
@@ -0,0 +1,84 @@
+package a2_BI12_170.kengine;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview A query session of one user of an {@link Engine}: a query that is
+ *           started with one keyword and refined with more, in the same way as
+ *           with {@link Engine#queryFirst(String)} and
+ *           {@link Engine#queryMore(String)}, except that the query belongs to
+ *           the session rather than to the engine. Any number of sessions can
+ *           be used on one engine at the same time, by different threads,
+ *           without affecting each other or the engine.
+ *
+ *           A query is bound to the snapshot of the engine that was current
+ *           when it was started, and all its keywords are looked up in that
+ *           snapshot. Start a new query to see documents added since.
+ *
+ *           A session itself is not meant to be shared between threads.
+ *
+ * @version 1.0
+ */
+public class QuerySession {
+  private Engine engine;
+  private Query q; // the query of this session, or null
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to be a session on
+   *          <code>engine</code> without a query
+   */
+  QuerySession(Engine engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * A method to start a new query of <code>this</code>.
+   *
+   * @param w
+   *          a keyword to search
+   * @effects if <code>w</code> is not a word, is an uninteresting word or is
+   *          not found in any document throws
+   *          <code>NotPossibleException</code>, else makes a query for
+   *          <code>w</code> on the current snapshot of the engine the query of
+   *          <code>this</code> and returns it
+   */
+  public Query queryFirst(String w) throws NotPossibleException {
+    IndexSnapshot s = engine.snapshot();
+    w = Engine.checkKey(s, w, "QuerySession.queryFirst");
+
+    q = new Query(s, w, engine.scorer());
+    return q;
+  }
+
+  /**
+   * A method to refine the query of <code>this</code> with another keyword.
+   *
+   * @param w
+   *          a keyword to search
+   * @effects if <code>this</code> has no query, or <code>w</code> is not a
+   *          word, is an uninteresting word, is not found in any document of
+   *          the snapshot of the query or is already a keyword of the query,
+   *          throws <code>NotPossibleException</code>; else updates the query
+   *          to contain the documents matching all its keywords and
+   *          <code>w</code>, and returns it
+   */
+  public Query queryMore(String w) throws NotPossibleException {
+    if (q == null)
+      throw new NotPossibleException("QuerySession.queryMore: no query has been started");
+
+    w = Engine.checkKey(q.snapshot(), w, "QuerySession.queryMore");
+
+    q.addKey(w);
+    return q;
+  }
+
+  /**
+   * @effects returns the query of <code>this</code>, or <code>null</code> if
+   *          none has been started
+   */
+  public Query query() {
+    return q;
+  }
+}
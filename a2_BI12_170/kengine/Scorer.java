@@ -0,0 +1,50 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview A scoring function that ranks the documents matching a
+ *           {@link Query}. The score of a document is the sum, over the
+ *           keywords of the query, of the score of the keyword in that
+ *           document. Scoring is split in two steps so that the part that
+ *           depends only on the keyword is computed once per query rather
+ *           than once per matching document:
+ *           <ol>
+ *           <li>{@link #termWeight(int, int)} gives the weight of a keyword
+ *           from its document frequency;</li>
+ *           <li>{@link #score(float, int, int, float)} gives the score of the
+ *           keyword in one document from that weight, the number of
+ *           occurrences of the keyword in the document and the length of the
+ *           document.</li>
+ *           </ol>
+ *           The length of a document is its number of interesting words.
+ *           Implementations must be stateless, so that one scorer can be
+ *           shared by any number of queries.
+ *
+ * @version 1.0
+ */
+public interface Scorer {
+  /**
+   * @param df
+   *          the number of documents that contain the keyword
+   * @param numDocs
+   *          the number of documents in the index
+   * @requires <code>0 < df <= numDocs</code>
+   * @effects returns the weight of a keyword that occurs in <code>df</code>
+   *          of <code>numDocs</code> documents
+   */
+  public float termWeight(int df, int numDocs);
+
+  /**
+   * @param weight
+   *          the weight of the keyword, as returned by
+   *          <code>termWeight</code>
+   * @param tf
+   *          the number of occurrences of the keyword in the document
+   * @param docLen
+   *          the length of the document
+   * @param avgDocLen
+   *          the average length of the documents in the index
+   * @requires <code>0 < tf <= docLen</code>
+   * @effects returns the score of the keyword in the document
+   */
+  public float score(float weight, int tf, int docLen, float avgDocLen);
+}
@@ -0,0 +1,189 @@
+package a2_BI12_170.kengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Vector;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview Reads an index segment file written by {@link SegmentWriter}. The
+ *           file is memory-mapped: postings are bulk-copied from the mapping
+ *           into <code>int</code> arrays, and the content of each document is
+ *           a <code>CharBuffer</code> view of the mapping, so no document is
+ *           parsed or decoded when a segment is opened.
+ *
+ *           Files of version 1, which do not store document lengths, are also
+ *           read; the length of each document is then computed from the
+ *           postings. Files of version 2 or older have no positions, and
+ *           files of version 3 or older have no deleted documents.
+ *
+ * @version 3.0 <br>
+ *          4.0 deleted documents
+ */
+class SegmentReader {
+  private File f;
+  private ByteBuffer buf; // the mapped file
+  private int version;
+  private int flags;
+
+  /**
+   * Constructor method
+   *
+   * @param f
+   *          an index segment file
+   * @effects if <code>f</code> cannot be mapped or is not an index segment
+   *          file of a supported version throws
+   *          <code>NotPossibleException</code>, else maps <code>f</code>
+   */
+  SegmentReader(File f) throws NotPossibleException {
+    this.f = f;
+    try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    } catch (IOException e) {
+      throw new NotPossibleException("SegmentReader.init: failed to map index file " + f + " due to " + e);
+    }
+
+    if (buf.remaining() < 8 || buf.getInt() != SegmentWriter.MAGIC)
+      throw new NotPossibleException("SegmentReader.init: not an index file: " + f);
+
+    version = buf.getInt();
+    if (version < 1 || version > SegmentWriter.VERSION)
+      throw new NotPossibleException("SegmentReader.init: unsupported index file version " + version + ": " + f);
+
+    if (version >= 3) {
+      if (buf.remaining() < 4)
+        throw new NotPossibleException("SegmentReader.init: index file is corrupt: " + f);
+      flags = buf.getInt();
+    }
+  }
+
+  /**
+   * @effects if the postings of the file are positional returns 
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean isPositional() {
+    return (flags & SegmentWriter.POSITIONAL) != 0;
+  }
+
+  /**
+   * A method to load the segment into the tables of an engine.
+   *
+   * @param tt
+   *          the title table of the engine
+   * @param wt
+   *          the word table of the engine
+   * @param urls
+   *          the URLs of the engine
+   * @requires the tables and <code>urls</code> are empty, <code>wt</code> is
+   *           positional if and only if the file is, and this method has not
+   *           been invoked before
+   * @modifies <code>tt, wt, urls</code>
+   * @effects if the file is corrupt throws <code>NotPossibleException</code>,
+   *          else adds the documents, postings and URLs of the segment to
+   *          <code>tt</code>, <code>wt</code> and <code>urls</code>. The
+   *          deleted documents are added to <code>wt</code> only, and deleted
+   *          there, so that the ids of the others are kept
+   */
+  void load(TitleTable tt, WordTable wt, Vector<String> urls) throws NotPossibleException {
+    try {
+      int numDocs = buf.getInt();
+      int numTerms = buf.getInt();
+      int numUrls = buf.getInt();
+
+      for (int i = 0; i < numUrls; i++)
+        urls.add(readString());
+
+      Doc[] docs = new Doc[numDocs];
+      int[] lens = new int[numDocs];
+      for (int id = 0; id < numDocs; id++) {
+        String title = readString();
+        docs[id] = new Doc(title, readChars());
+        if (version >= 2)
+          lens[id] = buf.getInt();
+      }
+
+      BitSet deleted = new BitSet(numDocs);
+      if (version >= 4) {
+        int numDeleted = buf.getInt();
+        for (int i = 0; i < numDeleted; i++)
+          deleted.set(buf.getInt());
+      }
+
+      String[] terms = new String[numTerms];
+      PostingList[] lists = new PostingList[numTerms];
+      for (int i = 0; i < numTerms; i++) {
+        terms[i] = readString();
+        int n = buf.getInt();
+        int[] ids = new int[n];
+        int[] cnts = new int[n];
+        buf.asIntBuffer().get(ids).get(cnts);
+        buf.position(buf.position() + 8 * n);
+        if (isPositional()) {
+          int[] posEnd = new int[n];
+          buf.asIntBuffer().get(posEnd);
+          buf.position(buf.position() + 4 * n);
+          byte[] pos = new byte[buf.getInt()];
+          buf.get(pos);
+          lists[i] = new PostingList(ids, cnts, pos, posEnd);
+        } else {
+          lists[i] = new PostingList(ids, cnts);
+        }
+
+        if (version < 2) {
+          for (int j = 0; j < n; j++)
+            lens[ids[j]] += cnts[j];
+        }
+      }
+
+      // the documents must be loaded before their postings
+      for (int id = 0; id < numDocs; id++) {
+        if (!deleted.get(id))
+          tt.addDoc(docs[id]);
+        wt.loadDoc(docs[id], lens[id]);
+      }
+      for (int i = 0; i < numTerms; i++) {
+        // a keyword of deleted documents only has no postings
+        if (lists[i].size() > 0)
+          wt.loadPostings(terms[i], lists[i]);
+      }
+      for (int id = deleted.nextSetBit(0); id >= 0; id = deleted.nextSetBit(id + 1))
+        wt.deleteDoc(docs[id]);
+
+      // the loaded documents form one segment
+      wt.flush();
+    } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+        | NegativeArraySizeException e) {
+      throw new NotPossibleException("SegmentReader.load: index file is corrupt: " + f);
+    }
+  }
+
+  /**
+   * @effects reads a string from the current position of <code>buf</code>
+   */
+  private String readString() {
+    CharBuffer cb = readChars();
+    return (cb == null) ? null : cb.toString();
+  }
+
+  /**
+   * @effects reads a string from the current position of <code>buf</code> as
+   *          a view of <code>buf</code>
+   */
+  private CharBuffer readChars() {
+    int len = buf.getInt();
+    if (len < 0)
+      return null;
+
+    CharBuffer cb = buf.asCharBuffer();
+    cb.limit(len);
+    buf.position(buf.position() + 2 * len);
+    return cb;
+  }
+}
@@ -0,0 +1,161 @@
+package a2_BI12_170.kengine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Vector;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview Writes the content of an engine to an index segment file, which
+ *           {@link SegmentReader} can open without parsing any document. All
+ *           numbers are big-endian <code>int</code>s and all strings are a
+ *           length (<code>-1</code> for <code>null</code>) followed by that
+ *           many UTF-16 chars. The layout is:
+ *
+ *           <pre>
+ *   header:   MAGIC VERSION flags numDocs numTerms numUrls
+ *   urls:     numUrls strings
+ *   docs:     numDocs x (title content len), in document id order
+ *   deleted:  numDeleted ids[numDeleted]
+ *   terms:    numTerms x (term n ids[n] cnts[n] [posEnd[n] posLen pos[posLen]]), 
+ *             in ascending term order
+ * </pre>
+ *
+ *           Document content is stored as chars (rather than in a variable
+ *           length encoding) so that the reader can hand a view of the mapped
+ *           file to <code>Doc</code> without decoding it. <code>len</code> is
+ *           the number of interesting words of the document, which scorers
+ *           use; version 1 files do not have it. Bit 0 of <code>flags</code>
+ *           (since version 3) is set if the postings are positional; then
+ *           each term also has the encoded positions of its postings (see
+ *           {@link PostingList}) as bytes.
+ *
+ *           Since version 4 the ids of the deleted documents follow the
+ *           documents. A deleted document is still stored, so that the ids
+ *           stay dense, but its postings are not.
+ *
+ * @version 3.0 positions <br>
+ *          4.0 deleted documents
+ */
+class SegmentWriter {
+  static final int MAGIC = 0x4B534547; // "KSEG"
+  static final int VERSION = 4;
+  /** the flag of a file with positional postings */
+  static final int POSITIONAL = 1;
+
+  /**
+   * A method to write an index segment.
+   *
+   * @param f
+   *          the file to write to
+   * @param wt
+   *          the word table of the engine
+   * @param urls
+   *          the URLs whose documents have been added to the engine
+   * @requires the arguments are not <code>null</code>
+   * @effects if the file cannot be written throws
+   *          <code>NotPossibleException</code>, else writes the documents, the
+   *          ids of the deleted ones and the postings of the others of
+   *          <code>wt</code> and <code>urls</code> to
+   *          <code>f</code>. The segment is written to a temporary file first
+   *          and then moved over <code>f</code>, so a reader that has mapped
+   *          an older version of <code>f</code> is not affected.
+   */
+  static void write(File f, WordTable wt, Vector<String> urls) throws NotPossibleException {
+    File tmp = new File(f.getPath() + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+      Vector<String> tv = new Vector<>();
+      for (Iterator<String> it = wt.keywords(); it.hasNext();)
+        tv.add(it.next());
+      String[] terms = tv.toArray(new String[tv.size()]);
+      Arrays.sort(terms);
+
+      int numDocs = wt.numDocs();
+      BitSet deleted = wt.refresh().deleted();
+
+      // header
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      boolean positional = wt.isPositional();
+      out.writeInt(positional ? POSITIONAL : 0);
+      out.writeInt(numDocs);
+      out.writeInt(terms.length);
+      out.writeInt(urls.size());
+
+      // urls
+      for (String u : urls)
+        writeString(out, u);
+
+      // docs
+      Doc d;
+      for (int id = 0; id < numDocs; id++) {
+        d = wt.doc(id);
+        writeString(out, d.title());
+        writeString(out, d.content());
+        out.writeInt(wt.docLen(id));
+      }
+
+      // deleted
+      out.writeInt(deleted.cardinality());
+      for (int id = deleted.nextSetBit(0); id >= 0; id = deleted.nextSetBit(id + 1))
+        out.writeInt(id);
+
+      // terms
+      PostingList pl;
+      for (String t : terms) {
+        writeString(out, t);
+        pl = wt.postings(t).toList(deleted);
+        out.writeInt(pl.size());
+        for (int i = 0; i < pl.size(); i++)
+          out.writeInt(pl.id(i));
+        for (int i = 0; i < pl.size(); i++)
+          out.writeInt(pl.count(i));
+        if (positional) {
+          for (int i = 0; i < pl.size(); i++)
+            out.writeInt(pl.posEnd(i));
+          int posLen = (pl.size() == 0) ? 0 : pl.posEnd(pl.size() - 1);
+          out.writeInt(posLen);
+          out.write(pl.positionBytes(), 0, posLen);
+        }
+      }
+    } catch (IOException e) {
+      tmp.delete();
+      throw new NotPossibleException("SegmentWriter.write: failed to write index file " + f + " due to " + e);
+    }
+
+    try {
+      Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      tmp.delete();
+      throw new NotPossibleException("SegmentWriter.write: failed to replace index file " + f + " due to " + e);
+    }
+  }
+
+  /**
+   * @effects writes <code>s</code> to <code>out</code> as its length followed
+   *          by its chars, or as <code>-1</code> if <code>s</code> is
+   *          <code>null</code>
+   */
+  private static void writeString(DataOutputStream out, CharSequence s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      int len = s.length();
+      out.writeInt(len);
+      for (int i = 0; i < len; i++)
+        out.writeChar(s.charAt(i));
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package a2_BI12_170.kengine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview An immutable set of uninteresting (stop) words, compiled into a
+ *           perfect hash table: the words are placed in a table of
+ *           <code>2<sup>k</sup></code> slots by a polynomial hash function
+ *           whose multiplier is chosen so that no two words share a slot.
+ *           Checking a word therefore costs one hash computation and at most
+ *           one comparison,
+ *           and a word can be checked directly from a range of a
+ *           <code>char</code> array without creating a <code>String</code>.
+ *
+ *           The search for a multiplier is bounded: the table is doubled at
+ *           most {@link #MAX_DOUBLINGS} times, i.e. to 16 to 32 times the
+ *           number of words. If no multiplier separates the words in a table
+ *           of that size the words are kept in a <code>HashSet</code>
+ *           instead, and a token is checked by creating its
+ *           <code>String</code>.
+ *
+ *           The standard stop words are read from the file <code>nk.dat</code>
+ *           once per JVM and shared by all the engines (see
+ *           {@link #standard()}).
+ *
+ * @version 1.0 <br>
+ *          1.1 bounded search, with a hash set as the fallback
+ */
+class StopWords {
+  private static final String NK_FILE = "nk.dat";
+  private static final int MAX_MULTIPLIERS = 64; // tried per table size
+  /** the number of times the table may be doubled from twice the number of words */
+  static final int MAX_DOUBLINGS = 3;
+
+  private static volatile StopWords standard; // loaded on first use
+
+  private String[] words; // in the order they were given
+  private char[][] table; // slot -> word, or null; null if set is used instead
+  private HashSet<String> set; // the words, if no perfect hash table was found
+  private int mul; // the multiplier of the hash function, odd
+  private int shift; // 32 - log2(table.length)
+
+  /**
+   * Constructor method
+   *
+   * @requires the elements of <code>ws</code> are distinct, non-empty and in
+   *           canonical form
+   * @effects initialises <code>this</code> to be the set of words in
+   *           <code>ws</code>
+   */
+  StopWords(String[] ws) {
+    words = ws.clone();
+
+    // start with a table at least twice as large as the set, and double it
+    // until some multiplier places every word in its own slot
+    int bits = 1;
+    while ((1 << bits) < 2 * words.length)
+      bits++;
+
+    for (int maxBits = bits + MAX_DOUBLINGS; bits <= maxBits; bits++) {
+      table = new char[1 << bits][];
+      shift = 32 - bits;
+      for (int m = 0; m < MAX_MULTIPLIERS; m++) {
+        mul = 31 + 2 * m;
+        if (place())
+          return;
+        Arrays.fill(table, null);
+      }
+    }
+
+    // a larger table would waste more memory than it saves time
+    table = null;
+    set = new HashSet<>(Arrays.asList(words));
+  }
+
+  /**
+   * A method to obtain the standard stop words.
+   *
+   * @effects if the stop word file cannot be read throws
+   *          <code>NotPossibleException</code>, else returns the stop words of
+   *          the file, which are read the first time this method is invoked
+   */
+  static StopWords standard() throws NotPossibleException {
+    StopWords sw = standard;
+    if (sw == null) {
+      synchronized (StopWords.class) {
+        sw = standard;
+        if (sw == null) {
+          sw = load();
+          standard = sw;
+        }
+      }
+    }
+    return sw;
+  }
+
+  /**
+   * @effects if the stop word file cannot be read throws
+   *          <code>NotPossibleException</code>, else returns a new set of the
+   *          canonical forms of the words in it, one per line
+   */
+  private static StopWords load() throws NotPossibleException {
+    // assumes file is stored in the same directory as this class
+    InputStream in = StopWords.class.getResourceAsStream(NK_FILE);
+    if (in == null)
+      throw new NotPossibleException("StopWords.load: Failed to read non-key file " + NK_FILE);
+
+    LinkedHashSet<String> ws = new LinkedHashSet<>();
+    try (BufferedReader bf = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String nw;
+      while ((nw = bf.readLine()) != null) {
+        nw = nw.trim();
+        if (!nw.isEmpty())
+          ws.add(Helpers.canon(nw));
+      }
+    } catch (IOException ex) {
+      throw new NotPossibleException("StopWords.load: Failed to read non-key file " + NK_FILE
+          + " due to " + ex);
+    }
+
+    return new StopWords(ws.toArray(new String[ws.size()]));
+  }
+
+  /**
+   * @modifies <code>table</code>
+   * @effects if every word can be put in its slot for the current multiplier
+   *          without sharing it puts them there and returns <code>true</code>,
+   *          else returns <code>false</code>
+   */
+  private boolean place() {
+    for (String w : words) {
+      int slot = slot(w);
+      if (table[slot] != null)
+        return false;
+      table[slot] = w.toCharArray();
+    }
+    return true;
+  }
+
+  /**
+   * @effects if <code>w</code> is in <code>this</code> returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean contains(String w) {
+    if (table == null)
+      return set.contains(w);
+
+    char[] t = table[slot(w)];
+    if (t == null || t.length != w.length())
+      return false;
+    for (int i = 0; i < t.length; i++) {
+      if (t[i] != w.charAt(i))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @requires <code>buf[start..start+len)</code> is a range of <code>buf</code>
+   * @effects if the canonical form of the token
+   *          <code>buf[start..start+len)</code> is in <code>this</code> returns
+   *          <code>true</code>, else returns <code>false</code>. An ASCII token
+   *          is lower-cased while it is hashed, so nothing is allocated unless
+   *          the words are kept in a hash set.
+   */
+  boolean contains(char[] buf, int start, int len) {
+    if (table == null || !Helpers.ASCII_LOWER)
+      return contains(Helpers.canon(new String(buf, start, len)));
+
+    int h = 0;
+    for (int i = start, end = start + len; i < end; i++) {
+      char c = buf[i];
+      if (c >= 0x80)
+        return contains(Helpers.canon(new String(buf, start, len)));
+      h = h * mul + Helpers.lower(c);
+    }
+
+    char[] t = table[(h * 0x9E3779B1) >>> shift];
+    if (t == null || t.length != len)
+      return false;
+    for (int i = 0; i < len; i++) {
+      if (t[i] != Helpers.lower(buf[start + i]))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @effects returns the slot of <code>w</code> in <code>table</code>
+   */
+  private int slot(String w) {
+    int h = 0;
+    for (int i = 0; i < w.length(); i++)
+      h = h * mul + w.charAt(i);
+    return (h * 0x9E3779B1) >>> shift;
+  }
+
+  /**
+   * @effects returns the number of words in <code>this</code>
+   */
+  int size() {
+    return words.length;
+  }
+
+  /**
+   * @effects returns an iterator over the words of <code>this</code>, in the
+   *          order they were given
+   */
+  Iterator<String> iterator() {
+    return Arrays.asList(words).iterator();
+  }
+}
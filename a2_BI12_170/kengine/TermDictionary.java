@@ -0,0 +1,216 @@
+package a2_BI12_170.kengine;
+
+import java.util.Arrays;
+
+/**
+ * @overview A dictionary of canonical terms, each of which is given a dense
+ *           integer id in the order the terms are first seen. The terms are
+ *           interned: the dictionary keeps one <code>String</code> per term, and
+ *           its hash code is computed once, so maps keyed by the terms of the
+ *           dictionary never hash a term again.
+ *
+ *           Tokens are looked up directly from a range of a
+ *           <code>char</code> array (see {@link #id(char[], int, int)}). An
+ *           ASCII token is lower-cased on the fly while it is hashed and
+ *           compared, so looking up a term that is already in the dictionary
+ *           allocates nothing; a <code>String</code> is created only for a new
+ *           term. Other tokens are canonicalised with {@link Helpers#canon}.
+ *
+ *           The table is open-addressed with linear probing. Lookups of
+ *           existing terms do not lock: a lookup that misses, e.g. because it
+ *           raced with an insertion, falls back to a synchronized lookup that
+ *           adds the term if it is still absent. A racing lookup can miss but
+ *           never returns a wrong id, because a slot only ever refers to a
+ *           term that is compared with the token. So any number of threads
+ *           may look up and add terms at once, e.g. the threads that count the
+ *           words of documents while another adds them to the index.
+ *
+ * @version 1.0 <br>
+ *          1.1 term(int) is safe against concurrent additions
+ */
+class TermDictionary {
+  private static final int INIT_CAPACITY = 1024; // a power of 2
+
+  private volatile int[] slots; // hash table of id + 1 (0 is empty)
+  private volatile String[] terms; // id -> term
+  private int size; // number of terms
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> to be an empty dictionary
+   */
+  TermDictionary() {
+    slots = new int[INIT_CAPACITY * 2];
+    terms = new String[INIT_CAPACITY];
+  }
+
+  /**
+   * A method to look up the term of a token, adding it if necessary.
+   *
+   * @requires <code>buf[start..start+len)</code> is a range of
+   *           <code>buf</code> and <code>len > 0</code>
+   * @modifies <code>this</code>
+   * @effects returns the id of the canonical form of the token
+   *          <code>buf[start..start+len)</code>, adding it to
+   *          <code>this</code> if it is new
+   */
+  int id(char[] buf, int start, int len) {
+    int h = 0;
+    boolean ascii = true;
+    for (int i = start, end = start + len; i < end; i++) {
+      char c = buf[i];
+      if (c >= 0x80) {
+        ascii = false;
+        break;
+      }
+      h = 31 * h + Helpers.lower(c);
+    }
+
+    if (!ascii || !Helpers.ASCII_LOWER)
+      return id(Helpers.canon(new String(buf, start, len)));
+
+    int id = find(buf, start, len, h, slots, terms);
+    if (id >= 0)
+      return id;
+
+    synchronized (this) {
+      id = find(buf, start, len, h, slots, terms);
+      if (id < 0) {
+        char[] cs = new char[len];
+        for (int i = 0; i < len; i++)
+          cs[i] = Helpers.lower(buf[start + i]);
+        id = add(new String(cs), h);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * A method to look up a canonical term, adding it if necessary.
+   *
+   * @requires <code>w</code> is in canonical form
+   * @modifies <code>this</code>
+   * @effects returns the id of <code>w</code>, adding it to <code>this</code>
+   *          if it is new
+   */
+  int id(String w) {
+    int id = find(w);
+    if (id >= 0)
+      return id;
+
+    synchronized (this) {
+      id = find(w);
+      return (id >= 0) ? id : add(w, w.hashCode());
+    }
+  }
+
+  /**
+   * @requires <code>w</code> is in canonical form
+   * @effects if <code>w</code> is in <code>this</code> returns its id, else
+   *          returns <code>-1</code>
+   */
+  int find(String w) {
+    int[] s = slots;
+    String[] ts = terms;
+    int mask = s.length - 1;
+    for (int i = w.hashCode() & mask;; i = (i + 1) & mask) {
+      int v = s[i];
+      if (v == 0 || v > ts.length)
+        return -1;
+      String t = ts[v - 1];
+      if (t == null)
+        return -1;
+      if (t.equals(w))
+        return v - 1;
+    }
+  }
+
+  /**
+   * @requires <code>id</code> was returned by a lookup of <code>this</code>
+   * @effects returns the term whose id is <code>id</code>
+   */
+  String term(int id) {
+    String t = terms[id];
+    if (t == null) {
+      // the id was found by a lock-free lookup that raced with its addition,
+      // which the lock makes visible
+      synchronized (this) {
+        t = terms[id];
+      }
+    }
+    return t;
+  }
+
+  /**
+   * @effects returns the number of terms in <code>this</code>
+   */
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @requires <code>h</code> is the hash code of the lower case of the ASCII
+   *           token <code>buf[start..start+len)</code>
+   * @effects if the lower case of the token is in the table <code>s</code>,
+   *          <code>ts</code> returns its id, else returns <code>-1</code>
+   */
+  private static int find(char[] buf, int start, int len, int h, int[] s, String[] ts) {
+    int mask = s.length - 1;
+    OUTER: for (int i = h & mask;; i = (i + 1) & mask) {
+      int v = s[i];
+      if (v == 0 || v > ts.length)
+        return -1;
+      String t = ts[v - 1];
+      if (t == null)
+        return -1;
+      if (t.length() != len || t.hashCode() != h)
+        continue;
+      for (int j = 0; j < len; j++) {
+        if (t.charAt(j) != Helpers.lower(buf[start + j]))
+          continue OUTER;
+      }
+      return v - 1;
+    }
+  }
+
+  /**
+   * @requires the lock of <code>this</code> is held, <code>w</code> is not in
+   *           <code>this</code> and <code>h</code> is its hash code
+   * @modifies <code>this</code>
+   * @effects adds <code>w</code> to <code>this</code> and returns its id. The
+   *          term is stored before its slot, so a lock-free lookup that finds
+   *          the slot finds the term.
+   */
+  private int add(String w, int h) {
+    int id = size;
+    if (id == terms.length)
+      terms = Arrays.copyOf(terms, id << 1);
+    terms[id] = w;
+    size++;
+
+    if (size * 2 > slots.length) {
+      // rehash into a table twice as large, then publish it
+      int[] s = new int[slots.length << 1];
+      for (int i = 0; i < size; i++)
+        insert(s, terms[i].hashCode(), i);
+      slots = s;
+    } else {
+      insert(slots, h, id);
+    }
+    return id;
+  }
+
+  /**
+   * @modifies <code>s</code>
+   * @effects stores <code>id</code> in the first free slot of <code>s</code>
+   *          from <code>h</code>
+   */
+  private static void insert(int[] s, int h, int id) {
+    int mask = s.length - 1;
+    int i = h & mask;
+    while (s[i] != 0)
+      i = (i + 1) & mask;
+    s[i] = id + 1;
+  }
+}
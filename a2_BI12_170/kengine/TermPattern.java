@@ -0,0 +1,153 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview A pattern that a keyword can match: a prefix (<code>hoa*</code>), a
+ *           wildcard pattern in which <code>*</code> stands for any sequence of
+ *           characters and <code>?</code> for any one character
+ *           (<code>ho?ng</code>, <code>*ang</code>), or a range of keywords
+ *           (<code>[bui TO huy]</code>).
+ *
+ *           Every pattern has a range <code>[from, to)</code> of the sorted
+ *           keywords outside which no keyword matches it, so the keywords that
+ *           match a pattern are found by binary search for <code>from</code> in
+ *           a sorted array of keywords followed by a scan up to
+ *           <code>to</code>. For a prefix or range the scan only visits
+ *           matching keywords; a wildcard pattern is scanned from its literal
+ *           prefix, which is empty if it starts with a wildcard.
+ *
+ * @version 1.0
+ */
+class TermPattern {
+  private String from; // the smallest keyword that can match
+  private String to; // every keyword that can match is less, or null
+  private String glob; // the wildcard pattern, or null if every keyword in range matches
+
+  /**
+   * Constructor method
+   *
+   * @effects initialises <code>this</code> with the given rep
+   */
+  private TermPattern(String from, String to, String glob) {
+    this.from = from;
+    this.to = to;
+    this.glob = glob;
+  }
+
+  /**
+   * @requires <code>p</code> is in canonical form
+   * @effects returns the pattern of the keywords that start with
+   *          <code>p</code>
+   */
+  static TermPattern prefix(String p) {
+    return new TermPattern(p, successor(p), null);
+  }
+
+  /**
+   * @requires <code>p</code> is in canonical form
+   * @effects returns the pattern of the keywords that match the wildcard
+   *          pattern <code>p</code>; if <code>p</code> is a prefix followed by a
+   *          single <code>*</code> this is {@link #prefix(String)}
+   */
+  static TermPattern wildcard(String p) {
+    int lit = 0; // the length of the literal prefix
+    while (lit < p.length() && !isWildcard(p.charAt(lit)))
+      lit++;
+
+    String pre = p.substring(0, lit);
+    if (lit == p.length() - 1 && p.charAt(lit) == '*')
+      return prefix(pre);
+    return new TermPattern(pre, (lit == 0) ? null : successor(pre), p);
+  }
+
+  /**
+   * @param lo
+   *          the smallest keyword, or <code>null</code> for no lower bound
+   * @param hi
+   *          the largest keyword, or <code>null</code> for no upper bound
+   * @requires <code>lo</code> and <code>hi</code> are in canonical form
+   * @effects returns the pattern of the keywords <code>k</code> such that
+   *          <code>lo <= k <= hi</code>
+   */
+  static TermPattern range(String lo, String hi) {
+    // hi + "\0" is the smallest string greater than hi
+    return new TermPattern((lo == null) ? "" : lo, (hi == null) ? null : hi + '\0', null);
+  }
+
+  /**
+   * @effects if <code>c</code> is a wildcard character returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  static boolean isWildcard(char c) {
+    return c == '*' || c == '?';
+  }
+
+  /**
+   * @effects returns the smallest keyword that can match <code>this</code>
+   */
+  String from() {
+    return from;
+  }
+
+  /**
+   * @effects returns a string that is greater than every keyword that matches
+   *          <code>this</code>, or <code>null</code> if there is none
+   */
+  String to() {
+    return to;
+  }
+
+  /**
+   * @requires <code>from() <= k</code> and <code>k < to()</code>
+   * @effects if <code>k</code> matches <code>this</code> returns
+   *          <code>true</code>, else returns <code>false</code>
+   */
+  boolean matches(String k) {
+    return glob == null || globMatches(glob, k);
+  }
+
+  /**
+   * @effects if <code>s</code> matches the wildcard pattern <code>p</code>
+   *          returns <code>true</code>, else returns <code>false</code>. The
+   *          match backtracks only to the last <code>*</code>, so it takes
+   *          <code>O(|p| * |s|)</code> time at most.
+   */
+  private static boolean globMatches(String p, String s) {
+    int i = 0; // position in p
+    int j = 0; // position in s
+    int star = -1; // position in p after the last '*' seen
+    int mark = 0; // position in s matched by that '*' so far
+    while (j < s.length()) {
+      if (i < p.length() && (p.charAt(i) == '?' || p.charAt(i) == s.charAt(j))) {
+        i++;
+        j++;
+      } else if (i < p.length() && p.charAt(i) == '*') {
+        star = ++i;
+        mark = j;
+      } else if (star >= 0) {
+        // let the last '*' match one more character
+        i = star;
+        j = ++mark;
+      } else {
+        return false;
+      }
+    }
+
+    while (i < p.length() && p.charAt(i) == '*')
+      i++;
+    return i == p.length();
+  }
+
+  /**
+   * @effects returns the smallest string that is greater than every string
+   *          that starts with <code>p</code>, or <code>null</code> if there is
+   *          none
+   */
+  private static String successor(String p) {
+    int end = p.length();
+    while (end > 0 && p.charAt(end - 1) == Character.MAX_VALUE)
+      end--;
+    if (end == 0)
+      return null;
+    return p.substring(0, end - 1) + (char) (p.charAt(end - 1) + 1);
+  }
+}
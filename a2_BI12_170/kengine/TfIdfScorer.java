@@ -0,0 +1,25 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview A TF-IDF scoring function. The weight of a keyword is its inverse
+ *           document frequency <code>ln(1 + numDocs/df)</code>, and its score
+ *           in a document is
+ *           <code>(1 + ln tf) * weight / sqrt(docLen)</code>: repeated
+ *           occurrences count less and less, and the score is normalised by
+ *           the length of the document so that long documents do not win
+ *           just by being long.
+ *
+ * @version 1.0
+ */
+public class TfIdfScorer implements Scorer {
+  /** a shared instance */
+  public static final TfIdfScorer INSTANCE = new TfIdfScorer();
+
+  public float termWeight(int df, int numDocs) {
+    return (float) Math.log(1.0 + (double) numDocs / df);
+  }
+
+  public float score(float weight, int tf, int docLen, float avgDocLen) {
+    return (float) ((1.0 + Math.log(tf)) * weight / Math.sqrt(docLen));
+  }
+}
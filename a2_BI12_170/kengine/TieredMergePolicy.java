@@ -0,0 +1,75 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview A merge policy that groups the segments of a
+ *           {@link PostingIndex} into tiers by size: a segment of
+ *           <code>n</code> documents is in tier
+ *           <code>floor(log<sub>f</sub>(n / minDocs))</code>, where
+ *           <code>f</code> is the merge factor and <code>minDocs</code> the
+ *           size of a flushed segment. Whenever <code>f</code> adjacent
+ *           segments are in the same tier they are merged into one segment of
+ *           the next tier. Each document is therefore copied about
+ *           <code>log<sub>f</sub>(N / minDocs)</code> times in total, and the
+ *           index never has more than about <code>f - 1</code> segments per
+ *           tier.
+ *
+ * @version 1.0
+ */
+class TieredMergePolicy {
+  private int minDocs; // the size of a flushed segment
+  private int mergeFactor; // the number of segments merged at once
+
+  /**
+   * Constructor method
+   *
+   * @requires <code>minDocs >= 1</code> and <code>mergeFactor >= 2</code>
+   * @effects initialises <code>this</code> with the given settings
+   */
+  TieredMergePolicy(int minDocs, int mergeFactor) {
+    this.minDocs = minDocs;
+    this.mergeFactor = mergeFactor;
+  }
+
+  /**
+   * A method to choose segments to merge.
+   *
+   * @requires <code>segs</code> is not <code>null</code>
+   * @effects if some <code>mergeFactor</code> adjacent segments of
+   *          <code>segs</code> are in the same tier returns
+   *          <code>{from, to}</code> such that <code>segs[from..to)</code>
+   *          are those segments, preferring the lowest tier; else returns
+   *          <code>null</code>
+   */
+  int[] findMerge(IndexSegment[] segs) {
+    int[] best = null;
+    int bestTier = Integer.MAX_VALUE;
+
+    int runStart = 0;
+    for (int i = 1; i <= segs.length; i++) {
+      if (i == segs.length || tier(segs[i]) != tier(segs[runStart])) {
+        int tier = tier(segs[runStart]);
+        if (i - runStart >= mergeFactor && tier < bestTier) {
+          // merge the oldest mergeFactor segments of the run
+          best = new int[] { runStart, runStart + mergeFactor };
+          bestTier = tier;
+        }
+        runStart = i;
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * @effects returns the tier of <code>seg</code>
+   */
+  private int tier(IndexSegment seg) {
+    int tier = 0;
+    long limit = (long) minDocs * mergeFactor;
+    while (seg.numDocs() >= limit) {
+      tier++;
+      limit *= mergeFactor;
+    }
+    return tier;
+  }
+}
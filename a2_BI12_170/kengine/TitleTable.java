@@ -1,7 +1,7 @@
 package a2_BI12_170.kengine;
 
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import utils.DuplicateException;
 import utils.NotPossibleException;
@@ -9,26 +9,95 @@ import utils.NotPossibleException;
 /**
  * @overview  Keeps track of documents with their titles.
  * 
+ *            The titles are not kept by <code>this</code>: the documents are 
+ *            hashed by the canonical forms of their titles and compared with 
+ *            a title by asking them (see <code>Doc.hasTitle</code>), so the 
+ *            title of an indexed document is only kept by the index's 
+ *            {@link DocStore}, and <code>this</code> takes a slot of an array 
+ *            and a hash code per document.
+ * 
+ *            As those of the <code>Hashtable</code> that it replaces, the 
+ *            methods of <code>this</code> are synchronized, so documents can be 
+ *            looked up by any thread while others are added or removed.
+ * 
  * @see "Program development in Java", pgs 320, 365
  * 
  * @version 
  * - 2.0: provides a full implementation <br>
- * - 5.0: improved to support generics 
+ * - 5.0: improved to support generics <br>
+ * - 5.1: documents can be removed <br>
+ * - 5.2: documents hashed by title without keeping the titles
  * 
  * @author dmle
  *
  */
 public class TitleTable {
   
-  // the rep of this class
-  private Hashtable<String,Doc> docs;
+  // the rep of this class: an open-addressing hash table with linear probing
+  private Doc[] docs; // the documents, or null for a free slot; a power of 2 long
+  private int[] hashes; // the hash codes of the canonical titles of docs
+  private int size; // the number of documents
   
   /**
    * Constructor method
    * @effects Initialises <code>this</code> to be an empty table.
    */
   public TitleTable() {
-    docs = new Hashtable<>();
+    docs = new Doc[16];
+    hashes = new int[16];
+  }
+
+  /**
+   * @effects returns the slot at which a search for the hash code <code>h</code> 
+   *          starts
+   */
+  private int home(int h) {
+    return (h ^ (h >>> 16)) & (docs.length - 1);
+  }
+
+  /**
+   * @requires <code>ct</code> is in canonical form and <code>h</code> is its hash code
+   * @effects returns the slot of the document whose title is <code>ct</code> if 
+   *          there is one, else the free slot at which it would be added
+   */
+  private int find(String ct, int h) {
+    int i = home(h);
+    while (docs[i] != null && (hashes[i] != h || !docs[i].hasTitle(ct)))
+      i = (i + 1) & (docs.length - 1);
+    return i;
+  }
+
+  /**
+   * @effects returns the slot of the document with title <code>t</code> if 
+   *          there is one, else a free slot, or <code>-1</code> if <code>t</code> 
+   *          is <code>null</code>
+   */
+  private int find(String t) {
+    if (t == null)
+      return -1;
+    // canonical form
+    String ct = Helpers.canon(t);
+    return find(ct, ct.hashCode());
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects doubles the number of slots of <code>this</code>
+   */
+  private void grow() {
+    Doc[] ds = docs;
+    int[] hs = hashes;
+    docs = new Doc[ds.length << 1];
+    hashes = new int[ds.length << 1];
+    for (int j = 0; j < ds.length; j++) {
+      if (ds[j] != null) {
+        int i = home(hs[j]);
+        while (docs[i] != null)
+          i = (i + 1) & (docs.length - 1);
+        docs[i] = ds[j];
+        hashes[i] = hs[j];
+      }
+    }
   }
   
   /**
@@ -41,18 +110,65 @@ public class TitleTable {
    *            its title to <code>this</code>.
    * @version 2.0           
    */
-  public void addDoc(Doc d) throws DuplicateException {
+  public synchronized void addDoc(Doc d) throws DuplicateException {
     String t = d.title();
     // canonical form
     t = Helpers.canon(t);
     
-    if (docs.containsKey(t)) {
+    int h = t.hashCode();
+    int i = find(t, h);
+    if (docs[i] != null) {
       throw new DuplicateException("TitleTable.addDoc: a document with same title already exists: " + t);
     }
     
-    docs.put(t, d);
+    docs[i] = d;
+    hashes[i] = h;
+    // at most half full, so that probes stay short
+    if (++size > docs.length >> 1)
+      grow();
   }
   
+  /**
+   * A method to remove a document from <code>this</code>.
+   * 
+   * @param t   the title of the document to remove
+   * @effects   if <code>t</code> is <code>null</code> or there is no document with this 
+   *            title throws <code>NotPossibleException</code>, else removes the document
+   *            with title <code>t</code> from <code>this</code> and returns it.
+   * @version 5.1
+   */
+  public synchronized Doc removeDoc(String t) throws NotPossibleException {
+    int i = find(t);
+    if (i < 0 || docs[i] == null)
+      throw new NotPossibleException("TitleTable.removeDoc: could not remove document with title " + t);
+
+    Doc d = docs[i];
+    // close the gap: move back each following document of the probe run whose 
+    // home slot is not after the gap, so that it can still be found
+    int mask = docs.length - 1;
+    for (int j = (i + 1) & mask; docs[j] != null; j = (j + 1) & mask) {
+      int k = home(hashes[j]);
+      if ((j > i) ? (k <= i || k > j) : (k <= i && k > j)) {
+        docs[i] = docs[j];
+        hashes[i] = hashes[j];
+        i = j;
+      }
+    }
+    docs[i] = null;
+    size--;
+    return d;
+  }
+
+  /**
+   * @effects   if <code>this</code> has a document with title <code>t</code> returns 
+   *            <code>true</code>, else returns <code>false</code>
+   * @version 5.1
+   */
+  public synchronized boolean contains(String t) {
+    int i = find(t);
+    return i >= 0 && docs[i] != null;
+  }
+
   /**
    * A method to look up a document given its title.
    * 
@@ -62,14 +178,9 @@ public class TitleTable {
    *            with title <code>t</code>.
    * @version 2.0 
    */
-  public Doc lookup(String t) throws NotPossibleException {
-    Doc d = null;
-    if (t != null) {
-      // canonical form
-      String ct = Helpers.canon(t);
-
-      d = docs.get(ct);
-    }
+  public synchronized Doc lookup(String t) throws NotPossibleException {
+    int i = find(t);
+    Doc d = (i < 0) ? null : docs[i];
     
     if (d == null)
       throw new NotPossibleException("TitleTable.lookup: could not look up document with title " + t);
@@ -82,15 +193,37 @@ public class TitleTable {
    *  if this is empty
    *    return null
    *  else
-   *    return Iterator(Doc) for documents in this
+   *    return Iterator(Doc) for documents in this, as they are now: the 
+   *    iterator is not affected by documents that are added or removed later
    *     
    * @version 5.0 (for use in the assignment)
    */
-  public Iterator<Doc> docIterator() {
+  public synchronized Iterator<Doc> docIterator() {
     if (isEmpty())
       return null;
-    else
-      return docs.values().iterator();
+
+    return new Iterator<Doc>() {
+      private Doc[] ds = docs.clone();
+      private int next = advance(0); // the slot of the next document
+
+      private int advance(int i) {
+        while (i < ds.length && ds[i] == null)
+          i++;
+        return i;
+      }
+
+      public boolean hasNext() {
+        return next < ds.length;
+      }
+
+      public Doc next() {
+        if (!hasNext())
+          throw new NoSuchElementException("TitleTable.docIterator: no more documents");
+        Doc d = ds[next];
+        next = advance(next + 1);
+        return d;
+      }
+    };
   }
 
   /**
@@ -102,7 +235,7 @@ public class TitleTable {
    *     
    * @version 5.0 (for use in the assignment)
    */
-  public boolean isEmpty() {
-    return docs.isEmpty();
+  public synchronized boolean isEmpty() {
+    return size == 0;
   }
 }
@@ -0,0 +1,28 @@
+package a2_BI12_170.kengine;
+
+/**
+ * @overview A call-back that receives the words of a document as they are
+ *           found by {@link HtmlTokenizer}. Each word is passed as a range of a
+ *           character buffer so that no <code>String</code> needs to be created
+ *           unless the handler wants one.
+ *
+ * @version 1.0
+ */
+public interface TokenHandler {
+  /**
+   * A method that is invoked once for each word, in the order the words
+   * appear in the document.
+   *
+   * @param buf
+   *          the character buffer that holds the word
+   * @param start
+   *          the index of the first character of the word in <code>buf</code>
+   * @param len
+   *          the number of characters of the word
+   * @requires <code>len > 0</code>
+   * @effects processes the word <code>buf[start..start+len)</code>. The
+   *          content of <code>buf</code> must not be modified and must not be
+   *          assumed to remain valid after this method returns.
+   */
+  public void token(char[] buf, int start, int len);
+}
@@ -1,9 +1,8 @@
 package a2_BI12_170.kengine;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Vector;
@@ -13,22 +12,35 @@ import utils.NotPossibleException;
 
 /**
  * @overview Keeps track of both interesting and uninteresting words.
- *           Uninteresting words are mapped to </code>null</code>, while each
+ *           Uninteresting words are kept in a separate set, while each
  *           interesting word is mapped to a <code>Vector</code> of
  *           <code>DocCnt</code> objects, each of which is a pair of document
  *           and the number of occurrences of the keyword in that document. The
  *           uninteresting words are obtained from a private file.
  * 
  * @see "Program development in Java", pgs 320, 330, 365
- * @version 3.0 implement the full version
+ * @version 
+ * - 3.0: implement the full version <br>
+ * - 4.0: store the postings in a {@link PostingIndex}; this class is now an adapter
+ *        that presents them as <code>Vector</code>s of <code>DocCnt</code> <br>
+ * - 4.1: count words by their ids in a {@link TermDictionary} <br>
+ * - 4.2: use the shared {@link StopWords} instead of reading the file for each table <br>
+ * - 4.3: optional positional postings <br>
+ * - 4.4: deleted documents <br>
+ * - 4.5: optionally drop the content of the documents once they are indexed
  * @author dmle
  * 
  */
 public class WordTable {
   // the rep of this class
-  private Hashtable table;
+  private PostingIndex index;
+  private final TermDictionary terms; // interns the words of the documents
+  private final StopWords stopWords; // the uninteresting words, shared by all tables
+  private final boolean positional; // whether the word positions are indexed
 
-  private static final String NK_FILE = "nk.dat";
+  // per-thread scratch space for counting the words of a document
+  private static final ThreadLocal<TermCounter> COUNTERS = 
+      ThreadLocal.withInitial(TermCounter::new);
 
   /**
    * Constructor method
@@ -36,44 +48,62 @@ public class WordTable {
    * @effects If the file cannot be read throws
    *          <code>NotPossibleException</code>, else initialises the table to
    *          contain all the words in the file as uninteresting words.
-   * @version 3.0 add cannonical form to uninteresting words
+   * @version 3.0 add cannonical form to uninteresting words <br>
+   *          4.2 the file is only read by the first table that is created
    */
   public WordTable() throws NotPossibleException {
-    table = new Hashtable();
+    this(false);
+  }
 
-    // read the NK file and store keywords to this table
-    // assumes file is stored in the same directory as this class
-    BufferedReader bf = new BufferedReader(new InputStreamReader(this
-        .getClass().getResourceAsStream(NK_FILE)));
+  /**
+   * Constructor method
+   * 
+   * @param positional
+   *          whether the positions of the words in the documents are indexed, 
+   *          which is needed by phrase and proximity queries
+   * @effects If the file cannot be read throws
+   *          <code>NotPossibleException</code>, else initialises the table to
+   *          contain all the words in the file as uninteresting words.
+   * @version 4.3
+   */
+  public WordTable(boolean positional) throws NotPossibleException {
+    this(PostingIndex.DEFAULT_FLUSH_DOCS, PostingIndex.DEFAULT_MERGE_FACTOR, positional);
+  }
 
-    try {
-      if (!bf.ready())
-        throw new NotPossibleException(
-            "WordTable.init(): Failed to read non-key file " + NK_FILE);
-    } catch (IOException ex) {
-      throw new NotPossibleException(
-          "WordTable.init(): Failed to read non-key file " + NK_FILE
-              + "due to " + ex);
-    }
+  /**
+   * Constructor method
+   * 
+   * @param flushDocs
+   *          the number of new documents that are buffered before they are 
+   *          flushed to a segment of the index
+   * @param mergeFactor
+   *          the number of segments of the same size that are merged at once
+   * @param positional
+   *          whether the positions of the words in the documents are indexed
+   * @effects If the file cannot be read or the settings are invalid throws
+   *          <code>NotPossibleException</code>, else initialises the table to
+   *          contain all the words in the file as uninteresting words.
+   */
+  WordTable(int flushDocs, int mergeFactor, boolean positional) throws NotPossibleException {
+    this(flushDocs, mergeFactor, positional, true);
+  }
 
-    String nw;
-    boolean eof = false;
-    while (!eof) {
-      try {
-        nw = bf.readLine();
-        if (nw != null) {
-          nw = nw.trim();
-          // canonical form 
-          nw = Helpers.canon(nw);
-          
-          table.put(nw, null + "");
-        } else {
-          eof = true;
-        }
-      } catch (IOException ex) {
-        // failed to read a line, ignore and continue
-      }
-    }
+  /**
+   * Constructor method
+   * 
+   * @param storeContent
+   *          whether the content of the documents is kept after they are 
+   *          indexed (see {@link DocStore}); if not, the documents of 
+   *          <code>this</code> have only their titles
+   * @effects as {@link #WordTable(int, int, boolean)}
+   */
+  WordTable(int flushDocs, int mergeFactor, boolean positional, boolean storeContent) 
+      throws NotPossibleException {
+    this.positional = positional;
+    // the file is read once and the words shared by all tables
+    stopWords = StopWords.standard();
+    index = new PostingIndex(flushDocs, mergeFactor, storeContent);
+    terms = new TermDictionary();
   }
 
   /**
@@ -86,51 +116,191 @@ public class WordTable {
    * @effects Adds all interesting words of <code>d</code> to <code>this</code>
    *          with a count of their number of occurrences; returns a table
    *          mapping each interesting word in <code>d</code> to its number of
-   *          occurrences.
+   *          occurrences, or <code>null</code> if it has none. If <code>d</code> has been added to another table, 
+   *          a copy of it is added instead (see {@link #own(Doc)}).
    * 
    * @version 3.0
    */
-  public Hashtable addDoc(Doc d) {
-    Hashtable kmap = new Hashtable();
-
-    Iterator words = d.words();
-    String w;
-    Integer wfreq; // count of number of occurrences of w in d
-    while (words.hasNext()) {
-      w = (String) words.next();
-      
-      // create canonical form of w
-      w = Helpers.canon(w);
-      
-      if (isInteresting(w)) {
-        wfreq = (Integer) kmap.get(w);
-        if (wfreq == null) {
-          wfreq = new Integer(1);
-        } else {
-          wfreq = new Integer(wfreq.intValue() + 1);
+  public Hashtable<String, Integer> addDoc(Doc d) {
+    return addDoc(d, countWords(d));
+  }
+
+  /**
+   * @effects if the positions of words are indexed in <code>this</code> 
+   *          returns <code>true</code>, else returns <code>false</code>
+   */
+  public boolean isPositional() {
+    return positional;
+  }
+
+  /**
+   * A method to count the interesting words of a document <code>d</code>.
+   * 
+   * @param d
+   *          a <code>Doc</code> object representing a document
+   * @requires <code>d</code> is not <code>null</code>
+   * @effects returns the interesting words of <code>d</code> with their 
+   *          numbers of occurrences and, if <code>this</code> is positional, 
+   *          their positions. The postings of <code>this</code> are not read 
+   *          or modified, so this method may be invoked from several threads 
+   *          at once, also while another thread adds documents (as the workers 
+   *          of a {@link DocPipeline} do): it only reads the stop words, which 
+   *          are immutable, and looks up the words in the term dictionary, 
+   *          which may be looked up and added to concurrently (see 
+   *          {@link TermDictionary}).
+   */
+  DocTerms countWords(Doc d) {
+    final TermCounter counter = COUNTERS.get();
+    counter.positional = positional;
+
+    try {
+      // drop the stop words and count the other words by the id of their 
+      // canonical form; no String is created for a word that has been seen before
+      d.words(new TokenHandler() {
+        public void token(char[] buf, int start, int len) {
+          if (!stopWords.contains(buf, start, len))
+            counter.add(terms.id(buf, start, len));
+          counter.pos++;
         }
-        kmap.put(w, wfreq);
+      });
+
+      Hashtable<String,Integer> kmap = new Hashtable<>(counter.distinct * 4 / 3 + 1);
+      HashMap<String,byte[]> pmap = null;
+      int[] grouped = null; // the positions grouped by word, in distinct order
+      if (positional) {
+        pmap = new HashMap<>(counter.distinct * 4 / 3 + 1);
+        grouped = counter.groupPositions();
       }
+
+      int at = 0;
+      for (int i = 0; i < counter.distinct; i++) {
+        int id = counter.ids[i];
+        int cnt = counter.counts[id];
+        String w = terms.term(id);
+        kmap.put(w, cnt);
+        if (positional) {
+          pmap.put(w, PostingList.encode(grouped, at, cnt));
+          at += cnt;
+        }
+      }
+      return new DocTerms(kmap, pmap);
+    } finally {
+      // also if d fails to give its words, so that no count of it is left
+      // for the next document of this thread
+      counter.clear();
     }
+  }
 
-    // update this with DocCnt objects
-    if (!kmap.isEmpty()) {
-      Vector docVector;
-      DocCnt dc;
-      for (Enumeration e = kmap.keys(); e.hasMoreElements();) {
-        w = (String) e.nextElement();
-        dc = new DocCnt(d, ((Integer) kmap.get(w)).intValue());
-        docVector = (Vector) table.get(w);
-        if (docVector == null)
-          docVector = new Vector();
-        docVector.add(dc);
-        table.put(w, docVector);
+  /**
+   * @overview Counts the occurrences of term ids in one document: 
+   *           <code>counts[id]</code> is the count of <code>id</code> and 
+   *           <code>ids[0..distinct)</code> are the ids with a non-zero count. 
+   *           Clearing only resets those entries, so a counter is reused for 
+   *           every document without being reallocated. If the counter is 
+   *           positional it also records the id and position of each 
+   *           occurrence in <code>seqIds, seqPos</code>.
+   */
+  private static class TermCounter {
+    int[] counts = new int[1024];
+    int[] ids = new int[256];
+    int distinct;
+
+    boolean positional;
+    int pos; // the position of the next word
+    int[] seqIds = new int[256];
+    int[] seqPos = new int[256];
+    int seqSize;
+
+    void add(int id) {
+      if (id >= counts.length)
+        counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length << 1));
+      if (counts[id]++ == 0) {
+        if (distinct == ids.length)
+          ids = Arrays.copyOf(ids, distinct << 1);
+        ids[distinct++] = id;
       }
 
-      return kmap;
-    } else {
-      return null;
+      if (positional) {
+        if (seqSize == seqIds.length) {
+          seqIds = Arrays.copyOf(seqIds, seqSize << 1);
+          seqPos = Arrays.copyOf(seqPos, seqSize << 1);
+        }
+        seqIds[seqSize] = id;
+        seqPos[seqSize++] = pos;
+      }
+    }
+
+    /**
+     * @effects returns the recorded positions grouped by id, the groups in the 
+     *          order of <code>ids[0..distinct)</code> and each in ascending order
+     */
+    int[] groupPositions() {
+      // counts[id] becomes the start of the group of id, then its next free slot
+      int[] starts = new int[distinct];
+      int at = 0;
+      for (int i = 0; i < distinct; i++) {
+        starts[i] = at;
+        at += counts[ids[i]];
+      }
+      for (int i = 0; i < distinct; i++)
+        counts[ids[i]] = starts[i];
+
+      int[] grouped = new int[seqSize];
+      for (int i = 0; i < seqSize; i++)
+        grouped[counts[seqIds[i]]++] = seqPos[i];
+
+      // restore the counts from the group ends
+      for (int i = 0; i < distinct; i++)
+        counts[ids[i]] -= starts[i];
+      return grouped;
+    }
+
+    void clear() {
+      for (int i = 0; i < distinct; i++)
+        counts[ids[i]] = 0;
+      distinct = 0;
+      pos = 0;
+      seqSize = 0;
+    }
+  }
+
+  /**
+   * A method to add a document <code>d</code> whose words have already been
+   * counted to <code>this</code>.
+   * 
+   * @param d
+   *          a <code>Doc</code> object representing a document
+   * @param dt
+   *          the result of <code>countWords(d)</code>
+   * @requires <code>d</code> and <code>dt</code> are not <code>null</code>
+   * @modifies <code>this</code>
+   * @effects Adds the words in <code>dt</code> to <code>this</code> as
+   *          postings of <code>d</code>; if <code>d</code> has no interesting 
+   *          words returns <code>null</code>, else returns the table mapping 
+   *          them to their numbers of occurrences.
+   */
+  Hashtable<String, Integer> addDoc(Doc d, DocTerms dt) {
+    Hashtable<String,Integer> kmap = dt.counts();
+
+    // the length of d is its number of interesting words
+    int len = 0;
+    for (Integer c : kmap.values())
+      len += c;
+
+    // every document gets an id, even one without any keywords
+    int id = index.addDoc(d, len);
+
+    // update this with the postings of d
+    if (!kmap.isEmpty()) {
+      String w;
+      for (Enumeration<String> e = kmap.keys(); e.hasMoreElements();) {
+        w = e.nextElement();
+        index.addPosting(w, id, kmap.get(w), dt.positions(w));
+      }
     }
+    index.maybeFlush();
+
+    return kmap.isEmpty() ? null : kmap;
   }
 
   /**
@@ -144,16 +314,7 @@ public class WordTable {
    * @version 3.0
    */
   boolean isInteresting(String w) {
-    if (w != null) {
-      Object v = table.get(w);
-      if (v != null && !(v instanceof Vector)) {
-        return false; // v is the text "null", which is mapped to all uninteresting words
-      } else {
-        return true;
-      }
-    } else {
-      return false;
-    }
+    return w != null && !stopWords.contains(w);
   }
 
   /**
@@ -162,17 +323,180 @@ public class WordTable {
    * @param k
    *          a keyword to look up
    * @requires <code>k</code> is not <code>null</code>
-   * @effects Returns a vector of <code>DocCnt</code>s where <code>Doc</code>
-   *          contains <code>k</code> <code>cnt</code> times.
-   * @version 3.0
+   * @effects If <code>k</code> is not a keyword returns <code>null</code>, else
+   *          returns a new vector of <code>DocCnt</code>s where <code>Doc</code>
+   *          contains <code>k</code> <code>cnt</code> times, in the order that
+   *          the documents were added. Deleted documents are left out.
+   * @version 4.0 the vector is built from the posting list of <code>k</code>
    */
   public Vector lookup(String k) {
-    Object dv = table.get(k);
-    if (dv != null && !dv.equals("null")) {
-      return (Vector) dv;
-    } else {
+    IndexSnapshot s = index.snapshot();
+    Postings ps = s.postings(k);
+    if (ps == null) {
       return null;
     }
+
+    Vector<DocCnt> dv = new Vector<>(ps.size());
+    for (int p = 0; p < ps.numParts(); p++) {
+      PostingIterator it = ps.part(p).iterator();
+      while (it.nextDoc() != PostingIterator.NO_MORE_DOCS) {
+        if (!s.isDeleted(it.doc()))
+          dv.add(new DocCnt(s.doc(it.doc()), it.count()));
+      }
+    }
+    return dv;
+  }
+
+  /**
+   * A method to check if a word <code>k</code> is a keyword of some document.
+   * 
+   * @effects If some document in <code>this</code> contains <code>k</code> as an 
+   *          interesting word returns <code>true</code>, else returns <code>false</code>.
+   *          Unlike {@link #lookup(String)} this does not build any <code>DocCnt</code>.
+   */
+  public boolean isKeyword(String k) {
+    return k != null && index.isKeyword(k);
+  }
+
+  /**
+   * @effects If <code>k</code> is a keyword returns its postings, which are 
+   *          sorted by ascending document id, else returns <code>null</code>
+   */
+  Postings postings(String k) {
+    return index.postings(k);
+  }
+
+  /**
+   * @modifies <code>this</code>
+   * @effects publishes a snapshot of the documents added to <code>this</code> 
+   *          so far, if they have changed, and returns it
+   */
+  IndexSnapshot refresh() {
+    return index.refresh();
+  }
+
+  /**
+   * @effects returns a snapshot of the documents added to <code>this</code> so 
+   *          far, publishing it first if they have changed; this takes no lock 
+   *          if they have not
+   */
+  IndexSnapshot snapshot() {
+    return index.snapshot();
+  }
+
+  /**
+   * @requires <code>id</code> is the id of a document in <code>this</code>
+   * @effects returns the document whose id is <code>id</code>
+   */
+  Doc doc(int id) {
+    return index.doc(id);
+  }
+
+  /**
+   * @effects If <code>d</code> has been added to <code>this</code> returns its 
+   *          document id, else returns <code>-1</code>
+   */
+  int idOf(Doc d) {
+    return index.idOf(d);
+  }
+
+  /**
+   * @effects returns the document that is added to <code>this</code> for 
+   *          <code>d</code>: <code>d</code> itself, or a copy of it if it has 
+   *          been added to another table, which <code>idOf(d)</code> does not 
+   *          find in <code>this</code> (see {@link DocStore#own(Doc)})
+   */
+  Doc own(Doc d) {
+    return index.own(d);
+  }
+
+  /**
+   * @effects returns the number of documents in <code>this</code>
+   */
+  int numDocs() {
+    return index.numDocs();
+  }
+
+  /**
+   * @requires <code>id</code> is the id of a document in <code>this</code>
+   * @effects returns the length of the document whose id is <code>id</code>, 
+   *          i.e. its number of interesting words
+   */
+  int docLen(int id) {
+    return index.docLen(id);
+  }
+
+  /**
+   * @effects returns the average length of the documents in <code>this</code>
+   */
+  float avgDocLen() {
+    return index.avgDocLen();
+  }
+
+  /**
+   * @effects returns an iterator over the keywords of <code>this</code>
+   */
+  Iterator<String> keywords() {
+    return index.keywords();
+  }
+
+  /**
+   * A method to add a document whose postings are added separately, e.g. when
+   * reading an index file.
+   * 
+   * @param len
+   *          the number of interesting words of <code>d</code>
+   * @requires <code>d</code> is not <code>null</code> and <code>len >= 0</code>
+   * @modifies <code>this</code>
+   * @effects assigns the next document id to <code>d</code> and returns it
+   */
+  int loadDoc(Doc d, int len) {
+    return index.addDoc(d, len);
+  }
+
+  /**
+   * A method to delete a document.
+   * 
+   * @modifies <code>this</code>
+   * @effects if <code>d</code> is a document of <code>this</code> that is not
+   *          deleted, deletes it and returns <code>true</code>, else returns
+   *          <code>false</code>. Queries on the snapshots published from now on
+   *          do not match <code>d</code>.
+   */
+  boolean deleteDoc(Doc d) {
+    return index.delete(index.idOf(d));
+  }
+
+  /**
+   * A method to set the postings of a keyword, e.g. when reading an index file.
+   * 
+   * @requires <code>k</code> is an interesting word that is not yet a keyword
+   *           of <code>this</code>, and the documents of <code>pl</code> have
+   *           been loaded
+   * @modifies <code>this</code>
+   * @effects makes <code>pl</code> the posting list of <code>k</code>
+   */
+  void loadPostings(String k, PostingList pl) {
+    index.putPostings(k, pl);
+  }
+
+  /**
+   * A method to flush the documents loaded by {@link #loadDoc(Doc, int)} into a 
+   * segment of their own.
+   * 
+   * @modifies <code>this</code>
+   * @effects flushes the buffer segment of the index of <code>this</code>
+   */
+  void flush() {
+    index.flush();
+  }
+
+  /**
+   * @effects waits until the background segment merges of <code>this</code> 
+   *          scheduled so far have finished
+   */
+  void awaitMerges() {
+    index.awaitMerges();
   }
 
   /**
@@ -183,12 +507,8 @@ public class WordTable {
    */
   public String getNonkeys() {
     StringBuffer sb = new StringBuffer();
-    for (Enumeration e = table.keys(); e.hasMoreElements();) {
-      String w = (String) e.nextElement();
-      Object v = lookup(w);
-      if (v == null) {
-        sb.append(w).append(" ");
-      }
+    for (Iterator<String> it = stopWords.iterator(); it.hasNext();) {
+      sb.append(it.next()).append(" ");
     }
 
     if (sb.length() > 0) {
@@ -208,16 +528,15 @@ public class WordTable {
   public String toString() {
     StringBuffer sb = new StringBuffer();
     StringBuffer sbk = new StringBuffer();
-    for (Enumeration e = table.keys(); e.hasMoreElements();) {
-      String w = (String) e.nextElement();
+    for (Iterator<String> it = stopWords.iterator(); it.hasNext();) {
+      // non-key
+      sb.append(it.next()).append("\n");
+    }
+    for (Iterator<String> it = index.keywords(); it.hasNext();) {
+      // key
+      String w = it.next();
       Vector dv = lookup(w);
-      if (dv == null) {
-        // non-key
-        sb.append(w).append("\n");
-      } else {
-        // key
-        sbk.append(w).append("->[").append(dv.size()).append("]").append(dv.toString()).append("\n");
-      }
+      sbk.append(w).append("->[").append(dv.size()).append("]").append(dv.toString()).append("\n");
     }
 
     if (sb.length() > 0) {
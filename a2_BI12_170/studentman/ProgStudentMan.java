@@ -1,13 +1,16 @@
 package a2_BI12_170.studentman;
 
 import java.util.Arrays;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Scanner;
 import java.util.TreeSet;
 
+import a2_BI12_170.kengine.CacheStats;
 import a2_BI12_170.kengine.Doc;
 import a2_BI12_170.kengine.DocCnt;
 import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.MatchListener;
 import a2_BI12_170.kengine.Query;
 import utils.DomainConstraint;
 import utils.NotPossibleException;
@@ -252,7 +255,8 @@ public class ProgStudentMan {
    *    return an empty array
    */
   private String[] promptForKeywords() {
-    System.out.println("Enter some keywords (separated by spaces) or 'C' to cancel: ");
+    System.out.println("Enter some keywords (separated by spaces, optionally combined with OR, NOT, "
+        + "(...), \"phrases\", prefix*, [from TO to] and typo~) or 'C' to cancel: ");
     String s = inputScanner.nextLine();
     s.trim();
     if (s.length()==0 ) {
@@ -341,6 +345,10 @@ public class ProgStudentMan {
    * ------------------------------------------------------------
    * BELOW THIS LINE ARE CODE THAT MUST BE COMPLETED BY STUDENTS.
    **************************************************************/
+
+  // the id of each student -> its Doc object in engine, which reads its title 
+  // from the engine rather than keeping a copy
+  private Hashtable<Integer, Doc> docs;
     
   /**
    * @effects 
@@ -348,7 +356,10 @@ public class ProgStudentMan {
    */
   public ProgStudentMan(){
     this.objects = new TreeSet<>();
-    this.engine = new Engine();
+    this.docs = new Hashtable<>();
+    // index word positions for phrase searches; the documents are re-created 
+    // from the students when they change, so their content need not be kept
+    this.engine = new Engine(true, false);
   }
 
   /**
@@ -448,27 +459,84 @@ public class ProgStudentMan {
     this.objects.add(c);
     Doc student_Doc = new Doc(c.toHtmlDoc());
     this.engine.addDoc(student_Doc);  
+    this.docs.put(c.getId(), student_Doc);
   }  
+
+  /**
+   * @requires c is in this
+   * @modifies this
+   * @effects 
+   *   re-sort c in this.objects and replace its Doc object in this.engine 
+   *   with one created from c.toHtmlDoc, so that searches reflect the 
+   *   changes made to c (e.g. by setName or setAddress) since it was added 
+   *   or last updated. The old Doc is deleted rather than re-indexed, so 
+   *   the cost in the engine does not depend on the number of students; 
+   *   re-sorting c takes logarithmic time if its name is unchanged, else 
+   *   linear time, since this.objects is ordered by name
+   */
+  public void updateStudent(Student c) throws NotPossibleException{
+    // if the name of c has changed it is no longer where its order says, 
+    // so it is found by identity
+    if (this.objects.ceiling(c) == c)
+      this.objects.remove(c);
+    else
+      this.objects.removeIf(o -> o == c);
+    this.objects.add(c);
+    Doc student_Doc = new Doc(c.toHtmlDoc());
+    this.engine.updateDoc(this.docs.get(c.getId()).title(), student_Doc);
+    this.docs.put(c.getId(), student_Doc);
+  }
   /**
    * @requires words != null /\ words.length > 0
    * @effects 
    *   search for objects whose HTML documents match with the query containing words
-   *   and return a Query object containing the result
+   *   and return a Query object containing the result.
    *   
-   *   If fails to execute query using words
+   *   words are the parts of a boolean query, e.g. {"Hoang", "OR", "(Huy", "NOT", "Bui)"}: 
+   *   adjacent words must all match, OR and NOT combine the words, groups and 
+   *   "quoted phrases" around them, Hoa* or [Bui TO Huy] match any keyword 
+   *   with that prefix or in that range and Hoagn~ the keywords close to a 
+   *   misspelled word (see Engine.query), so one call evaluates the whole query
+   *   
+   *   words are joined with spaces and parsed with the syntax of Engine.query: 
+   *   AND, OR and NOT are only operators in upper case, so a word such as "Or" 
+   *   is searched for as it is, but ( ) " [ ] * ? and ~ are part of the syntax
+   *   
+   *   If the query is not valid or has no interesting words (e.g. only stop words)
    *     throws NotPossibleException
+   *   else a word that is not found in any document matches no document, so the
+   *     result may be empty
    */
   public Query search(String[] words) throws NotPossibleException{
     if (words == null || words.length == 0){
       throw new NotPossibleException("words is null or empty");
     }
-    Query q = new Query();
 
-    q = this.engine.queryFirst(words[0]);
-    for (int i = 1; i < words.length; i++){
-      q = this.engine.queryMore(words[i]);
-    }
-    return q;
+    // each search gets its own query, so searches do not interfere
+    return this.engine.query(String.join(" ", words));
+  }
+
+  /**
+   * @requires l != null /\ words != null
+   * @effects
+   *   register with this.engine a standing query for the words, so that
+   *   l is notified of each student added from now on whose HTML document
+   *   contains all of them, and return the id of the query
+   *
+   *   If there is no interesting word in words
+   *     throws NotPossibleException
+   */
+  public int watch(MatchListener l, String... words) throws NotPossibleException{
+    return this.engine.register(l, words);
+  }
+
+  /**
+   * @effects
+   *   return the statistics of the result cache of this.engine, e.g. the 
+   *   fraction of the calls to search that were answered from it
+   */
+  public CacheStats searchStats(){
+    return this.engine.cacheStats();
   }
 }
 
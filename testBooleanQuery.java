@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import a2_BI12_170.studentman.ProgStudentMan;
+import a2_BI12_170.studentman.Student;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of boolean queries: the documents that each query matches
+ * are compared with the documents whose words satisfy the same expression, and
+ * queries that are not valid are rejected. Prints the failed checks and exits
+ * with status 1 if there are any.
+ */
+public class testBooleanQuery {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Engine e, String expr) {
+        try {
+            e.query(expr);
+            return false;
+        } catch (NotPossibleException x) {
+            return true;
+        }
+    }
+
+    private static Set<String> titles(Query q) {
+        Set<String> ts = new HashSet<>();
+        for (Doc d : q.fetch(0, q.size()))
+            ts.add(d.title());
+        return ts;
+    }
+
+    private static int n;
+    private static List<Set<String>> words;
+
+    private static void same(Engine e, String expr, Predicate<Set<String>> p) {
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < n; i++)
+            if (p.test(words.get(i)))
+                expected.add("D" + i);
+        Set<String> got = titles(e.query(expr));
+        check(got.equals(expected), expr + ": " + got.size() + " of " + expected.size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(16);
+        Engine e = new Engine(true);
+        n = 2500;
+        words = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Set<String> ws = new HashSet<>();
+            StringBuilder body = new StringBuilder("the");
+            for (int w = 0; w < 6; w++) {
+                // w0 is in most documents, w5 in few
+                if (r.nextInt(12) < 10 - 2 * w) {
+                    ws.add("w" + w);
+                    body.append(" w").append(w);
+                }
+            }
+            words.add(ws);
+            e.addDoc(doc("D" + i, body.toString()));
+        }
+
+        same(e, "w1", ws -> ws.contains("w1"));
+        same(e, "w1 w2", ws -> ws.contains("w1") && ws.contains("w2"));
+        same(e, "w1 AND w2 AND w5", ws -> ws.contains("w1") && ws.contains("w2") && ws.contains("w5"));
+        same(e, "w4 OR w5", ws -> ws.contains("w4") || ws.contains("w5"));
+        same(e, "w0 NOT w1", ws -> ws.contains("w0") && !ws.contains("w1"));
+        same(e, "w0 NOT w1 NOT w2", ws -> ws.contains("w0") && !ws.contains("w1") && !ws.contains("w2"));
+        // AND binds tighter than OR
+        same(e, "w1 w2 OR w5", ws -> (ws.contains("w1") && ws.contains("w2")) || ws.contains("w5"));
+        same(e, "w1 (w2 OR w5)", ws -> ws.contains("w1") && (ws.contains("w2") || ws.contains("w5")));
+        same(e, "w0 NOT (w1 OR w2)", ws -> ws.contains("w0") && !(ws.contains("w1") || ws.contains("w2")));
+        same(e, "(w3 NOT w4) OR (w4 NOT w3)", ws -> ws.contains("w3") != ws.contains("w4"));
+        same(e, "((w1 OR w2) (w3 OR w4)) NOT w0",
+            ws -> (ws.contains("w1") || ws.contains("w2")) && (ws.contains("w3") || ws.contains("w4"))
+                && !ws.contains("w0"));
+        // uninteresting words are dropped, words found nowhere match nothing
+        same(e, "the w3 the", ws -> ws.contains("w3"));
+        same(e, "W3 OR missing", ws -> ws.contains("w3"));
+        same(e, "w3 missing", ws -> false);
+        same(e, "w3 NOT missing", ws -> ws.contains("w3"));
+        // a quoted phrase matches words one after the other
+        same(e, "\"w1 w2\" OR w5", ws -> (ws.contains("w1") && ws.contains("w2")) || ws.contains("w5"));
+
+        String[] invalid = { "", "the", "NOT w1", "w1 OR", "OR w1", "w1 AND", "(w1", "w1)", "()", "w1 (NOT w2)",
+            "\"w1 w2", "w1 OR NOT w2" };
+        for (String q : invalid)
+            check(fails(e, q), "invalid query fails: " + q);
+        check(fails(new Engine(false), "\"w1 w2\""), "a phrase without positions fails");
+
+        // students are searched with the same syntax
+        ProgStudentMan sm = new ProgStudentMan();
+        sm.addStudent(new Student(1, "Anna", "0123", "Hanoi"));
+        sm.addStudent(new Student(2, "Binh", "0456", "Or"));
+        check(sm.search(new String[] { "Nowhere" }).size() == 0, "an unknown word matches no student");
+        check(sm.search(new String[] { "Hanoi", "OR", "Nowhere" }).size() == 1, "an unknown word in an OR");
+        check(sm.search(new String[] { "Or" }).size() == 1, "a word in mixed case is not an operator");
+        check(sm.search(new String[] { "Hanoi", "OR", "Or" }).size() == 2, "an operator in upper case");
+        try {
+            sm.search(new String[] { "the" });
+            check(false, "a search of stop words fails");
+        } catch (NotPossibleException x) {
+        }
+        try {
+            sm.search(new String[] { "(Hanoi" });
+            check(false, "an invalid search fails");
+        } catch (NotPossibleException x) {
+        }
+
+        System.out.println((failures == 0) ? "testBooleanQuery: OK" : "testBooleanQuery: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Helpers;
+import a2_BI12_170.kengine.Query;
+import a2_BI12_170.kengine.TitleTable;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of the document store of the engine: the documents that are
+ * added to an engine, and to more than one engine. Prints the failed checks and
+ * exits with status 1 if there are any.
+ */
+public class testDocStore {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    public static void main(String[] args) throws Exception {
+        // a document added to two engines is found by both
+        Engine e1 = new Engine();
+        Engine e2 = new Engine();
+        e2.addDoc(doc("P0", "alpha beta"));
+        Query live = e2.queryFirst("alpha");
+        Doc t1 = doc("T1", "alpha gamma");
+        e1.addDoc(t1);
+        e2.addDoc(t1);
+        check(live.size() == 2, "live query of the second engine has the shared document: " 
+            + Arrays.toString(live.top(live.size())));
+        check(e1.search("alpha").size() == 1 && e2.search("alpha").size() == 2, "searches see the shared document");
+        e2.deleteDoc("t1");
+        check(e2.search("alpha").size() == 1, "deleting the shared document from the second engine");
+        check(e1.search("alpha").size() == 1, "the first engine keeps the shared document");
+        check(live.size() == 1, "live query drops the deleted document");
+
+        // indexed documents read their title and content from the store
+        for (boolean storeContent : new boolean[] { true, false }) {
+            Engine e = new Engine(true, storeContent);
+            Doc[] ds = new Doc[100];
+            for (int i = 0; i < ds.length; i++) {
+                ds[i] = doc("D" + i, "word" + i + " common");
+                e.addDoc(ds[i]);
+            }
+            for (int i = 0; i < ds.length; i++) {
+                check(("D" + i).equals(ds[i].title()), "title of D" + i);
+                check(e.findDoc("d" + i) == ds[i], "findDoc returns the added document D" + i);
+                check(storeContent == (ds[i].body() != null), "body of D" + i + " is kept iff content is stored");
+                check(storeContent == ds[i].words().hasNext(), "words of D" + i + " iff content is stored");
+            }
+            Query q = e.search("common");
+            check(q.size() == ds.length, "all documents match");
+            DocCnt[] top = q.top(1);
+            check(top.length == 1 && top[0].getDoc() == ds[0], "matches are the added documents");
+        }
+
+        // the title table finds documents by title in any case, also after removals
+        TitleTable tt = new TitleTable();
+        Engine te = new Engine(true, false);
+        for (int i = 0; i < 5000; i++) {
+            Doc d = doc((i % 3 == 0) ? "T\u00e0i li\u1ec7u " + i : "Doc " + i, "x");
+            if (i % 2 == 0)
+                te.addDoc(d); // attached: its title is read from the store
+            tt.addDoc(d);
+        }
+        for (int i = 0; i < 5000; i += 5)
+            tt.removeDoc(((i % 3 == 0) ? "T\u00c0I LI\u1ec6U " : "DOC ") + i);
+        int found = 0;
+        for (int i = 0; i < 5000; i++) {
+            String t = ((i % 3 == 0) ? "t\u00e0i li\u1ec7u " : "doc ") + i;
+            boolean has = tt.contains(t);
+            check(has == (i % 5 != 0), "title table has " + t + ": " + has);
+            if (has) {
+                check(Helpers.canon(tt.lookup(t).title()).equals(t), "lookup of " + t);
+                found++;
+            }
+        }
+        HashSet<Doc> seen = new HashSet<>();
+        for (Iterator<Doc> it = tt.docIterator(); it.hasNext();)
+            seen.add(it.next());
+        check(seen.size() == found && found == 4000, "the iterator returns each document once: " + seen.size());
+        try {
+            tt.addDoc(doc("doc 1", "dup"));
+            check(false, "a duplicate title is rejected");
+        } catch (RuntimeException x) {
+        }
+        try {
+            tt.lookup("doc 5");
+            check(false, "a removed title is not found");
+        } catch (NotPossibleException x) {
+        }
+
+        // documents are read while others are added
+        final Engine ce = new Engine(true, false);
+        final int n = 20000;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < n; i++)
+                ce.addDoc(doc("C" + i, "shared"));
+        });
+        writer.start();
+        int bad = 0;
+        while (writer.isAlive()) {
+            if (ce.snapshot().numDocs() == 0)
+                continue;
+            Query q = ce.search("shared");
+            for (Doc d : q.fetch(0, q.size()))
+                if (d == null || d.title() == null || !d.title().startsWith("C"))
+                    bad++;
+        }
+        writer.join();
+        check(bad == 0, "documents read while others are added: " + bad + " bad");
+
+        // documents are found by title and iterated while others are added
+        final Engine fe = new Engine(false, false);
+        fe.addDoc(doc("t0", "first"));
+        final AtomicInteger missed = new AtomicInteger();
+        final AtomicBoolean adding = new AtomicBoolean(true);
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (adding.get()) {
+                    try {
+                        if (!fe.findDoc("t0").title().equals("t0"))
+                            missed.incrementAndGet();
+                    } catch (RuntimeException x) {
+                        missed.incrementAndGet();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (int i = 1; i < 200000; i++)
+            fe.addDoc(doc("t" + i, "w"));
+        adding.set(false);
+        for (Thread r : readers)
+            r.join();
+        check(missed.get() == 0, "an existing title is found while others are added: " + missed.get() + " missed");
+        check(fe.findDoc("T199999") != null, "the last title is found");
+        int iterated = 0;
+        for (Iterator<Doc> it = fe.docIterator(); it.hasNext(); it.next())
+            iterated++;
+        check(iterated == 200000, "every document is iterated: " + iterated);
+
+        System.out.println((failures == 0) ? "testDocStore: OK" : "testDocStore: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
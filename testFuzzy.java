@@ -0,0 +1,102 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of fuzzy search: the keywords that the Levenshtein automaton
+ * finds are exactly those within the given number of edits, checked against a
+ * direct computation of the edit distance. Prints the failed checks and exits
+ * with status 1 if there are any.
+ */
+public class testFuzzy {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    /** the edit distance with insertions, deletions, substitutions and adjacent transpositions */
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++)
+            d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++)
+            d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int c = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + c, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static boolean isKeyword(Engine e, String w) {
+        try {
+            return e.search(w).size() > 0;
+        } catch (NotPossibleException x) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Engine e = new Engine();
+        e.addDoc(new Doc("<html><head><title>H</title></head><body>hoang huy bui</body></html>"));
+        check(Arrays.asList(e.fuzzy("hoagn", 1).keys()).equals(Arrays.asList("hoang")), "a transposition is one edit");
+        check(e.fuzzy("hoagn", 0).size() == 0, "no edits finds only the word itself");
+        check(e.fuzzy("hoang", 0).size() == 1, "the word itself is found with no edits");
+        check(Arrays.asList(e.fuzzy("hyu", 1).keys()).equals(Arrays.asList("huy")), "a short word");
+        check(e.fuzzy("zzzzz", 2).size() == 0, "a word far from every keyword finds nothing");
+
+        // random keywords over a small alphabet, so that many are close to each other,
+        // spread over several segments
+        Random r = new Random(18);
+        TreeSet<String> words = new TreeSet<>();
+        Engine f = new Engine();
+        for (int n = 0; n < 4000; n++) {
+            StringBuilder b = new StringBuilder("x");
+            for (int len = 2 + r.nextInt(6); len > 0; len--)
+                b.append((char) ('a' + r.nextInt(4)));
+            words.add(b.toString());
+            f.addDoc(new Doc("<html><head><title>F" + n + "</title></head><body>" + b + "</body></html>"));
+        }
+        words.removeIf(v -> !isKeyword(f, v));
+        String[] vocabulary = words.toArray(new String[words.size()]);
+        for (int n = 0; n < 200; n++) {
+            String w = vocabulary[r.nextInt(vocabulary.length)];
+            if (n % 2 == 0)
+                w = w.substring(0, w.length() - 1) + "d";
+            for (int k = 0; k <= 2; k++) {
+                TreeSet<String> near = new TreeSet<>();
+                for (String v : words)
+                    if (distance(w, v) <= k)
+                        near.add(v);
+                String[] keys = f.fuzzy(w, k).keys();
+                if (near.size() <= 50) {
+                    check(new TreeSet<>(Arrays.asList(keys)).equals(near), 
+                        w + "~" + k + ": " + Arrays.toString(keys) + " != " + near);
+                } else {
+                    check(keys.length == 50, w + "~" + k + " is capped at 50 keywords: " + keys.length);
+                    for (String v : keys)
+                        check(distance(w, v) <= k, w + "~" + k + " finds " + v);
+                }
+                for (int i = 1; i < keys.length; i++)
+                    check(distance(w, keys[i - 1]) <= distance(w, keys[i]), w + "~" + k + " nearest first");
+            }
+        }
+
+        System.out.println((failures == 0) ? "testFuzzy: OK" : "testFuzzy: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
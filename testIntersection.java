@@ -0,0 +1,124 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import a2_BI12_170.kengine.CountScorer;
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of multi-keyword queries: queries of up to five popular
+ * words, refined one keyword at a time in any order or created with all of
+ * them, match the documents that have all the words, with the sums of their
+ * counts. Prints the failed checks and exits with status 1 if there are any.
+ */
+public class testIntersection {
+    private static final String[] WORDS = { "k0", "k1", "k2", "k3", "k4", "k5" };
+
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (NotPossibleException e) {
+            return true;
+        }
+    }
+
+    private static int n;
+    private static int[][] counts; // counts[doc][word]
+
+    private static Map<String, Integer> expected(String[] ws) {
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            int sum = 0;
+            boolean all = true;
+            for (String w : ws) {
+                int c = counts[i][w.charAt(1) - '0'];
+                all &= c > 0;
+                sum += c;
+            }
+            if (all)
+                m.put("D" + i, sum);
+        }
+        return m;
+    }
+
+    private static Map<String, Integer> matches(Query q) {
+        Map<String, Integer> m = new HashMap<>();
+        for (DocCnt dc : q.top(q.size()))
+            m.put(dc.getDoc().title(), dc.getCount());
+        return m;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(2);
+        Engine e = new Engine();
+        n = 5000;
+        counts = new int[n][WORDS.length];
+        for (int i = 0; i < n; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < WORDS.length; w++) {
+                // every word is popular, the later ones less so
+                if (r.nextInt(10) < 9 - w) {
+                    counts[i][w] = 1 + r.nextInt(5);
+                    for (int k = 0; k < counts[i][w]; k++)
+                        body.append(' ').append(WORDS[w]);
+                }
+            }
+            e.addDoc(doc("D" + i, body.toString()));
+        }
+
+        String[][] queries = { { "k0", "k1" }, { "k5", "k0" }, { "k0", "k1", "k2", "k3", "k4" },
+            { "k4", "k3", "k2", "k1", "k0" }, { "k2", "k5", "k0", "k3" }, { "k0", "k1", "k2", "k3", "k4", "k5" } };
+        for (String[] ws : queries) {
+            Map<String, Integer> exp = expected(ws);
+            String what = String.join(" ", ws);
+
+            // one keyword at a time, checking each step
+            Query q = e.queryFirst(ws[0]);
+            for (int k = 1; k < ws.length; k++) {
+                q = e.queryMore(ws[k]);
+                String[] prefix = new String[k + 1];
+                System.arraycopy(ws, 0, prefix, 0, k + 1);
+                check(q.size() == expected(prefix).size(), "queryMore up to " + ws[k] + " of " + what);
+            }
+            check(matches(q).equals(exp), "queryFirst and queryMore " + what);
+
+            // all keywords at once, whatever their order
+            check(matches(e.search(ws)).equals(exp), "search " + what);
+            check(matches(new Query(e.snapshot(), ws, CountScorer.INSTANCE)).equals(exp), "new Query " + what);
+            Set<String> keys = new HashSet<>();
+            for (String k : q.keys())
+                keys.add(k);
+            check(keys.size() == ws.length, "the keys of the query " + what);
+        }
+
+        // a keyword cannot be added twice, and a query without matches cannot be refined
+        Query q = e.queryFirst("k1");
+        check(fails(() -> q.addKey("k1")), "adding a keyword twice fails");
+        Query none = new Query();
+        check(fails(() -> none.addKey("k1")), "refining an empty query fails");
+
+        System.out.println((failures == 0) ? "testIntersection: OK" : "testIntersection: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.Random;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+
+/**
+ * Behaviour tests of the current query of an engine as documents are added:
+ * its ranked best matches stay the same as those of a new query over all the
+ * documents. Prints the failed checks and exits with status 1 if there are
+ * any.
+ */
+public class testLiveRanking {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static String counts(DocCnt[] dcs) {
+        StringBuilder sb = new StringBuilder();
+        for (DocCnt dc : dcs)
+            sb.append(dc.getCount()).append(' ');
+        return sb.toString();
+    }
+
+    private static String times(String w, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            sb.append(w).append(' ');
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(21);
+        Engine e = new Engine();
+        for (int i = 0; i < 200; i++)
+            e.addDoc(new Doc("<html><head><title>D" + i + "</title></head><body>"
+                + times("alpha", 1 + r.nextInt(5)) + times("beta", 1 + r.nextInt(5)) + "</body></html>"));
+        Query live = e.queryFirst("alpha");
+        live = e.queryMore("beta");
+        check(live.top(10).length == 10, "the best matches are ranked");
+
+        for (int i = 200; i < 600; i++) {
+            StringBuilder body = new StringBuilder(times("alpha", 1 + r.nextInt(12)));
+            if (i % 3 != 0)
+                body.append(times("beta", 1 + r.nextInt(12)));
+            e.addDoc(new Doc("<html><head><title>D" + i + "</title></head><body>" + body + "</body></html>"));
+            if (i % 50 == 0) {
+                Query fresh = e.search("alpha", "beta");
+                check(live.size() == fresh.size(), "live query has all matches: " + live.size() + " != " + fresh.size());
+                String want = counts(fresh.top(10));
+                String got = counts(live.top(10));
+                check(got.equals(want), "live ranking after " + (i + 1) + " documents: " + got + " != " + want);
+            }
+        }
+        DocCnt[] top = live.top(live.size());
+        for (int i = 1; i < top.length; i++)
+            check(top[i - 1].getCount() >= top[i].getCount(), "matches are ranked best first");
+
+        System.out.println((failures == 0) ? "testLiveRanking: OK" : "testLiveRanking: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
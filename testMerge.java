@@ -0,0 +1,84 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import a2_BI12_170.kengine.CountScorer;
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.IndexSnapshot;
+import a2_BI12_170.kengine.Query;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of the segments of an engine: while documents are added,
+ * flushed to segments and merged in the background, the snapshots that another
+ * thread queries always hold exactly the documents added before them. Prints
+ * the failed checks and exits with status 1 if there are any.
+ */
+public class testMerge {
+    private static volatile int failures;
+
+    private static synchronized void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    /** the number of matches of w in s, or 0 if no document of s has it */
+    private static int count(IndexSnapshot s, String w) {
+        try {
+            return new Query(s, new String[] { w }, CountScorer.INSTANCE).size();
+        } catch (NotPossibleException x) {
+            return 0;
+        }
+    }
+
+    /** the number of the documents 0..n-1 whose id is a multiple of m */
+    private static int multiples(int n, int m) {
+        return (n + m - 1) / m;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Engine e = new Engine();
+        int n = 25000; // many flushes, and merges of the flushed segments
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            long lastGen = -1;
+            int lastDocs = 0, rounds = 0;
+            while (!done.get() || rounds == 0) {
+                IndexSnapshot s = e.snapshot();
+                int docs = s.numDocs();
+                check(s.generation() >= lastGen && docs >= lastDocs, "snapshots only move forward");
+                lastGen = s.generation();
+                lastDocs = docs;
+                check(count(s, "all") == docs, "every document of a snapshot is found: " + count(s, "all")
+                    + " of " + docs);
+                check(count(s, "seven") == multiples(docs, 7), "a snapshot has the postings of its documents: "
+                    + count(s, "seven") + " of " + multiples(docs, 7));
+                rounds++;
+            }
+            check(rounds > 1, "the reader ran while documents were added");
+        });
+        reader.start();
+
+        for (int i = 0; i < n; i++)
+            e.addDoc(doc("D" + i, "all w" + i + ((i % 7 == 0) ? " seven" : "")));
+        done.set(true);
+        reader.join();
+
+        IndexSnapshot s = e.snapshot();
+        check(s.numDocs() == n && count(s, "all") == n, "every document is kept by the merges");
+        check(count(s, "seven") == multiples(n, 7), "the postings are kept by the merges");
+        int found = 0;
+        for (int i = 0; i < n; i += 997)
+            found += count(s, "w" + i);
+        check(found == multiples(n, 997), "the words of single documents are kept by the merges");
+
+        System.out.println((failures == 0) ? "testMerge: OK" : "testMerge: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.ArrayList;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Engine;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of standing queries: a listener is told of each new document
+ * that contains all the words of its query, with their total count, until it
+ * is unregistered. Prints the failed checks and exits with status 1 if there
+ * are any.
+ */
+public class testPercolator {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Engine e = new Engine();
+        e.addDoc(doc("Old", "hoang huy"));
+        final ArrayList<DocCnt> both = new ArrayList<>();
+        final ArrayList<DocCnt> one = new ArrayList<>();
+        int id = e.register(dc -> both.add(dc), "Hoang Huy");
+        e.register(dc -> one.add(dc), "bui");
+        check(both.isEmpty(), "documents added before registering do not match");
+
+        e.addDoc(doc("A", "hoang huy hoang"));
+        e.addDoc(doc("B", "hoang bui"));
+        e.addDoc(doc("C", "huy bui bui hoang"));
+        check(both.size() == 2, "matches of a two-word query: " + both.size());
+        check(both.get(0).getDoc().title().equals("A") && both.get(0).getCount() == 3, "count of the first match");
+        check(both.get(1).getDoc().title().equals("C") && both.get(1).getCount() == 2, "count of the second match");
+        check(one.size() == 2 && one.get(1).getCount() == 2, "matches of a one-word query: " + one.size());
+
+        check(e.unregister(id), "unregistering a standing query");
+        check(!e.unregister(id), "unregistering it again");
+        e.addDoc(doc("D", "hoang huy"));
+        check(both.size() == 2, "an unregistered query is not matched");
+
+        // a document replaced by updateDoc is matched as a new document
+        e.updateDoc("B", doc("B", "bui"));
+        check(one.size() == 3, "a replacement is matched: " + one.size());
+
+        try {
+            e.register(dc -> { }, "the this that");
+            check(false, "a query of stop words is rejected");
+        } catch (NotPossibleException x) {
+        }
+
+        System.out.println((failures == 0) ? "testPercolator: OK" : "testPercolator: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of phrase and near queries: the documents they match are
+ * compared with a brute force scan of the words of random documents, over
+ * several segments. Prints the failed checks and exits with status 1 if there
+ * are any.
+ */
+public class testPhrase {
+    private static final String[] WORDS = { "w0", "w1", "w2", "w3", "w4", "w5", "the" };
+
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (NotPossibleException e) {
+            return true;
+        }
+    }
+
+    private static Set<String> titles(Query q) {
+        Set<String> ts = new HashSet<>();
+        for (Doc d : q.fetch(0, q.size()))
+            ts.add(d.title());
+        return ts;
+    }
+
+    /** whether ws occur in seq one after the other, "the" matching any word */
+    private static boolean hasPhrase(String[] seq, String[] ws) {
+        for (int i = 0; i + ws.length <= seq.length; i++) {
+            int j = 0;
+            while (j < ws.length && (ws[j].equals("the") || ws[j].equals(seq[i + j])))
+                j++;
+            if (j == ws.length)
+                return true;
+        }
+        return false;
+    }
+
+    /** whether all of ws occur within a window of n words of seq */
+    private static boolean isNear(String[] seq, int n, String[] ws) {
+        for (int i = 0; i < seq.length; i++) {
+            boolean all = true;
+            for (String w : ws) {
+                boolean in = false;
+                for (int j = i; j <= i + n && j < seq.length; j++)
+                    in |= seq[j].equals(w);
+                all &= in;
+            }
+            if (all)
+                return true;
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(15);
+        Engine e = new Engine(true);
+        int n = 2500;
+        String[][] seqs = new String[n][];
+        for (int i = 0; i < n; i++) {
+            String[] seq = new String[1 + r.nextInt(20)];
+            for (int j = 0; j < seq.length; j++)
+                seq[j] = WORDS[r.nextInt(WORDS.length)];
+            seqs[i] = seq;
+            e.addDoc(doc("D" + i, String.join(" ", seq)));
+        }
+
+        String[][] phrases = { { "w0", "w1" }, { "w2", "w2" }, { "w1", "w2", "w3" }, { "w4", "the", "w5" },
+            { "w3", "the", "the", "w3" }, { "w0", "w1", "w0", "w1" } };
+        for (String[] p : phrases) {
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < n; i++)
+                if (hasPhrase(seqs[i], p))
+                    expected.add("D" + i);
+            Set<String> got = titles(e.phrase(p));
+            check(got.equals(expected), "phrase " + Arrays.toString(p) + ": " + got.size() + " of " + expected.size());
+        }
+        check(titles(e.phrase("w0 w1")).equals(titles(e.phrase("w0", "w1"))), "phrase words are split at white space");
+        check(titles(e.phrase("W0", "W1")).equals(titles(e.phrase("w0", "w1"))), "phrase words are case-insensitive");
+
+        int[] dists = { 0, 1, 3, 6 };
+        String[][] nears = { { "w0", "w1" }, { "w3", "w3" }, { "w1", "w4", "w5" } };
+        for (int d : dists) {
+            for (String[] ws : nears) {
+                Set<String> expected = new HashSet<>();
+                for (int i = 0; i < n; i++)
+                    if (isNear(seqs[i], d, ws))
+                        expected.add("D" + i);
+                Set<String> got = titles(e.near(d, ws));
+                check(got.equals(expected), "near " + d + " " + Arrays.toString(ws) + ": " + got.size() + " of "
+                    + expected.size());
+            }
+        }
+
+        // invalid phrase and near queries
+        check(fails(() -> e.phrase("the", "the")), "a phrase of uninteresting words fails");
+        check(fails(() -> e.phrase("w0", "missing")), "a phrase with an unknown word fails");
+        check(fails(() -> e.near(-1, "w0", "w1")), "a negative distance fails");
+        check(fails(() -> new Engine(false).phrase("w0")), "a phrase without positions fails");
+
+        System.out.println((failures == 0) ? "testPhrase: OK" : "testPhrase: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Hashtable;
+import java.util.Random;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import a2_BI12_170.kengine.TokenHandler;
+import a2_BI12_170.kengine.WordTable;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of the parallel ingestion of a site: the documents read and
+ * counted by several threads, while the engine adds them, give the same index
+ * as reading them one by one, in the same order. Prints the failed checks and
+ * exits with status 1 if there are any.
+ */
+public class testPipeline {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static String ranking(Engine e, String w) {
+        try {
+            Query q = e.search(w);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < q.size(); i++)
+                sb.append(q.fetch(i).title()).append(' ');
+            return sb.toString();
+        } catch (NotPossibleException x) {
+            return "none";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // a site of documents whose words are mostly new, so the threads that
+        // count them add terms while the engine adds the documents
+        File dir = new File(System.getProperty("java.io.tmpdir"), "testPipeline" + System.nanoTime());
+        dir.mkdirs();
+        dir.deleteOnExit(); // after the files, which are registered later
+        Random r = new Random(4);
+        for (int i = 0; i < 400; i++) {
+            File f = new File(dir, "doc" + i + ".html");
+            f.deleteOnExit();
+            try (Writer w = new FileWriter(f)) {
+                w.write("<html><head><title>P" + i + "</title></head><body>");
+                for (int j = 0; j < 200; j++)
+                    w.write("Word" + r.nextInt(5000) + " the common ");
+                w.write("</body></html>");
+            }
+        }
+        String url = "file://" + dir.getPath();
+
+        Engine seq = new Engine();
+        seq.addDocs(url);
+        for (int run = 0; run < 3; run++) {
+            Engine par = new Engine();
+            par.addDocs(url, 4, 8);
+            check(par.snapshot().numDocs() == 400, "all documents are added: " + par.snapshot().numDocs());
+            for (String w : new String[] { "common", "word0", "word17", "word4999", "word2500" })
+                check(ranking(par, w).equals(ranking(seq, w)), "run " + run + ": " + w + " is indexed the same");
+            check(par.getWordTableAsString().equals(seq.getWordTableAsString()), "run " + run + ": same word table");
+            try {
+                par.search("the");
+                check(false, "stop words are not indexed");
+            } catch (NotPossibleException x) {
+            }
+        }
+
+        // a document that fails while its words are counted leaves no counts
+        // for the next document counted by the same thread
+        WordTable wt = new WordTable(true);
+        Doc bad = new Doc("<html><head><title>Bad</title></head><body>alpha beta</body></html>") {
+            public void words(TokenHandler h) {
+                super.words(h);
+                throw new IllegalStateException("unreadable");
+            }
+        };
+        try {
+            wt.addDoc(bad);
+            check(false, "a failing document is not added");
+        } catch (IllegalStateException x) {
+        }
+        Hashtable<String, Integer> counts = wt.addDoc(
+            new Doc("<html><head><title>Good</title></head><body>beta gamma</body></html>"));
+        check(counts.size() == 2 && counts.get("beta") == 1 && counts.get("gamma") == 1,
+            "the next document has only its own counts: " + counts);
+        check(wt.lookup("alpha") == null, "the words of a failing document are not indexed");
+
+        System.out.println((failures == 0) ? "testPipeline: OK" : "testPipeline: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.WordTable;
+
+/**
+ * Behaviour tests of the compressed posting lists: postings with gaps and
+ * counts of very different sizes are looked up after they are packed into
+ * blocks, and compared with the documents and counts they were added with.
+ * Prints the failed checks and exits with status 1 if there are any.
+ */
+public class testPostingCodec {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static Map<String, List<String>> expected = new HashMap<>();
+
+    private static void add(StringBuilder body, String title, String w, int cnt) {
+        for (int i = 0; i < cnt; i++)
+            body.append(' ').append(w);
+        expected.computeIfAbsent(w, k -> new ArrayList<>()).add(title + ":" + cnt);
+    }
+
+    private static void same(WordTable wt, String w) {
+        List<String> got = new ArrayList<>();
+        Vector<?> v = wt.lookup(w);
+        if (v != null) {
+            for (Object o : v) {
+                DocCnt dc = (DocCnt) o;
+                got.add(dc.getDoc().title() + ":" + dc.getCount());
+            }
+        }
+        List<String> exp = expected.getOrDefault(w, new ArrayList<>());
+        check(got.equals(exp), "postings of " + w + ": " + got.size() + " of " + exp.size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(19);
+        WordTable wt = new WordTable();
+        int n = 6000;
+        for (int i = 0; i < n; i++) {
+            String t = "D" + i;
+            StringBuilder body = new StringBuilder();
+            // every document: all gaps are 0
+            add(body, t, "every", 1);
+            // rare documents: large gaps
+            if (r.nextInt(200) == 0)
+                add(body, t, "rare", 1);
+            // dense runs with a few very large gaps: exceptions of PFOR blocks
+            if (i % 1500 < 300 && r.nextInt(10) > 0)
+                add(body, t, "bursts", 1);
+            // small gaps and now and then a large one
+            if ((i % 97 == 0 && i % 2 == 0) || (i / 97) % 2 == 1)
+                add(body, t, "mixed", 1);
+            // counts of very different sizes
+            if (i % 3 == 0)
+                add(body, t, "counts", (i % 301 == 0) ? 300 + r.nextInt(700) : 1 + r.nextInt(4));
+            // a word of a single document, and of the last document only
+            if (i == 1234)
+                add(body, t, "once", 2);
+            if (i == n - 1)
+                add(body, t, "last", 1);
+            // a word of a few consecutive documents
+            if (i >= 4000 && i < 4129)
+                add(body, t, "block", 1 + (i & 1));
+            wt.addDoc(doc(t, body.toString()));
+        }
+
+        for (String w : new String[] { "every", "rare", "bursts", "mixed", "counts", "once", "last", "block" })
+            same(wt, w);
+        check(wt.lookup("missing") == null && !wt.isKeyword("missing"), "a word that is not added has no postings");
+        check(wt.isKeyword("once") && wt.isKeyword("last"), "words of one document are keywords");
+
+        System.out.println((failures == 0) ? "testPostingCodec: OK" : "testPostingCodec: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,88 @@
+import a2_BI12_170.kengine.CacheStats;
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+
+/**
+ * Behaviour tests of the query result cache of an engine: repeated searches
+ * are answered from it, changes to the index invalidate it, a limit of 0
+ * disables it and frequent queries are not flushed out by one-off ones.
+ * Prints the failed checks and exits with status 1 if there are any.
+ */
+public class testQueryCache {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Engine e = new Engine();
+        for (int i = 0; i < 1000; i++)
+            e.addDoc(doc("D" + i, "common w" + (i % 10) + " v" + (i % 3) + " u" + i));
+
+        // repeated searches, with the words in any order, hit the cache
+        Query a = e.search("w1", "v2");
+        Query b = e.search("v2", "w1");
+        CacheStats s = e.cacheStats();
+        check(s.misses() == 1 && s.hits() == 1, "the second search is a hit: " + s);
+        check(a != b && a.size() == b.size() && a.size() == 33, "each search gets its own copy: " + a.size());
+        b.addKey("u11");
+        check(a.size() == 33 && b.size() == 1, "refining a copy leaves the other alone");
+
+        // adding or deleting a document invalidates the cached results
+        e.addDoc(doc("New", "w1 v2"));
+        check(e.search("w1", "v2").size() == 34, "a search after addDoc sees the new document");
+        e.deleteDoc("new");
+        check(e.search("w1", "v2").size() == 33, "a search after deleteDoc skips the deleted document");
+        s = e.cacheStats();
+        check(s.invalidations() == 2 && s.hits() == 1, "the changes invalidated the cache: " + s);
+
+        // a limit of 0 disables the cache, including for results with no matches
+        for (int[] limits : new int[][] { { 0, 1000 }, { 100, 0 } }) {
+            Engine d = new Engine();
+            d.addDoc(doc("A", "alpha"));
+            d.addDoc(doc("B", "beta"));
+            d.setCacheSize(limits[0], limits[1]);
+            for (int i = 0; i < 3; i++) {
+                check(d.search("alpha", "beta").size() == 0, "no document has both words");
+                check(d.search("alpha").size() == 1, "one document has alpha");
+            }
+            s = d.cacheStats();
+            check(s.hits() == 0 && s.misses() == 0 && s.size() == 0, "disabled cache " + limits[0] + "," + limits[1] + ": " + s);
+        }
+        e.setCacheSize(0, 0);
+        check(e.cacheStats().size() == 0, "disabling drops the cached results");
+
+        // frequent queries stay cached while one-off queries pass through
+        Engine f = new Engine();
+        for (int i = 0; i < 1000; i++)
+            f.addDoc(doc("F" + i, "common w" + (i % 10) + " u" + i));
+        f.setCacheSize(4, 100000);
+        for (int round = 0; round < 5; round++)
+            for (int h = 0; h < 3; h++)
+                f.search("w" + h);
+        long hits = f.cacheStats().hits();
+        for (int i = 0; i < 200; i++)
+            f.search("u" + i);
+        for (int h = 0; h < 3; h++)
+            f.search("w" + h);
+        s = f.cacheStats();
+        check(s.hits() == hits + 3, "frequent queries survive a burst of one-off queries: " + s);
+        check(s.rejections() > 0 && s.size() <= 4, "one-off queries were rejected: " + s);
+        for (int i = 0; i < 10; i++)
+            f.search("u7");
+        check(f.cacheStats().hits() > s.hits(), "a query that becomes frequent is admitted: " + f.cacheStats());
+
+        System.out.println((failures == 0) ? "testQueryCache: OK" : "testQueryCache: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
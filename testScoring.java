@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import a2_BI12_170.kengine.Bm25Scorer;
+import a2_BI12_170.kengine.CountScorer;
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import a2_BI12_170.kengine.Scorer;
+import a2_BI12_170.kengine.TfIdfScorer;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of scoring: the matches of queries ranked by TF-IDF and BM25
+ * are in the order of the scores computed from the words of each document, and
+ * the length of a document counts against it. Prints the failed checks and
+ * exits with status 1 if there are any.
+ */
+public class testScoring {
+    private static final String[] WORDS = { "s0", "s1", "s2", "s3" };
+
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (NotPossibleException e) {
+            return true;
+        }
+    }
+
+    private static int n;
+    private static List<Map<String, Integer>> counts = new ArrayList<>();
+    private static int[] lens;
+    private static double avgLen;
+
+    private static int df(String w) {
+        int df = 0;
+        for (Map<String, Integer> cs : counts)
+            df += cs.containsKey(w) ? 1 : 0;
+        return df;
+    }
+
+    /** the score of document i for ws, by the formulas of the scorers */
+    private static double score(boolean bm25, int i, String[] ws) {
+        double s = 0;
+        for (String w : ws) {
+            int tf = counts.get(i).get(w);
+            int df = df(w);
+            if (bm25) {
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                s += idf * tf * 2.2 / (tf + 1.2 * (0.25 + 0.75 * lens[i] / avgLen));
+            } else {
+                s += (1 + Math.log(tf)) * Math.log(1 + (double) n / df) / Math.sqrt(lens[i]);
+            }
+        }
+        return s;
+    }
+
+    private static void ranked(Engine e, boolean bm25, String... ws) {
+        Query q = e.search(ws);
+        Doc[] all = q.fetch(0, q.size());
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < n; i++)
+            if (counts.get(i).keySet().containsAll(Arrays.asList(ws)))
+                expected.add("D" + i);
+        Set<String> got = new HashSet<>();
+        boolean ordered = true;
+        double prev = Double.MAX_VALUE;
+        for (Doc d : all) {
+            got.add(d.title());
+            double s = score(bm25, Integer.parseInt(d.title().substring(1)), ws);
+            ordered &= s <= prev * (1 + 1e-5);
+            prev = s;
+        }
+        String what = (bm25 ? "BM25 " : "TF-IDF ") + String.join(" ", ws);
+        check(got.equals(expected), what + " matches the documents with all the words");
+        check(ordered, what + " ranks by score");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(10);
+        Engine e = new Engine();
+        n = 2000;
+        lens = new int[n];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            Map<String, Integer> cs = new HashMap<>();
+            StringBuilder body = new StringBuilder("the");
+            // the length of a document varies more than the counts of the words
+            int filler = r.nextInt(50);
+            for (int k = 0; k < filler; k++)
+                body.append(" f").append(r.nextInt(100));
+            lens[i] = filler;
+            for (int w = 0; w < WORDS.length; w++) {
+                if (r.nextInt(5) > w) {
+                    int c = 1 + r.nextInt(6);
+                    cs.put(WORDS[w], c);
+                    lens[i] += c;
+                    for (int k = 0; k < c; k++)
+                        body.append(' ').append(WORDS[w]);
+                }
+            }
+            total += lens[i];
+            counts.add(cs);
+            e.addDoc(doc("D" + i, body.toString()));
+        }
+        avgLen = (double) total / n;
+
+        e.setScorer(Bm25Scorer.INSTANCE);
+        ranked(e, true, "s0");
+        ranked(e, true, "s2");
+        ranked(e, true, "s0", "s3");
+        e.setScorer(TfIdfScorer.INSTANCE);
+        ranked(e, false, "s1");
+        ranked(e, false, "s1", "s2", "s3");
+
+        // a query takes the scorer it is created with
+        DocCnt[] byCount = new Query(e.snapshot(), new String[] { "s0" }, CountScorer.INSTANCE).top(1);
+        int most = 0;
+        for (Map<String, Integer> cs : counts)
+            most = Math.max(most, cs.getOrDefault("s0", 0));
+        check(byCount[0].getCount() == most, "a count scorer ranks by count");
+
+        // of two documents with the same counts, the shorter one is better
+        Engine len = new Engine();
+        len.addDoc(doc("long", "match match x1 x2 x3 x4 x5 x6 x7 x8"));
+        len.addDoc(doc("short", "match match"));
+        for (Scorer s : new Scorer[] { Bm25Scorer.INSTANCE, TfIdfScorer.INSTANCE }) {
+            len.setScorer(s);
+            check(len.search("match").fetch(0).title().equals("short"), "a shorter document is better: " + s);
+        }
+        // and a rarer word weighs more
+        Engine rare = new Engine();
+        rare.addDoc(doc("rare", "common rare"));
+        rare.addDoc(doc("common", "common common"));
+        rare.addDoc(doc("other", "common"));
+        rare.setScorer(Bm25Scorer.INSTANCE);
+        check(rare.query("common OR rare").fetch(0).title().equals("rare"), "a rarer word weighs more");
+
+        check(fails(() -> new Bm25Scorer(-1, 0.5f)) && fails(() -> new Bm25Scorer(1.2f, 1.5f)),
+            "invalid BM25 parameters fail");
+        check(fails(() -> e.setScorer(null)), "a null scorer fails");
+
+        System.out.println((failures == 0) ? "testScoring: OK" : "testScoring: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
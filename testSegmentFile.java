@@ -0,0 +1,63 @@
+import java.io.File;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of index files: an engine opened from the file that another
+ * engine saved finds the same documents, also when some were deleted. Prints
+ * the failed checks and exits with status 1 if there are any.
+ */
+public class testSegmentFile {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static int count(Engine e, String... ws) {
+        try {
+            return e.search(ws).size();
+        } catch (NotPossibleException x) {
+            return 0; // some word is in no document
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (boolean positional : new boolean[] { true, false }) {
+            Engine e = new Engine(positional, true);
+            for (int i = 0; i < 2500; i++)
+                e.addDoc(doc("D" + i, "common w" + (i % 7) + " v" + (i % 11) + " unique" + i));
+            for (int i = 0; i < 2500; i += 10)
+                e.deleteDoc("D" + i);
+
+            File f = File.createTempFile("testSegmentFile", ".idx");
+            f.deleteOnExit();
+            e.save(f.getPath());
+            Engine o = Engine.open(f.getPath());
+
+            for (String[] ws : new String[][] { { "common" }, { "w3" }, { "w3", "v5" }, { "unique17" }, { "unique20" } })
+                check(count(o, ws) == count(e, ws), String.join(" ", ws) + ": " + count(o, ws) + " != " + count(e, ws));
+            check(count(o, "common") == 2250, "deleted documents are not saved: " + count(o, "common"));
+            check(o.findDoc("d17").title().equals("D17"), "titles are read back");
+            check(o.findDoc("d17").body().contains("unique17"), "content is read back");
+            if (positional)
+                check(o.phrase("w3 v5").size() == e.phrase("w3 v5").size(), "positions are read back");
+
+            o.addDoc(doc("New", "common unique17"));
+            check(count(o, "unique17") == 2, "documents can be added to an opened engine");
+        }
+
+        System.out.println((failures == 0) ? "testSegmentFile: OK" : "testSegmentFile: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
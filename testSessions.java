@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import a2_BI12_170.kengine.QuerySession;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of searching an engine from many threads: searches and
+ * query sessions are independent of each other, also while documents are
+ * added, and each sees the documents of the snapshot it was started on.
+ * Prints the failed checks and exits with status 1 if there are any.
+ */
+public class testSessions {
+    private static final int WORDS = 8;
+
+    private static volatile int failures;
+
+    private static synchronized void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (NotPossibleException e) {
+            return true;
+        }
+    }
+
+    private static boolean[][] has; // has[doc][word]
+
+    private static int expected(int... ws) {
+        int c = 0;
+        for (boolean[] h : has) {
+            boolean all = true;
+            for (int w : ws)
+                all &= h[w];
+            c += all ? 1 : 0;
+        }
+        return c;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(12);
+        Engine e = new Engine();
+        int n = 3000;
+        has = new boolean[n][WORDS];
+        for (int i = 0; i < n; i++) {
+            StringBuilder body = new StringBuilder("start");
+            for (int w = 0; w < WORDS; w++) {
+                if (r.nextBoolean()) {
+                    has[i][w] = true;
+                    body.append(" u").append(w);
+                }
+            }
+            e.addDoc(doc("D" + i, body.toString()));
+        }
+
+        // sessions of one thread do not see each other's queries
+        QuerySession s1 = e.openSession(), s2 = e.openSession();
+        check(s1.query() == null && fails(() -> s1.queryMore("u1")), "a new session has no query");
+        s1.queryFirst("u1");
+        s2.queryFirst("u2");
+        s1.queryMore("u3");
+        check(s1.query().size() == expected(1, 3) && s2.query().size() == expected(2), "sessions are independent");
+        check(fails(() -> s1.queryMore("u1")) && fails(() -> s1.queryMore("missing")), "invalid refinements fail");
+        check(s1.query().size() == expected(1, 3), "a failed refinement keeps the query");
+
+        // many threads search and refine queries while another adds documents
+        // with words that they do not search for
+        List<Thread> ts = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            final int seed = t;
+            ts.add(new Thread(() -> {
+                Random tr = new Random(seed);
+                QuerySession s = e.openSession();
+                for (int k = 0; k < 200; k++) {
+                    int a = tr.nextInt(WORDS), b = (a + 1 + tr.nextInt(WORDS - 1)) % WORDS;
+                    s.queryFirst("u" + a);
+                    Query q = s.queryMore("u" + b);
+                    check(q.size() == expected(a, b), "session query u" + a + " u" + b);
+                    check(e.search("u" + b, "u" + a).size() == expected(a, b), "search u" + a + " u" + b);
+                }
+            }));
+        }
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 3000; i++)
+                e.addDoc(doc("L" + i, "late start"));
+        });
+        for (Thread t : ts)
+            t.start();
+        writer.start();
+        for (Thread t : ts)
+            t.join();
+        writer.join();
+
+        // a session query keeps the snapshot it was started on
+        QuerySession s3 = e.openSession();
+        Query before = s3.queryFirst("start");
+        e.addDoc(doc("After", "start u0"));
+        check(before.size() == n + 3000, "a session query does not see later documents: " + before.size());
+        check(e.search("start").size() == n + 3001, "a new search sees them");
+
+        System.out.println((failures == 0) ? "testSessions: OK" : "testSessions: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import a2_BI12_170.kengine.Comm;
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of reading the documents of a site: each file is read when
+ * the generator gets to it, the documents read keep their own contents while
+ * the next ones are read, and large and non-ASCII documents are read whole.
+ * Prints the failed checks and exits with status 1 if there are any.
+ */
+public class testSiteReader {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (NotPossibleException e) {
+            return true;
+        }
+    }
+
+    private static void write(File f, String title, String body) throws Exception {
+        f.deleteOnExit();
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(f), Charset.defaultCharset())) {
+            w.write("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+        }
+    }
+
+    private static String times(String s, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            sb.append(s);
+        return sb.toString();
+    }
+
+    /** s as it is read back from a file written in the charset of the platform */
+    private static String platform(String s) {
+        return new String(s.getBytes(Charset.defaultCharset()), Charset.defaultCharset());
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "testSiteReader" + System.nanoTime());
+        dir.mkdirs();
+        dir.deleteOnExit(); // after the files, which are registered later
+        int n = 60;
+        for (int i = 0; i < n; i++)
+            write(new File(dir, "doc" + i + ".html"), "S" + i, "body" + i + " shared");
+        // a document larger than the buffers that small documents share, and a non-ASCII one, 
+        // which is read in the charset of the platform
+        String big = times("large ", 100000);
+        write(new File(dir, "big.html"), "Big", big + "end");
+        String title = "Vi\u1ec7t", text = "\u0111\u1ea1i h\u1ecdc";
+        write(new File(dir, "text.html"), title, text);
+        String url = "file://" + dir.getPath();
+
+        // the documents read keep their own content while the others are read
+        List<Doc> docs = new ArrayList<>();
+        for (Iterator<?> it = Comm.getDocs(url); it.hasNext();)
+            docs.add((Doc) it.next());
+        check(docs.size() == n + 2, "every file is read: " + docs.size());
+        int ok = 0;
+        for (Doc d : docs) {
+            String t = d.title();
+            if (t.startsWith("S"))
+                ok += d.body().contains("body" + t.substring(1) + " shared") ? 1 : 0;
+            else if (t.equals("Big"))
+                check(d.body().length() > big.length() && d.body().contains(big + "end"), "a large document is read whole");
+            else
+                check(t.equals(platform(title)) && d.body().contains(platform(text)), "a non-ASCII document is decoded");
+        }
+        check(ok == n, "documents keep their content: " + ok + " of " + n);
+
+        // a file is read when the generator gets to it, not before
+        Iterator<?> it = Comm.getDocs(url);
+        for (File f : dir.listFiles())
+            if (!f.getName().equals("big.html") && !f.getName().equals("text.html"))
+                write(f, "R" + f.getName(), "rewritten");
+        int rewritten = 0;
+        while (it.hasNext()) {
+            Doc d = (Doc) it.next();
+            rewritten += d.body().contains("rewritten") ? 1 : 0;
+        }
+        check(rewritten == n, "files changed after the generator is created are read as changed: " + rewritten);
+
+        Iterator<?> gone = Comm.getDocs(url);
+        for (File f : dir.listFiles())
+            if (f.getName().equals("doc0.html"))
+                f.delete();
+        boolean failed = false;
+        while (gone.hasNext()) {
+            try {
+                gone.next();
+            } catch (NotPossibleException x) {
+                failed = true;
+            }
+        }
+        check(failed, "a file deleted after the generator is created fails when it is read");
+        write(new File(dir, "doc0.html"), "Rdoc0.html", "rewritten");
+
+        // adding the documents of a site
+        Engine e = new Engine();
+        e.addDocs(url);
+        check(e.snapshot().numDocs() == n + 2, "the engine adds every document: " + e.snapshot().numDocs());
+        check(e.search("rewritten").size() == n && e.search("large").size() == 1, "the documents are indexed");
+        check(fails(() -> e.addDocs(url)), "adding a site twice fails");
+        check(fails(() -> e.addDocs("http://example.com/")), "a site that is not a local directory fails");
+        check(fails(() -> e.addDocs(url + "/missing")), "a missing directory fails");
+
+        System.out.println((failures == 0) ? "testSiteReader: OK" : "testSiteReader: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
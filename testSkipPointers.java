@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+
+/**
+ * Behaviour tests of conjunctive queries that skip over packed postings: rare
+ * words are intersected with common ones over many blocks and segments, in
+ * both orders and with deleted documents, and the matches and their counts
+ * are compared with the words of each document. Prints the failed checks and
+ * exits with status 1 if there are any.
+ */
+public class testSkipPointers {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static int n;
+    private static List<Map<String, Integer>> counts;
+    private static Set<String> deleted = new HashSet<>();
+
+    /** the documents that have all of ws, with the sums of their counts */
+    private static Map<String, Integer> expected(String... ws) {
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (deleted.contains("D" + i))
+                continue;
+            int sum = 0;
+            boolean all = true;
+            for (String w : ws) {
+                Integer c = counts.get(i).get(w);
+                all &= c != null;
+                sum += (c == null) ? 0 : c;
+            }
+            if (all)
+                m.put("D" + i, sum);
+        }
+        return m;
+    }
+
+    private static Map<String, Integer> matches(Query q) {
+        Map<String, Integer> m = new HashMap<>();
+        for (DocCnt dc : q.top(q.size()))
+            m.put(dc.getDoc().title(), dc.getCount());
+        return m;
+    }
+
+    private static void same(Query q, String what, String... ws) {
+        Map<String, Integer> exp = expected(ws);
+        Map<String, Integer> got = matches(q);
+        check(got.equals(exp), what + ": " + got.size() + " of " + exp.size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(20);
+        Engine e = new Engine();
+        n = 8000;
+        counts = new ArrayList<>(n);
+        // the probabilities of the words in a document, from common to rare
+        String[] words = { "c1", "c2", "m1", "r1", "r2", "r3" };
+        int[] per1000 = { 900, 700, 120, 10, 3, 1 };
+        for (int i = 0; i < n; i++) {
+            Map<String, Integer> cs = new HashMap<>();
+            StringBuilder body = new StringBuilder("filler");
+            for (int w = 0; w < words.length; w++) {
+                if (r.nextInt(1000) < per1000[w]) {
+                    int c = 1 + r.nextInt(3);
+                    cs.put(words[w], c);
+                    for (int k = 0; k < c; k++)
+                        body.append(' ').append(words[w]);
+                }
+            }
+            // documents that only the last block of a list has
+            if (i >= n - 3) {
+                cs.put("r3", 1);
+                body.append(" r3");
+            }
+            counts.add(cs);
+            e.addDoc(doc("D" + i, body.toString()));
+        }
+
+        String[][] conj = { { "r1", "c1" }, { "c1", "r1" }, { "r3", "c1", "c2" }, { "m1", "c2" }, { "r2", "r1" },
+            { "c1", "c2" }, { "r3", "m1" } };
+        for (String[] ws : conj)
+            same(e.search(ws), "search " + String.join(" ", ws), ws);
+
+        // a query refined one keyword at a time, rare first and common first
+        e.queryFirst("r1");
+        same(e.queryMore("c2"), "queryFirst r1, queryMore c2", "r1", "c2");
+        e.queryFirst("c2");
+        same(e.queryMore("r1"), "queryFirst c2, queryMore r1", "c2", "r1");
+        same(e.queryMore("c1"), "queryMore c1", "c2", "r1", "c1");
+
+        // deleted documents are skipped by the intersections too
+        for (int i = 0; i < n; i += 3) {
+            e.deleteDoc("D" + i);
+            deleted.add("D" + i);
+        }
+        for (String[] ws : conj)
+            same(e.search(ws), "search after deletes " + String.join(" ", ws), ws);
+
+        System.out.println((failures == 0) ? "testSkipPointers: OK" : "testSkipPointers: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
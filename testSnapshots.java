@@ -0,0 +1,69 @@
+import a2_BI12_170.kengine.CountScorer;
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.IndexSnapshot;
+import a2_BI12_170.kengine.Query;
+
+/**
+ * Behaviour tests of the snapshots of an engine: they are published when read
+ * after a change, not once per added document, and a reader never sees a
+ * document without all its words. Prints the failed checks and exits with
+ * status 1 if there are any.
+ */
+public class testSnapshots {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    public static void main(String[] args) throws Exception {
+        // adding documents publishes nothing until a snapshot is read
+        Engine e = new Engine();
+        IndexSnapshot s0 = e.snapshot();
+        for (int i = 0; i < 500; i++)
+            e.addDoc(doc("D" + i, "common pair word" + i));
+        IndexSnapshot s1 = e.snapshot();
+        check(s1.generation() == s0.generation() + 1, "one snapshot for 500 documents: " + s1.generation());
+        check(s1.numDocs() == 500, "the snapshot has all the documents: " + s1.numDocs());
+        check(e.snapshot() == s1, "an unchanged index is not published again");
+        check(e.search("word499").size() == 1, "search sees the last document");
+
+        e.deleteDoc("d7");
+        IndexSnapshot s2 = e.snapshot();
+        check(s2.generation() == s1.generation() + 1 && s2.numDeleted() == 1, "a deletion is published when read");
+        check(s1.numDeleted() == 0, "an older snapshot does not change");
+
+        // readers racing with a writer see each document with all its words
+        final Engine w = new Engine();
+        final int n = 3000;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < n; i++)
+                w.addDoc(doc("W" + i, "common pair word" + i));
+        });
+        writer.start();
+        int last = 0;
+        while (writer.isAlive() || last < n) {
+            IndexSnapshot s = w.snapshot();
+            check(s.numDocs() >= last, "snapshots do not go back: " + s.numDocs() + " < " + last);
+            last = s.numDocs();
+            if (last == 0)
+                continue;
+            int common = new Query(s, "common", CountScorer.INSTANCE).size();
+            int both = new Query(s, new String[] { "common", "pair" }, CountScorer.INSTANCE).size();
+            check(common == last && both == last, "snapshot of " + last + " documents matches " + common + "/" + both);
+        }
+        writer.join();
+
+        System.out.println((failures == 0) ? "testSnapshots: OK" : "testSnapshots: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.WordTable;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of the stop words: the words of nk.dat are not indexed in
+ * any case, and every other word is, including words that differ from a stop
+ * word by a letter. Prints the failed checks and exits with status 1 if there
+ * are any.
+ */
+public class testStopWords {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Set<String> stop = new HashSet<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(Engine.class.getResourceAsStream("nk.dat")))) {
+            for (String l; (l = in.readLine()) != null;)
+                if (!l.trim().isEmpty())
+                    stop.add(l.trim().toLowerCase());
+        }
+
+        Engine e = new Engine();
+        check(new HashSet<>(Arrays.asList(e.getNonkeys().split(" "))).equals(stop),
+            "the stop words are those of nk.dat: " + e.getNonkeys());
+        check(new Engine().getNonkeys().equals(e.getNonkeys()), "every engine has the same stop words");
+
+        // stop words in any case are not indexed
+        WordTable wt = new WordTable();
+        StringBuilder body = new StringBuilder("keyword");
+        for (String w : stop)
+            body.append(' ').append(w).append(' ').append(w.toUpperCase()).append(' ')
+                .append(Character.toUpperCase(w.charAt(0))).append(w.substring(1));
+        Hashtable<String, Integer> counts = wt.addDoc(doc("S", body.toString()));
+        check(counts.keySet().equals(new HashSet<>(Arrays.asList("keyword"))), "stop words are not counted: " + counts);
+        for (String w : stop) {
+            check(wt.lookup(w) == null && !wt.isKeyword(w), "a stop word is not a keyword: " + w);
+            try {
+                e.search(w);
+                check(false, "searching for a stop word fails: " + w);
+            } catch (NotPossibleException x) {
+            }
+        }
+
+        // words made of the letters of the stop words are indexed unless they are stop words
+        Random r = new Random(14);
+        String letters = "aehintsoImA";
+        Map<String, Integer> expected = new HashMap<>();
+        StringBuilder words = new StringBuilder();
+        for (int k = 0; k < 5000; k++) {
+            StringBuilder w = new StringBuilder();
+            for (int len = 1 + r.nextInt(6); len > 0; len--)
+                w.append(letters.charAt(r.nextInt(letters.length())));
+            words.append(' ').append(w);
+            String c = w.toString().toLowerCase();
+            if (!stop.contains(c))
+                expected.merge(c, 1, Integer::sum);
+        }
+        // and so are the stop words with a letter more or less, and non-ASCII ones
+        for (String w : stop) {
+            for (String v : new String[] { w + "s", "x" + w, w.substring(1), w + "\u00e0" }) {
+                if (!v.isEmpty() && !stop.contains(v)) {
+                    words.append(' ').append(v);
+                    expected.merge(v, 1, Integer::sum);
+                }
+            }
+        }
+        counts = wt.addDoc(doc("W", words.toString()));
+        check(counts.equals(expected), "other words are counted: " + counts.size() + " of " + expected.size());
+
+        System.out.println((failures == 0) ? "testStopWords: OK" : "testStopWords: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Helpers;
+import a2_BI12_170.kengine.WordTable;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of the canonical forms of words and of the term dictionary:
+ * words are canonicalised as by lower-casing, and many distinct words, in any
+ * case, are each indexed under one shared canonical term. Prints the failed
+ * checks and exits with status 1 if there are any.
+ */
+public class testTermDictionary {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    /** w with each letter in upper case at random */
+    private static String mixed(Random r, String w) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : w.toCharArray())
+            sb.append(r.nextBoolean() ? Character.toUpperCase(c) : c);
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        // canonical forms are the lower case of a word
+        Random r = new Random(13);
+        String chars = "abcXYZ09-_.\u0111\u00c9\u1ea0";
+        for (int t = 0; t < 2000; t++) {
+            StringBuilder sb = new StringBuilder();
+            for (int k = r.nextInt(12); k > 0; k--)
+                sb.append(chars.charAt(r.nextInt(chars.length())));
+            String s = sb.toString();
+            check(Helpers.canon(s).equals(s.toLowerCase()), "canonical form of " + s);
+        }
+        String lower = "already-lower";
+        check(Helpers.canon(lower) == lower, "a word in lower case is its own canonical form");
+        try {
+            Helpers.canon(null);
+            check(false, "the canonical form of null fails");
+        } catch (NotPossibleException x) {
+        }
+
+        // many distinct words, in any case, more than the dictionary starts with
+        WordTable wt = new WordTable();
+        int n = 3000, perDoc = 20;
+        String firstKey = null;
+        for (int i = 0; i < n; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int k = 0; k < perDoc; k++)
+                body.append(' ').append(mixed(r, "term" + (i * perDoc + k)));
+            // every document also has one shared word, in some case
+            body.append(' ').append(mixed(r, "shared")).append(" \u0110\u1ea0I");
+            Hashtable<String, Integer> counts = wt.addDoc(doc("D" + i, body.toString()));
+            check(counts.size() == perDoc + 2, "the words of D" + i + " are distinct terms: " + counts.size());
+            for (String k : counts.keySet()) {
+                if (k.equals("shared")) {
+                    if (firstKey == null)
+                        firstKey = k;
+                    check(k == firstKey, "a word is one shared term in every document");
+                }
+            }
+        }
+        int found = 0;
+        for (int j = 0; j < n * perDoc; j += 101) {
+            Vector<?> v = wt.lookup("term" + j);
+            found += (v != null && v.size() == 1 && ((DocCnt) v.get(0)).getDoc().title().equals("D" + j / perDoc)) ? 1 : 0;
+        }
+        check(found == (n * perDoc + 100) / 101, "every distinct word is indexed: " + found);
+        check(wt.lookup("shared").size() == n, "a word in any case is one keyword");
+        check(wt.lookup("\u0111\u1ea1i") != null && wt.lookup("\u0111\u1ea1i").size() == n,
+            "a non-ASCII word in any case is one keyword");
+
+        System.out.println((failures == 0) ? "testTermDictionary: OK" : "testTermDictionary: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
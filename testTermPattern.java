@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of keyword patterns and ranges in queries: the documents
+ * that a prefix, a wildcard pattern or a range matches are compared with the
+ * documents that have a keyword that matches it. Prints the failed checks and
+ * exits with status 1 if there are any.
+ */
+public class testTermPattern {
+    private static final String LETTERS = "bcdk";
+
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Engine e, String expr) {
+        try {
+            e.query(expr);
+            return false;
+        } catch (NotPossibleException x) {
+            return true;
+        }
+    }
+
+    private static Set<String> titles(Query q) {
+        Set<String> ts = new HashSet<>();
+        for (Doc d : q.fetch(0, q.size()))
+            ts.add(d.title());
+        return ts;
+    }
+
+    private static int n;
+    private static List<Set<String>> words;
+
+    /** checks the query expr against the documents that have a word satisfying p */
+    private static void same(Engine e, String expr, Predicate<String> p) {
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < n; i++)
+            for (String w : words.get(i))
+                if (p.test(w))
+                    expected.add("D" + i);
+        Set<String> got = titles(e.query(expr));
+        check(got.equals(expected), expr + ": " + got.size() + " of " + expected.size());
+    }
+
+    private static Predicate<String> glob(String p) {
+        String re = p.replace("?", ".").replace("*", ".*");
+        return w -> w.matches(re);
+    }
+
+    private static Predicate<String> range(String lo, String hi) {
+        return w -> (lo == null || w.compareTo(lo) >= 0) && (hi == null || w.compareTo(hi) <= 0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(17);
+        Engine e = new Engine();
+        n = 2500;
+        words = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Set<String> ws = new HashSet<>();
+            int k = 1 + r.nextInt(4);
+            for (int j = 0; j < k; j++) {
+                StringBuilder w = new StringBuilder();
+                for (int len = 1 + r.nextInt(4); len > 0; len--)
+                    w.append(LETTERS.charAt(r.nextInt(LETTERS.length())));
+                ws.add(w.toString());
+            }
+            words.add(ws);
+            e.addDoc(doc("D" + i, String.join(" ", ws)));
+        }
+
+        String[] globs = { "b*", "bc*", "dkd*", "*k", "*c*", "b?", "?b?", "?", "b*k", "*b*d*", "ccc?", "kkkk*" };
+        for (String g : globs)
+            same(e, g, glob(g));
+        same(e, "BC*", glob("bc*"));
+        same(e, "[b TO c]", range("b", "c"));
+        same(e, "[bc TO dd]", range("bc", "dd"));
+        same(e, "[* TO bb]", range(null, "bb"));
+        same(e, "[kc TO *]", range("kc", null));
+        same(e, "[c TO b]", w -> false);
+        same(e, "[bbbb TO bbbb]", w -> w.equals("bbbb"));
+
+        // patterns combine with the other operators
+        same(e, "b* OR k*", w -> w.startsWith("b") || w.startsWith("k"));
+        Set<String> shortOnly = new HashSet<>();
+        for (int i = 0; i < n; i++)
+            if (words.get(i).stream().allMatch(w -> w.length() < 3))
+                shortOnly.add("D" + i);
+        check(titles(e.query("[* TO *] NOT ???? NOT ???")).equals(shortOnly), "patterns can be excluded");
+        Set<String> both = titles(e.query("b* c*"));
+        check(both.size() == titles(e.query("c* b*")).size() && both.equals(titles(e.query("b* AND c*"))),
+            "patterns can be intersected");
+        same(e, "zz*", w -> false);
+
+        // a pattern that matches too many keywords fails
+        Engine big = new Engine();
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i < 1100; i++)
+            many.append(" x").append(i);
+        big.addDoc(doc("many", many.toString()));
+        check(fails(big, "x*"), "a pattern with more than 1024 keywords fails");
+        check(!fails(big, "x1*"), "a pattern with fewer keywords does not fail");
+        check(fails(e, "[b c]") && fails(e, "[b TO c") && fails(e, "\"b* c\""), "invalid patterns and ranges fail");
+
+        System.out.println((failures == 0) ? "testTermPattern: OK" : "testTermPattern: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
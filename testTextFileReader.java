@@ -0,0 +1,93 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import utils.fileio.TextFileReader;
+
+/**
+ * Behaviour tests of reading document files: the contents returned for files
+ * of any size, read one after another by the same reader, are those of the
+ * files and are not changed by later reads. Prints the failed checks and
+ * exits with status 1 if there are any.
+ */
+public class testTextFileReader {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(6);
+        // small files that share slabs, files of their own buffer size, mapped
+        // files, an empty file and non-ASCII text
+        int[] sizes = { 10, 3000, 50000, 0, 70000, 100, 300000, 20, 1000000, 65536, 5 };
+        ArrayList<String> texts = new ArrayList<>();
+        ArrayList<File> files = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int n = (i < sizes.length) ? sizes[i] : r.nextInt(4000);
+            StringBuilder sb = new StringBuilder(n);
+            for (int j = 0; j < n; j++)
+                sb.append((j % 97 == 5) ? '\u1ec7' : (char) ('a' + r.nextInt(26)));
+            texts.add(sb.toString());
+            File f = File.createTempFile("testTextFileReader", ".html");
+            f.deleteOnExit();
+            try (OutputStream out = new FileOutputStream(f)) {
+                out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            files.add(f);
+        }
+
+        TextFileReader reader = new TextFileReader(StandardCharsets.UTF_8);
+        ArrayList<CharBuffer> contents = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            CharBuffer cb = reader.readContent(files.get(i));
+            check(cb.toString().equals(texts.get(i)), "content of file " + i + " of " + texts.get(i).length() + " chars");
+            contents.add(cb);
+            if (i % 3 == 0)
+                check(reader.read(files.get(i)).equals(texts.get(i)), "read of file " + i);
+        }
+        for (int i = 0; i < contents.size(); i++)
+            check(contents.get(i).toString().equals(texts.get(i)), "content of file " + i + " after later reads");
+
+        // a stored content of a small file does not keep the slab it was read into
+        Engine e = new Engine(false, true);
+        TextFileReader own = new TextFileReader(StandardCharsets.UTF_8);
+        WeakReference<char[]> slab = null;
+        for (int i = 0; i < 3; i++) {
+            File f = File.createTempFile("testTextFileReader", ".html");
+            f.deleteOnExit();
+            try (OutputStream out = new FileOutputStream(f)) {
+                out.write(("<html><head><title>S" + i + "</title></head><body>kept words</body></html>")
+                    .getBytes(StandardCharsets.UTF_8));
+            }
+            CharBuffer cb = own.readContent(f);
+            slab = new WeakReference<>(cb.array());
+            e.addDoc(new Doc(cb));
+        }
+        own = null;
+        for (int k = 0; k < 10 && slab.get() != null; k++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        check(slab.get() == null, "a stored content does not keep its slab");
+        Iterator<String> ws = e.findDoc("S2").words();
+        check(ws.hasNext() && ws.next().equals("kept") && ws.next().equals("words") && !ws.hasNext(),
+            "the stored content is kept");
+
+        System.out.println((failures == 0) ? "testTextFileReader: OK" : "testTextFileReader: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
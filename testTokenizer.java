@@ -0,0 +1,105 @@
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.HtmlTokenizer;
+
+/**
+ * Behaviour tests of the HTML tokenizer: the words of some HTML texts are
+ * compared with the words expected of them, and the words of random HTML are
+ * the same however the document is held and read. Prints the failed checks
+ * and exits with status 1 if there are any.
+ */
+public class testTokenizer {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    /** the words that the tokenizer reports for buf[off..off+len) */
+    private static List<String> tokens(char[] buf, int off, int len) {
+        List<String> ws = new ArrayList<>();
+        HtmlTokenizer.tokenize(buf, off, len, (b, start, n) -> ws.add(new String(b, start, n)));
+        return ws;
+    }
+
+    private static List<String> tokens(String html) {
+        return tokens(html.toCharArray(), 0, html.length());
+    }
+
+    private static void same(String html, String... expected) {
+        List<String> got = tokens(html);
+        check(got.equals(Arrays.asList(expected)), html + " -> " + got);
+    }
+
+    private static List<String> words(Doc d) {
+        List<String> ws = new ArrayList<>();
+        for (Iterator<String> it = d.words(); it.hasNext();)
+            ws.add(it.next());
+        return ws;
+    }
+
+    private static List<String> handled(Doc d) {
+        List<String> ws = new ArrayList<>();
+        d.words((b, start, n) -> ws.add(new String(b, start, n)));
+        return ws;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // words are separated by white space and by tags
+        same("<p>Bui Huy  Hoang</p>", "Bui", "Huy", "Hoang");
+        same("<p>a<b>b</b>c d</p>", "a", "b", "c", "d");
+        same("<p>\tone\r\ntwo\n</p>", "one", "two");
+        same("<br/>last", "last");
+        // text before the first tag is skipped
+        same("before <p>after", "after");
+        same("no tags at all");
+        // tags and their attributes are not words
+        same("<a href=\"x y\" title='z'>link</a> <img src=a.png> text", "link", "text");
+        // the content of script and style elements is skipped, in any case
+        same("<p>x</p><script>var a = 1 < 2;</script><p>y</p>", "x", "y");
+        same("<STYLE type=\"text/css\">p { color: red }</STYLE>z", "z");
+        same("<p>x<script src=s.js></script>y", "x", "y");
+        same("<scripts>kept</scripts>", "kept");
+        same("<p>x<script>never closed", "x");
+        same("<p>x<script>a</style>b</script>y", "x", "y");
+        // punctuation and case are kept: words are canonicalised when they are indexed
+        same("<p>Hello, World!</p>", "Hello,", "World!");
+
+        // a range of a buffer is tokenized as if it were the whole buffer
+        char[] buf = "<p>skip</p><p>keep these</p><p>and not this</p>".toCharArray();
+        check(tokens(buf, 11, 18).equals(Arrays.asList("keep", "these")), "range of a buffer: " + tokens(buf, 11, 18));
+
+        // random documents have the same words as a String, as a CharBuffer and through both APIs
+        Random r = new Random(3);
+        String[] parts = { "<p>", "</p>", "<b>", "</b>", " ", "\n", "word", "Word2", "<script>x y</script>",
+            "<style>s</style>", "<a href='u v'>", "</a>", "<br/>", "\u0111\u1ea1i", "z" };
+        for (int t = 0; t < 200; t++) {
+            StringBuilder body = new StringBuilder();
+            for (int k = r.nextInt(40); k > 0; k--)
+                body.append(parts[r.nextInt(parts.length)]);
+            String html = "<html><head><title>T</title></head><body>" + body + "</body></html>";
+            List<String> expected = tokens("<body>" + body + "</body>");
+            List<String> fromString = words(new Doc(html));
+            check(fromString.equals(expected), "words of " + body + ": " + fromString + " vs " + expected);
+            check(handled(new Doc(html)).equals(fromString), "handler and iterator words of " + body);
+
+            // a buffer that is a slice of a larger array
+            char[] big = ("padding" + html + "padding").toCharArray();
+            CharBuffer cb = CharBuffer.wrap(big, 7, html.length()).slice();
+            check(words(new Doc(cb)).equals(fromString), "words of a CharBuffer of " + body);
+        }
+
+        System.out.println((failures == 0) ? "testTokenizer: OK" : "testTokenizer: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,114 @@
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+import a2_BI12_170.studentman.ProgStudentMan;
+import a2_BI12_170.studentman.Student;
+import utils.NotPossibleException;
+
+/**
+ * Behaviour tests of deleting and replacing documents: deleted documents are
+ * skipped by queries, also after their segments are merged, and a replacement
+ * that fails keeps the old document. Prints the failed checks and exits with
+ * status 1 if there are any.
+ */
+public class testTombstones {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (NotPossibleException e) {
+            return true;
+        }
+    }
+
+    private static int count(Engine e, String w) {
+        try {
+            return e.search(w).size();
+        } catch (NotPossibleException x) {
+            return 0; // no document has w
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // deleted documents are skipped by searches and by the current query
+        Engine e = new Engine();
+        for (int i = 0; i < 3000; i++)
+            e.addDoc(doc("D" + i, "common word" + i + ((i % 2 == 0) ? " even" : " odd")));
+        Query live = e.queryFirst("even");
+        for (int i = 0; i < 3000; i += 4)
+            e.deleteDoc("D" + i);
+        check(count(e, "common") == 2250, "search skips deleted documents: " + count(e, "common"));
+        check(live.size() == 750, "live query drops deleted documents: " + live.size());
+        check(e.snapshot().numDeleted() == 750, "deleted documents are counted: " + e.snapshot().numDeleted());
+        check(fails(() -> e.deleteDoc("D0")), "deleting a deleted document fails");
+        check(fails(() -> e.findDoc("d4")), "a deleted document is not found by title");
+
+        // merged segments drop the postings of deleted documents
+        for (int i = 3000; i < 12000; i++)
+            e.addDoc(doc("D" + i, "common word" + i));
+        check(count(e, "common") == 11250, "search after merges: " + count(e, "common"));
+        check(count(e, "word8") == 0, "a deleted document stays deleted after merges");
+        check(count(e, "word9") == 1, "a live document is kept by merges");
+
+        // a word whose documents are all deleted is not a keyword
+        for (int i = 0; i < 3; i++)
+            e.addDoc(doc("G" + i, "gone common"));
+        for (int i = 0; i < 3; i++)
+            e.deleteDoc("G" + i);
+        check(fails(() -> e.queryFirst("gone")), "queryFirst of a word of deleted documents fails");
+        check(fails(() -> e.search("common", "gone")), "search of a word of deleted documents fails");
+        e.queryFirst("common");
+        check(fails(() -> e.queryMore("gone")), "queryMore of a word of deleted documents fails");
+        check(e.query("gon*").size() == 0 && e.query("common NOT gone").size() == 11250,
+            "patterns do not match a word of deleted documents");
+
+        // a replacement replaces the old document, possibly under a new title
+        e.updateDoc("D1", doc("D1", "replaced"));
+        check(count(e, "word1") == 0 && count(e, "replaced") == 1, "updateDoc with the same title");
+        e.updateDoc("d3", doc("N3", "renamed"));
+        check(count(e, "renamed") == 1 && fails(() -> e.findDoc("D3")), "updateDoc with a new title");
+
+        // a replacement that fails keeps the old document
+        check(fails(() -> e.updateDoc("D5", doc("D7", "clash"))), "updateDoc to the title of another document fails");
+        check(fails(() -> e.updateDoc("D5", new Doc("<html><body>untitled</body></html>"))), 
+            "updateDoc with an untitled document fails");
+        check(fails(() -> e.updateDoc("missing", doc("M", "missing"))), "updateDoc of a missing document fails");
+        check(count(e, "word5") == 1 && e.findDoc("D5") != null, "a failed updateDoc keeps the old document");
+        check(count(e, "clash") == 0 && count(e, "untitled") == 0, "a failed updateDoc adds nothing");
+
+        // students are re-indexed when they change, also when they are re-sorted
+        ProgStudentMan sm = new ProgStudentMan();
+        Student a = new Student(1, "Anna", "0123", "Hanoi");
+        Student b = new Student(2, "Binh", "0456", "Hue");
+        sm.addStudent(a);
+        sm.addStudent(b);
+        a.setName("Zung");
+        a.setAddress("Vinh");
+        sm.updateStudent(a);
+        check(sm.search(new String[] { "Vinh" }).size() == 1, "updated student is found");
+        check(sm.search(new String[] { "Hanoi" }).size() == 0, "old document of the student is not found");
+        check(sm.toString().indexOf("Binh") < sm.toString().indexOf("Zung"), "updated student is re-sorted");
+        b.setAddress("Danang");
+        sm.updateStudent(b);
+        check(sm.search(new String[] { "Danang" }).size() == 1 && sm.search(new String[] { "Hue" }).size() == 0, 
+            "updated address is found");
+        check(sm.toString().split("\n").length == 2, "updating keeps one entry per student");
+
+        System.out.println((failures == 0) ? "testTombstones: OK" : "testTombstones: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
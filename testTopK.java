@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.Engine;
+import a2_BI12_170.kengine.Query;
+
+/**
+ * Behaviour tests of ranking the matches of a query: the best matches, the
+ * pages of matches and the matches fetched one by one are ranked by their
+ * counts and agree with each other, however many of them are asked for.
+ * Prints the failed checks and exits with status 1 if there are any.
+ */
+public class testTopK {
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean fails(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (IndexOutOfBoundsException e) {
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(9);
+        Engine e = new Engine();
+        int n = 3000;
+        Map<String, Integer> counts = new HashMap<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            StringBuilder body = new StringBuilder("other");
+            if (r.nextInt(3) > 0) {
+                // mostly small counts, with many ties, and a few large ones
+                int c = (r.nextInt(50) == 0) ? 20 + r.nextInt(100) : 1 + r.nextInt(4);
+                for (int k = 0; k < c; k++)
+                    body.append(" ranked");
+                counts.put("D" + i, c);
+                expected.add(c);
+            }
+            e.addDoc(doc("D" + i, body.toString()));
+        }
+        Collections.sort(expected, Collections.reverseOrder());
+        int size = expected.size();
+
+        // the best k matches, for any k
+        for (int k : new int[] { 0, 1, 2, 10, 100, size - 1, size, size + 10 }) {
+            DocCnt[] top = e.search("ranked").top(k);
+            boolean ok = top.length == Math.min(k, size);
+            for (int j = 0; ok && j < top.length; j++)
+                ok = top[j].getCount() == expected.get(j) && counts.get(top[j].getDoc().title()) == top[j].getCount();
+            check(ok, "top " + k);
+        }
+
+        // pages of any size agree with each other and with the best matches
+        Query q = e.search("ranked");
+        Doc[] all = q.fetch(0, size);
+        DocCnt[] best = e.search("ranked").top(size);
+        boolean ok = all.length == size;
+        for (int j = 0; ok && j < size; j++)
+            ok = counts.get(all[j].title()) == expected.get(j) && all[j] == best[j].getDoc();
+        check(ok, "a page of all the matches is ranked");
+        for (int limit : new int[] { 1, 7, 10, 333 }) {
+            Query p = e.search("ranked");
+            List<Doc> pages = new ArrayList<>();
+            for (int off = 0; off < size; off += limit)
+                pages.addAll(Arrays.asList(p.fetch(off, limit)));
+            check(pages.equals(Arrays.asList(all)), "pages of " + limit + " are the ranking");
+        }
+        Query one = e.search("ranked");
+        ok = true;
+        for (int j = 0; ok && j < size; j++)
+            ok = one.fetch(j) == all[j];
+        check(ok, "the matches fetched one by one are the ranking");
+        Query last = e.search("ranked");
+        check(last.fetch(size - 1) == all[size - 1], "the last match can be fetched first");
+
+        check(q.fetch(size, 10).length == 0 && q.fetch(size - 3, 10).length == 3, "a page past the end is cut off");
+        check(fails(() -> q.top(-1)) && fails(() -> q.fetch(-1, 1)) && fails(() -> q.fetch(0, -1))
+            && fails(() -> q.fetch(-1)) && fails(() -> q.fetch(size)), "invalid ranks fail");
+
+        System.out.println((failures == 0) ? "testTopK: OK" : "testTopK: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+
+import a2_BI12_170.kengine.Doc;
+import a2_BI12_170.kengine.DocCnt;
+import a2_BI12_170.kengine.WordTable;
+
+/**
+ * Behaviour tests of the word table: the word counts that adding a document
+ * returns and the postings that a lookup returns are compared with the words
+ * of random documents, and stop words are never keywords. Prints the failed
+ * checks and exits with status 1 if there are any.
+ */
+public class testWordTable {
+    private static final String[] WORDS = { "bui", "Huy", "HOANG", "hanoi", "vinh", "hue", "the", "a", "This" };
+
+    private static int failures;
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    private static Doc doc(String title, String body) {
+        return new Doc("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>");
+    }
+
+    private static boolean isStopWord(String w) {
+        return w.equals("the") || w.equals("a") || w.equals("this");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random r = new Random(1);
+        WordTable wt = new WordTable();
+        Map<String, List<String>> expected = new HashMap<>();
+        int n = 1500; // some documents are flushed to a segment, the rest are not
+        for (int i = 0; i < n; i++) {
+            String t = "D" + i;
+            Map<String, Integer> counts = new HashMap<>();
+            StringBuilder body = new StringBuilder();
+            for (int k = r.nextInt(12); k > 0; k--) {
+                String w = WORDS[r.nextInt(WORDS.length)];
+                body.append(' ').append(w);
+                String c = w.toLowerCase();
+                if (!isStopWord(c))
+                    counts.merge(c, 1, Integer::sum);
+            }
+
+            Hashtable<String, Integer> got = wt.addDoc(doc(t, body.toString()));
+            // a document without interesting words has no table
+            check((counts.isEmpty()) ? got == null : counts.equals(got),
+                "word counts of " + t + ": " + got + " vs " + counts);
+            for (Map.Entry<String, Integer> c : counts.entrySet())
+                expected.computeIfAbsent(c.getKey(), k -> new ArrayList<>()).add(t + ":" + c.getValue());
+        }
+
+        for (String w : WORDS) {
+            String c = w.toLowerCase();
+            Vector<?> v = wt.lookup(c);
+            if (isStopWord(c)) {
+                check(v == null && !wt.isKeyword(c), "a stop word is not a keyword: " + c);
+                continue;
+            }
+            List<String> got = new ArrayList<>();
+            for (Object o : v)
+                got.add(((DocCnt) o).getDoc().title() + ":" + ((DocCnt) o).getCount());
+            check(got.equals(expected.get(c)), "postings of " + c + ", in the order added: " + got.size());
+            check(wt.isKeyword(c), "a word of some document is a keyword: " + c);
+        }
+        check(wt.lookup("missing") == null && !wt.isKeyword("missing") && !wt.isKeyword(null),
+            "a word of no document is not a keyword");
+        check(wt.lookup("Huy") == null, "lookup is of the canonical form of a word");
+
+        // the stop words are listed apart from the keywords
+        String nonkeys = " " + wt.getNonkeys() + " ";
+        check(nonkeys.contains(" the ") && nonkeys.contains(" a ") && !nonkeys.contains(" bui "),
+            "the stop words are listed: " + nonkeys);
+        check(wt.toString().contains("bui->[" + expected.get("bui").size() + "]"), "toString lists the keywords");
+
+        System.out.println((failures == 0) ? "testWordTable: OK" : "testWordTable: " + failures + " failed");
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -1,9 +1,7 @@
 package utils.fileio;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.nio.charset.Charset;
 
 import utils.NotPossibleException;
 
@@ -20,6 +18,8 @@ public class FileHandler {
    *      return a string containing the content of the file 
    *      at the specified path
    *      </pre> 
+   * @version 2.0 the content is read through NIO as is, without normalising the 
+   *      line separators
    */
   public static String getFile(String path) 
   throws NullPointerException, NotPossibleException {
@@ -27,22 +27,30 @@ public class FileHandler {
     if (path == null)
       throw new NullPointerException("FileHandler.getFile: path is null");
     
-    final String linesep = System.getProperty("line.separator");
+    return new TextFileReader().read(new File(path));
+  }
 
-    try {
-      BufferedReader reader = new BufferedReader(
-          new FileReader(new File(path)));
-      
-      // read file content
-      StringBuffer docBuffer = new StringBuffer();
-      String line = reader.readLine();
-      while (line != null) {
-        docBuffer.append(line).append(linesep);
-        line = reader.readLine();
-      }
-      return docBuffer.toString();
-    } catch (IOException e) {
-      throw new NotPossibleException("FileHandler.getFile: failed to read file " + path);
-    }
+  /**
+   * @requires <tt>path is a text file</tt>
+   * @effects <pre>
+   *     if path is null
+   *      throws NullPointerException
+   *     else if path does not exist OR 
+   *      failed to read file at the specified path 
+   *      throws NotPossibleException 
+   *     else 
+   *      return a character sequence containing the content of the file 
+   *      at the specified path, which is memory-mapped if it is at least 
+   *      mapThreshold bytes long
+   *      </pre> 
+   */
+  public static CharSequence getContent(String path, long mapThreshold) 
+  throws NullPointerException, NotPossibleException {
+    
+    if (path == null)
+      throw new NullPointerException("FileHandler.getContent: path is null");
+    
+    return new TextFileReader(Charset.defaultCharset(), mapThreshold)
+        .readContent(new File(path));
   }
 }
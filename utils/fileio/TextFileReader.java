@@ -0,0 +1,211 @@
+package utils.fileio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+import utils.NotPossibleException;
+
+/**
+ * @overview A reader of text files that reads through a
+ *           <code>FileChannel</code> and decodes the bytes directly into a
+ *           character buffer, without splitting the text into lines.
+ *
+ *           Files whose size is at least a <i>map threshold</i> are
+ *           memory-mapped and decoded in one step; smaller files are read
+ *           through a byte buffer that is kept between reads, because mapping
+ *           costs more than copying a few kilobytes.
+ *
+ *           The files that are not mapped are decoded into a character
+ *           buffer that is kept between reads and only grows when a file does
+ *           not fit, so it is never more than twice as large as the largest
+ *           of them.
+ *           {@link #read(File)} returns its content as a <code>String</code>.
+ *           {@link #readContent(File)} copies it into a <i>slab</i>, a large
+ *           buffer shared by the contents of many small files, and returns a
+ *           slice of the slab, so reading a small file allocates no buffer of
+ *           its own; a file larger than a quarter of a slab gets a buffer of
+ *           exactly its size instead, so at most a quarter of a slab is left
+ *           unused when a new slab is started. A mapped file is decoded
+ *           straight into a buffer of its own.
+ *
+ *           A <code>TextFileReader</code> is not thread-safe: each thread
+ *           should use its own.
+ */
+public class TextFileReader {
+  /** the default map threshold (256 KB) */
+  public static final long DEFAULT_MAP_THRESHOLD = 256 * 1024;
+
+  private static final int BYTE_BUFFER_SIZE = 8192;
+  private static final int MIN_CHAR_BUFFER_SIZE = 1024;
+  private static final int SLAB_SIZE = 256 * 1024; // in chars
+
+  private CharsetDecoder decoder;
+  private long mapThreshold; // files at least this large are mapped
+  private ByteBuffer bytes; // reused for each read
+  private CharBuffer chars; // reused for each read, grows as needed
+  private CharBuffer slab; // the unused part of the current slab, or null
+
+  /**
+   * @effects initialises <code>this</code> to decode files using the default
+   *          charset of the platform and the default map threshold
+   */
+  public TextFileReader() {
+    this(Charset.defaultCharset());
+  }
+
+  /**
+   * @requires <code>cs</code> is not <code>null</code>
+   * @effects initialises <code>this</code> to decode files using
+   *          <code>cs</code> and the default map threshold
+   */
+  public TextFileReader(Charset cs) {
+    this(cs, DEFAULT_MAP_THRESHOLD);
+  }
+
+  /**
+   * @requires <code>cs</code> is not <code>null</code>
+   * @effects initialises <code>this</code> to decode files using
+   *          <code>cs</code>, memory-mapping the files whose size in bytes is
+   *          at least <code>mapThreshold</code>; malformed input is replaced
+   *          rather than reported
+   */
+  public TextFileReader(Charset cs, long mapThreshold) {
+    decoder = cs.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.mapThreshold = mapThreshold;
+    bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    chars = CharBuffer.allocate(MIN_CHAR_BUFFER_SIZE);
+  }
+
+  /**
+   * @effects <pre>
+   *     if f is null
+   *      throws NullPointerException
+   *     else if f does not exist OR failed to read f
+   *      throws NotPossibleException
+   *     else
+   *      return a string containing the content of f
+   *      </pre>
+   */
+  public String read(File f) throws NullPointerException, NotPossibleException {
+    chars = decode(f, chars);
+    return chars.toString();
+  }
+
+  /**
+   * @effects <pre>
+   *     if f is null
+   *      throws NullPointerException
+   *     else if f does not exist OR failed to read f
+   *      throws NotPossibleException
+   *     else
+   *      return a new character buffer containing the content of f,
+   *      positioned at its start, which later reads do not change
+   *      </pre>
+   *     The buffer of a small file is a slice of a slab, which it keeps from
+   *     being collected as long as it is referenced: a content that is kept
+   *     for long should be copied into a buffer of its own.
+   */
+  public CharBuffer readContent(File f) throws NullPointerException, NotPossibleException {
+    if (f != null && f.length() >= mapThreshold)
+      return decode(f, null);
+
+    chars = decode(f, chars);
+    int n = chars.remaining();
+    if (n > SLAB_SIZE / 4) {
+      CharBuffer own = CharBuffer.allocate(n);
+      own.put(chars);
+      own.flip();
+      return own;
+    }
+
+    if (slab == null || slab.remaining() < n)
+      slab = CharBuffer.allocate(SLAB_SIZE);
+    CharBuffer content = slab.slice();
+    content.limit(n);
+    slab.put(chars);
+    return content;
+  }
+
+  /**
+   * @effects if <code>f</code> is <code>null</code> throws
+   *          <code>NullPointerException</code>; if <code>f</code> cannot be
+   *          read throws <code>NotPossibleException</code>; else decodes
+   *          <code>f</code> into <code>out</code> (or into a new buffer if
+   *          <code>out</code> is <code>null</code>, or a larger one if it is too
+   *          small) and returns that buffer, flipped for reading
+   */
+  private CharBuffer decode(File f, CharBuffer out) throws NullPointerException, NotPossibleException {
+    if (f == null)
+      throw new NullPointerException("TextFileReader.read: file is null");
+
+    try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      long size = ch.size();
+      int estimate = (int) Math.min(Integer.MAX_VALUE - 8,
+          (long) Math.ceil(size * (double) decoder.averageCharsPerByte()));
+      if (out == null) {
+        out = CharBuffer.allocate(Math.max(estimate, 16));
+      } else if (out.capacity() < estimate) {
+        out = CharBuffer.allocate(Math.max(estimate, out.capacity() << 1));
+      } else {
+        out.clear();
+      }
+
+      decoder.reset();
+      if (size >= mapThreshold) {
+        // one mapped buffer holds the whole file
+        out = decode(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), out, true);
+      } else {
+        bytes.clear();
+        boolean eof = false;
+        while (!eof) {
+          eof = ch.read(bytes) < 0;
+          bytes.flip();
+          out = decode(bytes, out, eof);
+          bytes.compact();
+        }
+      }
+
+      while (decoder.flush(out).isOverflow()) {
+        out = grow(out);
+      }
+
+      out.flip();
+      return out;
+    } catch (IOException e) {
+      throw new NotPossibleException("TextFileReader.read: failed to read file " + f);
+    }
+  }
+
+  /**
+   * @modifies <code>in</code>
+   * @effects decodes as many bytes of <code>in</code> as possible into
+   *          <code>out</code>, growing <code>out</code> if it is full; returns
+   *          the buffer that holds the result
+   */
+  private CharBuffer decode(ByteBuffer in, CharBuffer out, boolean eof) {
+    while (decoder.decode(in, out, eof).isOverflow()) {
+      out = grow(out);
+    }
+    return out;
+  }
+
+  /**
+   * @effects returns a buffer with twice the capacity of <code>out</code>
+   *          that contains the content of <code>out</code>
+   */
+  private static CharBuffer grow(CharBuffer out) {
+    CharBuffer bigger = CharBuffer.allocate(out.capacity() << 1);
+    out.flip();
+    bigger.put(out);
+    return bigger;
+  }
+}